@@ -0,0 +1,107 @@
+package org.example;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Weekly and full-history aggregation over in-memory rows: per-day rollup (MoodAggregator), weekly
+ * totals, and the 7-bucket graph computed with Duration.between (the old displayWeeklyGraph loop)
+ * versus epoch-day arithmetic, and the columnar ScoreKernel (day/month buckets) with and without the Vector API.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AggregationBenchmark {
+    @Param({"1000", "100000"})
+    public int rows;
+
+    private List<SupabaseClient.MoodEntry> entries;
+    private MoodHistory history;
+    private LocalDate weekStart;
+
+    @Setup
+    public void setup() {
+        entries = BenchData.entries(rows, 1);
+        history = new MoodHistory(rows);
+        for (SupabaseClient.MoodEntry e : entries) history.add(e);
+        history.freeze();
+        weekStart = entries.get(entries.size() - 1).timestamp.toLocalDate().minusDays(6);
+    }
+
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+    public List<SupabaseClient.DailyAggregate> historyDailyKernelVector() {
+        return MoodAggregator.buckets(history, 0, history.size(), ScoreKernel.Width.DAY);
+    }
+
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = "-Dmoodify.vector=false")
+    public List<SupabaseClient.DailyAggregate> historyDailyKernelScalar() {
+        return MoodAggregator.buckets(history, 0, history.size(), ScoreKernel.Width.DAY);
+    }
+
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+    public List<SupabaseClient.DailyAggregate> historyMonthlyKernelVector() {
+        return MoodAggregator.buckets(history, 0, history.size(), ScoreKernel.Width.MONTH);
+    }
+
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = "-Dmoodify.vector=false")
+    public List<SupabaseClient.DailyAggregate> historyMonthlyKernelScalar() {
+        return MoodAggregator.buckets(history, 0, history.size(), ScoreKernel.Width.MONTH);
+    }
+
+    @Benchmark
+    public List<SupabaseClient.DailyAggregate> historyDaily() {
+        return MoodAggregator.daily(entries);
+    }
+
+    @Benchmark
+    public WeeklyStats weeklyStats() {
+        return MoodAggregator.weekly(MoodAggregator.daily(entries));
+    }
+
+    @Benchmark
+    public double[] weekBucketsDuration() {
+        double[] totals = new double[7];
+        int[] counts = new int[7];
+        for (SupabaseClient.MoodEntry e : entries) {
+            int idx = (int) java.time.Duration.between(weekStart.atStartOfDay(), e.timestamp.toLocalDate().atStartOfDay()).toDays();
+            if (idx < 0 || idx > 6) continue;
+            totals[idx] += e.score;
+            counts[idx] += 1;
+        }
+        return totals;
+    }
+
+    @Benchmark
+    public double[] weekBucketsEpochDay() {
+        double[] totals = new double[7];
+        int[] counts = new int[7];
+        long startDay = weekStart.toEpochDay();
+        for (SupabaseClient.MoodEntry e : entries) {
+            long idx = e.timestamp.toLocalDate().toEpochDay() - startDay;
+            if (idx < 0 || idx > 6) continue;
+            totals[(int) idx] += e.score;
+            counts[(int) idx] += 1;
+        }
+        return totals;
+    }
+}
@@ -0,0 +1,42 @@
+package org.example;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Deterministic synthetic mood data shared by the benchmarks.
+ */
+final class BenchData {
+    static final String[] MOODS = {"Kacau", "Buruk", "Netral", "Bagus", "Sangat bagus"};
+    static final LocalDateTime START = LocalDateTime.of(2023, 1, 1, 0, 0);
+
+    private BenchData() {}
+
+    /** {@code rows} entries spread over {@code users} users, a few per day at whole hours (as Main records them). */
+    static List<SupabaseClient.MoodEntry> entries(int rows, int users) {
+        SplittableRandom rnd = new SplittableRandom(42);
+        List<SupabaseClient.MoodEntry> out = new ArrayList<>(rows);
+        LocalDateTime ts = START;
+        for (int i = 0; i < rows; i++) {
+            ts = ts.plusHours(1 + rnd.nextInt(8));
+            int m = rnd.nextInt(5);
+            out.add(new SupabaseClient.MoodEntry(MOODS[m], m + 1, ts, "00000000-0000-0000-0000-" + String.format("%012d", rnd.nextInt(users))));
+        }
+        return out;
+    }
+
+    /** PostgREST-style CSV body (timestamptz rendered as "yyyy-MM-dd HH:mm:ss+00"). */
+    static byte[] csv(List<SupabaseClient.MoodEntry> entries) {
+        StringBuilder sb = new StringBuilder(entries.size() * 72).append("mood,score,timestamp,user_id\n");
+        for (SupabaseClient.MoodEntry e : entries) {
+            sb.append(e.mood.indexOf(' ') >= 0 ? "\"" + e.mood + "\"" : e.mood).append(',')
+                    .append(e.score).append(',')
+                    .append(e.timestamp.toLocalDate()).append(' ').append(e.timestamp.toLocalTime()).append(":00+00,")
+                    .append(e.userId).append('\n');
+        }
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,50 @@
+package org.example;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Decoding a PostgREST CSV body into MoodEntry rows (SupabaseClient.parseCsvToEntries).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CsvDecodeBenchmark {
+    @Param({"10", "1000", "100000", "1000000"})
+    public int rows;
+
+    private byte[] body;
+
+    @Setup
+    public void setup() {
+        body = BenchData.csv(BenchData.entries(rows, 50));
+    }
+
+    @Benchmark
+    public int parseEntries(Blackhole bh) throws IOException {
+        return SupabaseClient.parseCsvToEntries(new ByteArrayInputStream(body), bh::consume);
+    }
+
+    @Benchmark
+    public void csvReaderOnly(Blackhole bh) throws IOException {
+        CsvReader r = new CsvReader(new ByteArrayInputStream(body));
+        while (r.next()) bh.consume(r.size());
+    }
+}
@@ -0,0 +1,64 @@
+package org.example;
+
+import java.net.http.HttpRequest;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Building requests without sending them: query URIs and insert bodies (single and 500-row batch).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RequestBuildBenchmark {
+    private SupabaseClient client;
+    private List<SupabaseClient.MoodEntry> batch;
+    private final LocalDate start = LocalDate.of(2025, 11, 1);
+    private final LocalDate end = LocalDate.of(2025, 11, 7);
+    private final LocalDateTime ts = LocalDateTime.of(2025, 11, 2, 22, 0);
+    private final String userId = "00000000-0000-0000-0000-000000000001";
+    private final SupabaseClient.MoodEntry entry = SupabaseClient.MoodEntry.create("Sangat bagus", 5, ts, userId);
+
+    @Setup
+    public void setup() {
+        client = new SupabaseClient("https://example.supabase.co", "bench-key");
+        // kunci dibuat saat entri dibuat, bukan saat request dibangun
+        batch = SupabaseClient.keyed(BenchData.entries(500, 1));
+    }
+
+    @Benchmark
+    public String entriesUri() {
+        return client.entriesUri(userId, start, end);
+    }
+
+    @Benchmark
+    public HttpRequest rangeGet() {
+        return client.csvGet(client.entriesUri(userId, start, end));
+    }
+
+    @Benchmark
+    public HttpRequest insertMood() {
+        return client.insertMoodRequest(entry);
+    }
+
+    @Benchmark
+    public HttpRequest insertMoodsBatch() {
+        return client.insertMoodsRequest(batch);
+    }
+}
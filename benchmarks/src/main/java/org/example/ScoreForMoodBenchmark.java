@@ -0,0 +1,41 @@
+package org.example;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * MoodTracker.scoreForMood over a shuffled batch of mood labels (fresh String instances, as decoded from CSV).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ScoreForMoodBenchmark {
+    private final String[] moods = new String[1024];
+
+    @Setup
+    public void setup() {
+        SplittableRandom rnd = new SplittableRandom(7);
+        for (int i = 0; i < moods.length; i++) moods[i] = new String(BenchData.MOODS[rnd.nextInt(BenchData.MOODS.length)]);
+    }
+
+    @Benchmark
+    public int scoreBatch() {
+        int sum = 0;
+        for (String m : moods) sum += MoodTracker.scoreForMood(m);
+        return sum;
+    }
+}
@@ -0,0 +1,34 @@
+package org.example;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Timestamp text as Supabase returns it, through SupabaseClient.parseTimestamp. "local" has no offset
+ * and used to hit the exception fallback path.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TimestampParseBenchmark {
+    @Param({"2025-11-02 22:00:00+00", "2025-11-02T22:00:00.123456+00:00", "2025-11-02T22:00:00Z", "2025-11-02T22:00"})
+    public String text;
+
+    @Benchmark
+    public Object parseTimestamp() {
+        return SupabaseClient.parseTimestamp(text);
+    }
+}
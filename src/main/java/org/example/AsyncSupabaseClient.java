@@ -0,0 +1,190 @@
+package org.example;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Versi asinkron dari {@link SupabaseClient} berbasis {@code HttpClient.sendAsync}.
+ * - memakai HttpClient (dan executor virtual thread) milik SupabaseClient, jadi ratusan request
+ *   per-user bisa berjalan bersamaan tanpa ratusan platform thread
+ * - kegagalan tidak ditelan: future selesai secara exceptional dengan {@link SupabaseException}
+ *   (status non-2xx) atau IOException (jaringan, deadline, circuit breaker terbuka)
+ * - deadline/retry/circuit breaker/hedging sama dengan klien sinkron (lihat {@link Resilience})
+ * - baris mood diminta dalam {@link MoodCodec#MEDIA_TYPE} jika series transfer aktif, dan query per user
+ *   melewati cache seperti {@link SupabaseClient#fetchAllEntriesForUser}
+ *
+ * Dapatkan instance lewat {@link SupabaseClient#async()}.
+ */
+public class AsyncSupabaseClient {
+    private final SupabaseClient client;
+
+    AsyncSupabaseClient(SupabaseClient client) {
+        this.client = client;
+    }
+
+    public CompletableFuture<Void> insertMood(String mood, int score, LocalDateTime ts, String userId) {
+        return insertMood(SupabaseClient.MoodEntry.create(mood, score, ts, userId));
+    }
+
+    public CompletableFuture<Void> insertMood(SupabaseClient.MoodEntry entry) {
+        SupabaseClient.MoodEntry row = entry.keyed();
+        return check("insertMood", client.postMoods("insertMood", () -> client.insertMoodRequest(row)))
+                .thenRun(() -> client.onInserted(List.of(row)));
+    }
+
+    public CompletableFuture<Void> insertMoods(List<SupabaseClient.MoodEntry> entries) {
+        if (entries.isEmpty()) return CompletableFuture.completedFuture(null);
+        List<SupabaseClient.MoodEntry> rows = SupabaseClient.keyed(entries);
+        return check("insertMoods", client.postMoods("insertMoods", () -> client.insertMoodsRequest(rows)))
+                .thenRun(() -> client.onInserted(rows));
+    }
+
+    public CompletableFuture<List<SupabaseClient.MoodEntry>> fetchEntriesBetween(LocalDate startDate, LocalDate endDate) {
+        return fetchEntries("fetchEntriesBetween", client.entriesUri(null, startDate, endDate), null);
+    }
+
+    public CompletableFuture<List<SupabaseClient.MoodEntry>> fetchAllEntries() {
+        return fetchEntries("fetchAllEntries", client.entriesUri(null, null, null), null);
+    }
+
+    public CompletableFuture<List<SupabaseClient.MoodEntry>> fetchAllEntriesForUser(String userId) {
+        return fetchHistory("fetchAllEntriesForUser", userId, null, null).thenApply(MoodHistory::asList);
+    }
+
+    /**
+     * The user's whole history as a frozen {@link MoodHistory}, from the cache when it is there.
+     */
+    public CompletableFuture<MoodHistory> fetchHistoryForUser(String userId) {
+        return fetchHistory("fetchAllEntriesForUser", userId, null, null);
+    }
+
+    public CompletableFuture<List<SupabaseClient.MoodEntry>> fetchEntriesBetweenForUser(LocalDate startDate, LocalDate endDate, String userId) {
+        return fetchHistory("fetchEntriesBetweenForUser", userId, startDate, endDate).thenApply(MoodHistory::asList);
+    }
+
+    public CompletableFuture<Void> createUser(String username, String passwordHash, LocalDateTime lastLogin) {
+        return send("createUser", client.createUserRequest(username, passwordHash, lastLogin));
+    }
+
+    /**
+     * Completes with the user, or null if no such username exists.
+     */
+    public CompletableFuture<SupabaseClient.UserEntry> fetchUserByUsername(String username) {
+        return fetchCsv("fetchUserByUsername", client.userByUsernameUri(username), body -> {
+            List<SupabaseClient.UserEntry> users = SupabaseClient.parseCsvToUsers(body);
+            return users.isEmpty() ? null : users.get(0);
+        });
+    }
+
+    public CompletableFuture<Void> updateUserLastLogin(String id, LocalDateTime lastLogin) {
+        return send("updateUserLastLogin", client.updateUserLastLoginRequest(id, lastLogin));
+    }
+
+    /**
+     * Replace the stored password hash (e.g. after {@link PasswordHasher} re-hashed it at a new cost).
+     * Does nothing if the stored hash no longer equals {@code oldHash}.
+     */
+    public CompletableFuture<Void> updatePasswordHash(String id, String oldHash, String newHash) {
+        return send("updatePasswordHash", client.updatePasswordHashRequest(id, oldHash, newHash));
+    }
+
+    private CompletableFuture<List<SupabaseClient.MoodEntry>> fetchEntries(String op, String uri, String userId) {
+        return fetchMoods(op, uri, body -> {
+            List<SupabaseClient.MoodEntry> out = new ArrayList<>();
+            SupabaseClient.parseCsvToEntries(body, userId, out::add);
+            return out;
+        }, body -> {
+            List<SupabaseClient.MoodEntry> out = new ArrayList<>();
+            SupabaseClient.readSeries(body, userId, out::add);
+            return out;
+        });
+    }
+
+    // range per user lewat cache, sama seperti SupabaseClient.cachedHistory; hanya respons sukses yang disimpan
+    private CompletableFuture<MoodHistory> fetchHistory(String op, String userId, LocalDate startDate, LocalDate endDate) {
+        MoodHistory hit = client.peekCache(userId, startDate, endDate);
+        if (hit != null) return CompletableFuture.completedFuture(hit);
+        // insert yang selesai selama request berjalan sudah mem-patch cache; respons ini lebih lama dari itu
+        long version = client.cacheVersion();
+        return fetchMoods(op, client.entriesUri(userId, startDate, endDate), body -> {
+            MoodHistory out = new MoodHistory();
+            SupabaseClient.parseCsvToHistory(body, userId, out);
+            return out.freeze();
+        }, body -> {
+            MoodHistory out = new MoodHistory();
+            MoodCodec.read(body, userId, out);
+            return out.freeze();
+        }).thenApply(history -> {
+            client.cacheRange(userId, startDate, endDate, history, version);
+            return history;
+        });
+    }
+
+    private interface BodyParser<T> {
+        T parse(InputStream body) throws IOException;
+    }
+
+    private <T> CompletableFuture<T> fetchCsv(String op, String uri, BodyParser<T> parser) {
+        return fetchMoods(op, uri, parser, null);
+    }
+
+    /**
+     * GET {@code uri} like {@code SupabaseClient.fetchMoods}: asks for the series encoding when it is enabled and
+     * {@code series} is given, and decodes with whichever parser matches the response's Content-Type.
+     */
+    private <T> CompletableFuture<T> fetchMoods(String op, String uri, BodyParser<T> csv, BodyParser<T> series) {
+        HttpRequest req = series != null ? client.moodsGet(uri) : client.csvGet(uri);
+        return client.sendAsync(op, req, SupabaseClient.decodedBody())
+                // body dibaca (blocking) di virtual thread, bukan di thread pemanggil
+                .thenApplyAsync(resp -> {
+                    try (InputStream body = resp.body()) {
+                        if (resp.statusCode() < 200 || resp.statusCode() >= 300) {
+                            throw new SupabaseException(op, resp.statusCode(), SupabaseClient.readBody(body));
+                        }
+                        BodyParser<T> parser = series != null && SupabaseClient.isSeries(resp) ? series : csv;
+                        long t0 = System.nanoTime();
+                        T parsed = parser.parse(body);
+                        client.metrics().parsed(op, rows(parsed), System.nanoTime() - t0);
+                        return parsed;
+                    } catch (IOException ex) {
+                        throw new UncheckedIOException(ex);
+                    }
+                }, client.executor)
+                .exceptionallyCompose(AsyncSupabaseClient::unwrapUnchecked);
+    }
+
+    private CompletableFuture<Void> send(String op, HttpRequest req) {
+        return check(op, client.sendAsync(op, req, HttpResponse.BodyHandlers.ofString()));
+    }
+
+    private static CompletableFuture<Void> check(String op, CompletableFuture<HttpResponse<String>> response) {
+        return response.thenCompose(resp -> {
+            if (resp.statusCode() < 200 || resp.statusCode() >= 300) {
+                return CompletableFuture.failedFuture(new SupabaseException(op, resp.statusCode(), resp.body()));
+            }
+            return CompletableFuture.completedFuture(null);
+        });
+    }
+
+    // jumlah baris untuk metrik: list/riwayat per elemen, objek tunggal (user) = 1
+    private static int rows(Object parsed) {
+        if (parsed instanceof List<?> l) return l.size();
+        if (parsed instanceof MoodHistory h) return h.size();
+        return parsed == null ? 0 : 1;
+    }
+
+    // UncheckedIOException hanya pembungkus di dalam lambda; kembalikan IOException aslinya ke pemanggil
+    private static <T> CompletableFuture<T> unwrapUnchecked(Throwable t) {
+        Throwable cause = t instanceof java.util.concurrent.CompletionException && t.getCause() != null ? t.getCause() : t;
+        if (cause instanceof UncheckedIOException u) return CompletableFuture.failedFuture(u.getCause());
+        return CompletableFuture.failedFuture(cause);
+    }
+}
@@ -0,0 +1,143 @@
+package org.example;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Pembaca CSV streaming (RFC 4180) satu baris per panggilan.
+ * - mendukung field ber-kutip, koma/newline di dalam kutip, dan "" sebagai escape
+ * - baris dibaca ke buffer yang dipakai ulang, jadi memori tetap kecil berapapun jumlah baris
+ *
+ * Pemakaian: {@code while (r.next()) { String a = r.field(0); ... }}
+ */
+final class CsvReader implements Closeable {
+    private final Reader in;
+    private final char[] buf = new char[8192];
+    private int pos = 0;
+    private int limit = 0;
+
+    // isi record saat ini (tanpa kutip), dengan posisi akhir tiap field
+    private final StringBuilder row = new StringBuilder(128);
+    private int[] ends = new int[16];
+    private int count = 0;
+
+    CsvReader(InputStream in) {
+        this(new InputStreamReader(in, StandardCharsets.UTF_8));
+    }
+
+    CsvReader(Reader in) {
+        this.in = in;
+    }
+
+    /**
+     * Read the next record. Returns false at end of input.
+     */
+    boolean next() throws IOException {
+        row.setLength(0);
+        count = 0;
+        if (!fill()) return false;
+        boolean quoted = false;
+        while (true) {
+            if (pos == limit && !fill()) {
+                endField();
+                return true;
+            }
+            char c = buf[pos++];
+            if (quoted) {
+                if (c == '"') {
+                    if ((pos < limit || fill()) && buf[pos] == '"') {
+                        row.append('"');
+                        pos++;
+                    } else {
+                        quoted = false;
+                    }
+                } else {
+                    row.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                endField();
+            } else if (c == '\n') {
+                endField();
+                return true;
+            } else if (c == '\r') {
+                endField();
+                if ((pos < limit || fill()) && buf[pos] == '\n') pos++;
+                return true;
+            } else {
+                row.append(c);
+            }
+        }
+    }
+
+    /** Number of fields in the current record. */
+    int size() {
+        return count;
+    }
+
+    /** True for an empty line (a single empty field). */
+    boolean isBlank() {
+        return count == 1 && ends[0] == 0;
+    }
+
+    String field(int i) {
+        return row.substring(start(i), ends[i]);
+    }
+
+    /**
+     * Field {@code i} as a decimal int (surrounding whitespace ignored) without creating a String,
+     * or {@code def} if it is not a valid number.
+     */
+    int intField(int i, int def) {
+        int p = start(i), end = ends[i];
+        while (p < end && row.charAt(p) <= ' ') p++;
+        while (end > p && row.charAt(end - 1) <= ' ') end--;
+        boolean neg = p < end && row.charAt(p) == '-';
+        if (neg || (p < end && row.charAt(p) == '+')) p++;
+        if (p == end || end - p > 9) return def;
+        int v = 0;
+        for (; p < end; p++) {
+            char c = row.charAt(p);
+            if (c < '0' || c > '9') return def;
+            v = v * 10 + (c - '0');
+        }
+        return neg ? -v : v;
+    }
+
+    int start(int i) {
+        return i == 0 ? 0 : ends[i - 1];
+    }
+
+    int end(int i) {
+        return ends[i];
+    }
+
+    /** Raw characters of the current record; valid until the next call to {@link #next()}. */
+    CharSequence chars() {
+        return row;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    private void endField() {
+        if (count == ends.length) ends = java.util.Arrays.copyOf(ends, count * 2);
+        ends[count++] = row.length();
+    }
+
+    private boolean fill() throws IOException {
+        if (pos < limit) return true;
+        int n = in.read(buf, 0, buf.length);
+        if (n <= 0) return false;
+        pos = 0;
+        limit = n;
+        return true;
+    }
+}
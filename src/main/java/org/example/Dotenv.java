@@ -48,4 +48,26 @@ public final class Dotenv {
         if (cache == null) load();
         return cache == null ? null : cache.get(key);
     }
+
+    /**
+     * Environment variable {@code key}, falling back to the .env file.
+     */
+    public static String env(String key) {
+        String v = System.getenv(key);
+        return v != null ? v : get(key);
+    }
+
+    /**
+     * Integer setting from the environment/.env, or {@code def} if missing or not a number.
+     */
+    public static int envInt(String key, int def) {
+        String v = env(key);
+        if (v == null || v.isBlank()) return def;
+        try {
+            return Integer.parseInt(v.trim());
+        } catch (NumberFormatException e) {
+            System.err.println("Nilai " + key + " tidak valid: " + v);
+            return def;
+        }
+    }
 }
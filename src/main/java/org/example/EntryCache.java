@@ -0,0 +1,132 @@
+package org.example;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Cache read-through untuk hasil query 'moods' per (user, rentang tanggal).
+ * - dibatasi jumlah entri (LRU) dan umur (TTL)
+ * - setelah insert berhasil, entri baru disisipkan langsung ke semua rentang yang memuatnya
+ *   (patch in place) sehingga tampilan berikutnya tidak perlu request ke Supabase
+ *
+ * Key dengan userId null berarti "semua user"; start/end null berarti tanpa batas.
+ * Nilai disimpan sebagai {@link MoodHistory} yang di-freeze; patch membuat salinan baru (copy-on-write)
+ * sehingga pembaca yang masih memegang versi lama tidak terpengaruh. Rentang panjang
+ * (>= {@link #COMPRESS_MIN_ROWS} baris) disimpan terkompresi dengan {@link MoodCodec} dan di-decode saat dibaca.
+ */
+class EntryCache {
+    private record Key(String userId, LocalDate start, LocalDate end) {
+        boolean covers(SupabaseClient.MoodEntry e) {
+            if (userId != null && !userId.equals(e.userId)) return false;
+            LocalDate d = e.timestamp.toLocalDate();
+            return (start == null || !d.isBefore(start)) && (end == null || !d.isAfter(end));
+        }
+    }
+
+    // tepat satu dari entries/packed terisi
+    private record Value(MoodHistory entries, byte[] packed, long loadedAtNanos) {
+        static Value of(MoodHistory h, long loadedAtNanos) {
+            if (h.size() >= COMPRESS_MIN_ROWS) return new Value(null, MoodCodec.encode(h), loadedAtNanos);
+            return new Value(h.isFrozen() ? h : h.copy().freeze(), null, loadedAtNanos);
+        }
+
+        MoodHistory history() {
+            return entries != null ? entries : MoodCodec.decode(packed);
+        }
+    }
+
+    /** Ranges with at least this many rows are kept encoded. */
+    static final int COMPRESS_MIN_ROWS = 4096;
+
+    private final int maxEntries;
+    private final long ttlNanos;
+    private final LinkedHashMap<Key, Value> map;
+    // naik setiap patch/invalidate; hasil fetch yang dimulai sebelum itu tidak boleh menimpa cache
+    private long version;
+
+    EntryCache(int maxEntries, Duration ttl) {
+        this.maxEntries = maxEntries;
+        this.ttlNanos = ttl.toNanos();
+        this.map = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Value> eldest) {
+                return size() > EntryCache.this.maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Cached rows for the range, or null on a miss or expired entry.
+     */
+    MoodHistory get(String userId, LocalDate start, LocalDate end) {
+        Key key = new Key(userId, start, end);
+        Value v;
+        synchronized (this) {
+            v = map.get(key);
+            if (v == null) return null;
+            if (System.nanoTime() - v.loadedAtNanos > ttlNanos) {
+                map.remove(key);
+                return null;
+            }
+        }
+        // decode di luar lock
+        return v.history();
+    }
+
+    synchronized void put(String userId, LocalDate start, LocalDate end, MoodHistory entries) {
+        map.put(new Key(userId, start, end), Value.of(entries, System.nanoTime()));
+    }
+
+    /** Current version; pass it to {@link #put(String, LocalDate, LocalDate, MoodHistory, long)} after a fetch. */
+    synchronized long version() {
+        return version;
+    }
+
+    /**
+     * Store a fetch result only if nothing was patched or invalidated since {@code seenVersion} was read, so a
+     * slow response cannot replace a range that already contains newer inserts.
+     */
+    synchronized void put(String userId, LocalDate start, LocalDate end, MoodHistory entries, long seenVersion) {
+        if (version == seenVersion) put(userId, start, end, entries);
+    }
+
+    /**
+     * Insert newly written rows into every cached range that contains them, keeping timestamp order.
+     */
+    synchronized void patch(List<SupabaseClient.MoodEntry> inserted) {
+        version++;
+        for (Iterator<Map.Entry<Key, Value>> it = map.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<Key, Value> me = it.next();
+            Key key = me.getKey();
+            MoodHistory patched = null;
+            try {
+                for (SupabaseClient.MoodEntry e : inserted) {
+                    if (!key.covers(e)) continue;
+                    if (patched == null) patched = me.getValue().history().copy();
+                    patched.insertSorted(e);
+                }
+            } catch (MoodHistory.MoodTableFullException ex) {
+                // rentang ini tidak bisa ditambal; dibuang, request berikutnya mengambilnya dari server
+                it.remove();
+                continue;
+            }
+            if (patched != null) me.setValue(Value.of(patched.freeze(), me.getValue().loadedAtNanos));
+        }
+    }
+
+    /** Drop every cached range that could contain rows of {@code userId}. */
+    synchronized void invalidateUser(String userId) {
+        version++;
+        map.keySet().removeIf(k -> k.userId == null || Objects.equals(k.userId, userId));
+    }
+
+    synchronized void clear() {
+        version++;
+        map.clear();
+    }
+}
@@ -0,0 +1,415 @@
+package org.example;
+
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.function.Consumer;
+
+/**
+ * Snapshot biner riwayat mood satu user di disk, di-memory-map dengan {@link MemorySegment} (FFM API).
+ * - record lebar tetap 16 byte, urut timestamp: {@code epochMicros:long, score:byte, moodCode:byte, -, userId:int}
+ *   (little-endian); kode mood 0..4 = {@link Mood} ordinal, kode lain dan user id ada di kamus {@code <file>.dict}
+ * - header 128 byte menyimpan jumlah record dan watermark sinkronisasi ((timestamp, id) baris terakhir, posisi
+ *   keyset {@link MoodCursor}), jadi saat start riwayat yang sudah ada cukup di-mmap tanpa unduh ulang
+ * - {@link #sync} hanya meminta baris setelah watermark dan menambahkannya di akhir file; insert lokal
+ *   yang lebih awal dari watermark memotong snapshot sampai sebelum timestamp-nya, jadi sync berikutnya
+ *   mengunduh ulang bagian itu termasuk baris baru tersebut
+ * - agregasi dan tampilan riwayat membaca record langsung dari segment, tanpa salinan di heap
+ *
+ * Record tidak pernah ditimpa setelah masuk hitungan header: append menulis record dulu lalu jumlah + watermark,
+ * pemotongan hanya menulis header. Crash di tengah jalan membuang paling banyak baris yang belum di-commit (diambil
+ * lagi oleh sync berikutnya). Semua method synchronized kecuali {@link #sync}, yang mengunduh tanpa memegang lock.
+ */
+public final class EntryHistory implements AutoCloseable {
+    static final int HEADER_BYTES = 128;
+    static final int RECORD_BYTES = 16;
+    private static final int MAGIC = 0x5348444D; // "MDHS"
+    private static final int VERSION = 2;
+    private static final long MICROS_PER_DAY = 86_400_000_000L;
+    private static final long NO_WATERMARK = Long.MIN_VALUE;
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private static final ValueLayout.OfLong LONG = ValueLayout.JAVA_LONG_UNALIGNED.withOrder(ByteOrder.LITTLE_ENDIAN);
+    private static final ValueLayout.OfInt INT = ValueLayout.JAVA_INT_UNALIGNED.withOrder(ByteOrder.LITTLE_ENDIAN);
+
+    // header offsets; id baris terakhir disimpan sebagai UTF-8 (bigint atau uuid dalam bentuk teks)
+    private static final long H_MAGIC = 0, H_VERSION = 4, H_COUNT = 8, H_WATERMARK = 16, H_LAST_ID_LENGTH = 24,
+            H_RECORD_BYTES = 28, H_LAST_ID = 32;
+    private static final int MAX_ID_BYTES = HEADER_BYTES - (int) H_LAST_ID;
+    // record offsets
+    private static final long R_MICROS = 0, R_SCORE = 8, R_MOOD = 9, R_USER = 12;
+
+    private final Path file;
+    private final Path dictFile;
+    private final SupabaseClient supabase;
+    private final String userId;
+    private final Consumer<List<SupabaseClient.MoodEntry>> insertListener = this::onInserted;
+    private final FileChannel channel;
+
+    // guarded by this
+    private Arena arena;
+    private MemorySegment segment;
+    private long capacity;
+    private int count;
+    // naik setiap kali watermark di header berubah; sync membuang halaman yang diunduh dari posisi lama
+    private long generation;
+    private final List<String> moodLabels = new ArrayList<>();
+    private final List<Integer> moodScores = new ArrayList<>();
+    private final List<String> userIds = new ArrayList<>();
+    private boolean closed = false;
+
+    private EntryHistory(Path file, SupabaseClient supabase, String userId) throws IOException {
+        this.file = file;
+        this.dictFile = file.resolveSibling(file.getFileName() + ".dict");
+        this.supabase = supabase;
+        this.userId = userId;
+        if (file.getParent() != null) Files.createDirectories(file.getParent());
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        for (Mood m : Mood.values()) {
+            moodLabels.add(m.label());
+            moodScores.add(m.score());
+        }
+        long size = channel.size();
+        if (size < HEADER_BYTES) {
+            map(INITIAL_CAPACITY);
+            writeHeader(0, NO_WATERMARK, null);
+            Files.deleteIfExists(dictFile);
+        } else {
+            map(Math.max(INITIAL_CAPACITY, (size - HEADER_BYTES) / RECORD_BYTES));
+            if (segment.get(INT, H_MAGIC) != MAGIC || segment.get(INT, H_VERSION) != VERSION
+                    || segment.get(INT, H_RECORD_BYTES) != RECORD_BYTES) {
+                throw new IOException("Bukan snapshot EntryHistory yang valid: " + file);
+            }
+            count = (int) Math.min(segment.get(LONG, H_COUNT), capacity);
+            readDictionary();
+        }
+    }
+
+    /**
+     * Open (or create) the snapshot of {@code userId} at {@code file}. Rows written through {@code supabase}
+     * before the watermark are inserted into the snapshot as they are confirmed.
+     */
+    public static EntryHistory open(Path file, SupabaseClient supabase, String userId) throws IOException {
+        EntryHistory h = new EntryHistory(file, supabase, userId);
+        supabase.addInsertListener(h.insertListener);
+        return h;
+    }
+
+    public String getUserId() {
+        return userId;
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    public synchronized int size() {
+        return count;
+    }
+
+    /** Timestamp of the newest synced row, or null before the first sync. */
+    public synchronized LocalDateTime getWatermark() {
+        long w = segment.get(LONG, H_WATERMARK);
+        return w == NO_WATERMARK ? null : MoodHistory.toLocalDateTime(w);
+    }
+
+    /**
+     * Fetch rows newer than the watermark and append them to the file, page by page. Requests run without holding
+     * the lock; each page is appended under it, and if the watermark moved meanwhile (a late insert, {@link #clear}
+     * or another sync) the page is dropped and the sync continues from the new watermark. Returns the number of new
+     * rows, or -1 if a request failed (rows received before the failure are kept and the watermark follows them).
+     */
+    public int sync(int pageSize) {
+        int added = 0;
+        restart:
+        while (true) {
+            long seen;
+            LocalDateTime after;
+            String lastId;
+            synchronized (this) {
+                checkOpen();
+                seen = generation;
+                long watermark = segment.get(LONG, H_WATERMARK);
+                after = watermark == NO_WATERMARK ? null : MoodHistory.toLocalDateTime(watermark);
+                lastId = lastId();
+            }
+            try (MoodCursor cursor = supabase.cursorEntriesForUserSince(userId, after, lastId, pageSize)) {
+                List<SupabaseClient.MoodEntry> page = new ArrayList<>(pageSize);
+                while (true) {
+                    page.clear();
+                    while (page.size() < pageSize && cursor.hasNext()) page.add(cursor.next());
+                    if (page.isEmpty()) return cursor.failed() ? -1 : added;
+                    synchronized (this) {
+                        if (closed) return added;
+                        if (generation != seen) continue restart;
+                        append(page);
+                        seen = generation;
+                    }
+                    added += page.size();
+                }
+            } catch (IOException ex) {
+                ex.printStackTrace();
+                return -1;
+            }
+        }
+    }
+
+    /** Drop every record; the next {@link #sync} downloads the full history again. */
+    public synchronized void clear() {
+        checkOpen();
+        count = 0;
+        generation++;
+        writeHeader(0, NO_WATERMARK, null);
+        segment.force();
+    }
+
+    /** Index of the first record on or after {@code date} (UTC). */
+    public synchronized int indexOf(LocalDate date) {
+        return lowerBound(date.toEpochDay() * MICROS_PER_DAY);
+    }
+
+    public synchronized long epochMicros(int i) {
+        return segment.get(LONG, offset(checkIndex(i)) + R_MICROS);
+    }
+
+    public synchronized int score(int i) {
+        return segment.get(ValueLayout.JAVA_BYTE, offset(checkIndex(i)) + R_SCORE);
+    }
+
+    public synchronized String mood(int i) {
+        return moodLabels.get(segment.get(ValueLayout.JAVA_BYTE, offset(checkIndex(i)) + R_MOOD) & 0xFF);
+    }
+
+    public synchronized SupabaseClient.MoodEntry entry(int i) {
+        long off = offset(checkIndex(i));
+        return new SupabaseClient.MoodEntry(
+                moodLabels.get(segment.get(ValueLayout.JAVA_BYTE, off + R_MOOD) & 0xFF),
+                segment.get(ValueLayout.JAVA_BYTE, off + R_SCORE),
+                MoodHistory.toLocalDateTime(segment.get(LONG, off + R_MICROS)),
+                userIds.isEmpty() ? userId : userIds.get(segment.get(INT, off + R_USER)));
+    }
+
+    /** Read-only view in timestamp order; each {@code get} reads one record and creates one entry. */
+    public List<SupabaseClient.MoodEntry> asList() {
+        return new EntryView();
+    }
+
+    /**
+     * Count/sum/min/max of records dated [startDate, endDate] per bucket of {@code width}, scanned straight
+     * from the mapped file. Each row's {@code date} is the first day of its bucket; empty buckets are omitted.
+     */
+    public synchronized List<SupabaseClient.DailyAggregate> aggregate(LocalDate startDate, LocalDate endDate, ScoreKernel.Width width) {
+        List<SupabaseClient.DailyAggregate> out = new ArrayList<>();
+        int i = lowerBound(startDate.toEpochDay() * MICROS_PER_DAY);
+        int to = lowerBound(endDate.plusDays(1).toEpochDay() * MICROS_PER_DAY);
+        while (i < to) {
+            long start = ScoreKernel.bucketStart(Math.floorDiv(segment.get(LONG, offset(i) + R_MICROS), MICROS_PER_DAY), width);
+            long limit = ScoreKernel.nextBucketStart(start, width) * MICROS_PER_DAY;
+            int n = 0, min = Integer.MAX_VALUE, max = Integer.MIN_VALUE;
+            long sum = 0;
+            for (; i < to; i++) {
+                long off = offset(i);
+                if (segment.get(LONG, off + R_MICROS) >= limit) break;
+                int s = segment.get(ValueLayout.JAVA_BYTE, off + R_SCORE);
+                n++;
+                sum += s;
+                min = Math.min(min, s);
+                max = Math.max(max, s);
+            }
+            out.add(new SupabaseClient.DailyAggregate(LocalDate.ofEpochDay(start), n, sum, min, max));
+        }
+        return out;
+    }
+
+    public List<SupabaseClient.DailyAggregate> daily(LocalDate startDate, LocalDate endDate) {
+        return aggregate(startDate, endDate, ScoreKernel.Width.DAY);
+    }
+
+    @Override
+    public synchronized void close() {
+        if (closed) return;
+        closed = true;
+        supabase.removeInsertListener(insertListener);
+        segment.force();
+        arena.close();
+        try {
+            channel.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    // -------------------- Internals --------------------
+
+    private synchronized void onInserted(List<SupabaseClient.MoodEntry> inserted) {
+        if (closed) return;
+        long watermark = segment.get(LONG, H_WATERMARK);
+        if (watermark == NO_WATERMARK) return;
+        // baris >= watermark akan datang lewat sync berikutnya
+        long earliest = Long.MAX_VALUE;
+        for (SupabaseClient.MoodEntry e : inserted) {
+            if (userId.equals(e.userId)) earliest = Math.min(earliest, MoodHistory.toEpochMicros(e.timestamp));
+        }
+        if (earliest >= watermark) return;
+        // potong sampai sebelum timestamp itu; semua baris dengan timestamp record terakhir yang tersisa ikut
+        // tersimpan, jadi watermark tanpa id ("timestamp > watermark") tidak melewatkan baris seri
+        int keep = lowerBound(earliest);
+        count = keep;
+        commit(keep == 0 ? NO_WATERMARK : segment.get(LONG, offset(keep - 1) + R_MICROS), null);
+    }
+
+    // tulis satu halaman di akhir file lalu commit header; dipanggil dengan lock
+    private void append(List<SupabaseClient.MoodEntry> page) throws IOException {
+        ensureCapacity(count + page.size());
+        int n = count;
+        for (SupabaseClient.MoodEntry e : page) {
+            writeRecord(n++, MoodHistory.toEpochMicros(e.timestamp), e.score, moodCode(e.mood, e.score), userIndex(e.userId));
+        }
+        count = n;
+        SupabaseClient.MoodEntry last = page.get(page.size() - 1);
+        commit(MoodHistory.toEpochMicros(last.timestamp), last.id);
+    }
+
+    private void commit(long watermark, String lastId) {
+        segment.force();
+        writeHeader(count, watermark, lastId);
+        segment.asSlice(0, HEADER_BYTES).force();
+        generation++;
+    }
+
+    private void writeHeader(int n, long watermark, String lastId) {
+        byte[] id = lastId == null ? new byte[0] : lastId.getBytes(StandardCharsets.UTF_8);
+        // tidak terjadi untuk bigint/uuid; tanpa id sync berikutnya mulai dari baris setelah timestamp watermark
+        if (id.length > MAX_ID_BYTES) id = new byte[0];
+        segment.set(INT, H_MAGIC, MAGIC);
+        segment.set(INT, H_VERSION, VERSION);
+        segment.set(LONG, H_COUNT, n);
+        segment.set(LONG, H_WATERMARK, watermark);
+        segment.set(INT, H_LAST_ID_LENGTH, id.length);
+        segment.set(INT, H_RECORD_BYTES, RECORD_BYTES);
+        MemorySegment.copy(id, 0, segment, ValueLayout.JAVA_BYTE, H_LAST_ID, id.length);
+    }
+
+    // id baris terakhir yang sudah disinkronkan, atau null
+    private String lastId() {
+        int n = segment.get(INT, H_LAST_ID_LENGTH);
+        if (n <= 0 || n > MAX_ID_BYTES) return null;
+        return new String(segment.asSlice(H_LAST_ID, n).toArray(ValueLayout.JAVA_BYTE), StandardCharsets.UTF_8);
+    }
+
+    private void writeRecord(int i, long micros, int score, int moodCode, int user) {
+        long off = offset(i);
+        segment.set(LONG, off + R_MICROS, micros);
+        segment.set(ValueLayout.JAVA_BYTE, off + R_SCORE, (byte) score);
+        segment.set(ValueLayout.JAVA_BYTE, off + R_MOOD, (byte) moodCode);
+        segment.set(INT, off + R_USER, user);
+    }
+
+    private void ensureCapacity(long records) throws IOException {
+        if (records <= capacity) return;
+        segment.force();
+        arena.close();
+        map(Math.max(records, capacity * 2));
+    }
+
+    // map READ_WRITE memperbesar file sampai ukuran mapping
+    private void map(long records) throws IOException {
+        Arena a = Arena.ofShared();
+        try {
+            segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES + records * RECORD_BYTES, a);
+        } catch (IOException | RuntimeException e) {
+            a.close();
+            throw e;
+        }
+        arena = a;
+        capacity = records;
+    }
+
+    private static long offset(int i) {
+        return HEADER_BYTES + (long) i * RECORD_BYTES;
+    }
+
+    private int lowerBound(long micros) {
+        int lo = 0, hi = count;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (segment.get(LONG, offset(mid) + R_MICROS) < micros) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    private int checkIndex(int i) {
+        if (i < 0 || i >= count) throw new IndexOutOfBoundsException("Index " + i + " out of bounds for size " + count);
+        return i;
+    }
+
+    private void checkOpen() {
+        if (closed) throw new IllegalStateException("EntryHistory is closed");
+    }
+
+    // -------------------- Dictionary (<file>.dict) --------------------
+    // satu entri per baris: "m<TAB>score<TAB>label" atau "u<TAB>userId"; ditulis sebelum record yang memakainya
+
+    private int moodCode(String mood, int score) throws IOException {
+        for (int c = 0; c < moodLabels.size(); c++) {
+            if (moodScores.get(c) == score && java.util.Objects.equals(moodLabels.get(c), mood)) return c;
+        }
+        if (moodLabels.size() == 256) throw new IOException("Terlalu banyak label mood berbeda di snapshot " + file);
+        appendDictionary("m\t" + score + "\t" + (mood == null ? "" : mood));
+        moodLabels.add(mood);
+        moodScores.add(score);
+        return moodLabels.size() - 1;
+    }
+
+    private int userIndex(String id) throws IOException {
+        int idx = userIds.indexOf(id);
+        if (idx >= 0) return idx;
+        appendDictionary("u\t" + (id == null ? "" : id));
+        userIds.add(id);
+        return userIds.size() - 1;
+    }
+
+    private void appendDictionary(String line) throws IOException {
+        Files.writeString(dictFile, line.replace('\n', ' ') + "\n", StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND, StandardOpenOption.WRITE, StandardOpenOption.SYNC);
+    }
+
+    private void readDictionary() throws IOException {
+        if (!Files.exists(dictFile)) return;
+        for (String line : Files.readAllLines(dictFile, StandardCharsets.UTF_8)) {
+            String[] p = line.split("\t", -1);
+            if (p.length == 3 && p[0].equals("m")) {
+                moodScores.add(Integer.parseInt(p[1]));
+                moodLabels.add(p[2].isEmpty() ? null : p[2]);
+            } else if (p.length == 2 && p[0].equals("u")) {
+                userIds.add(p[1].isEmpty() ? null : p[1]);
+            }
+        }
+    }
+
+    private final class EntryView extends AbstractList<SupabaseClient.MoodEntry> implements RandomAccess {
+        @Override
+        public SupabaseClient.MoodEntry get(int index) {
+            return entry(index);
+        }
+
+        @Override
+        public int size() {
+            return EntryHistory.this.size();
+        }
+    }
+}
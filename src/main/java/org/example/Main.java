@@ -4,7 +4,6 @@ import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.util.Scanner;
-import org.mindrot.jbcrypt.BCrypt;
 
 public class Main {
     public static void main(String[] args) {
@@ -16,6 +15,12 @@ public class Main {
         // SUPABASE_URL="https://your-project.supabase.co"
         // SUPABASE_KEY="your_anon_or_service_key"
         Dotenv.load();
+        if (args.length > 0 && args[0].equals("standin")) {
+            // server PostgREST lokal di memori; tidak butuh SUPABASE_URL/SUPABASE_KEY
+            runStandIn(args, scanner);
+            scanner.close();
+            return;
+        }
         String supabaseUrl = System.getenv("SUPABASE_URL");
         if (supabaseUrl == null) supabaseUrl = Dotenv.get("SUPABASE_URL");
         String supabaseKey = System.getenv("SUPABASE_KEY");
@@ -29,8 +34,76 @@ public class Main {
             scanner.close();
             return;
         }
-        SupabaseClient supabaseClient = new SupabaseClient(supabaseUrl, supabaseKey);
+        // koneksi idle disimpan lebih lama dari default JDK (30 detik) supaya request berikutnya tidak handshake ulang
+        if (System.getProperty("jdk.httpclient.keepalive.timeout") == null) {
+            System.setProperty("jdk.httpclient.keepalive.timeout", String.valueOf(Dotenv.envInt("MOODIFY_HTTP_KEEPALIVE_SECONDS", 300)));
+        }
+        SupabaseClient supabaseClient = new SupabaseClient(supabaseUrl, supabaseKey,
+                java.time.Duration.ofMillis(Dotenv.envInt("MOODIFY_HTTP_CONNECT_TIMEOUT_MS", 10_000)),
+                java.time.Duration.ofMillis(Dotenv.envInt("MOODIFY_HTTP_TIMEOUT_MS", 30_000)));
+        // retry/deadline per panggilan, circuit breaker dan hedged read (MOODIFY_HTTP_HEDGE=on)
+        supabaseClient.setRetryPolicy(Dotenv.envInt("MOODIFY_HTTP_RETRIES", 3),
+                java.time.Duration.ofMillis(Dotenv.envInt("MOODIFY_HTTP_DEADLINE_MS", 60_000)));
+        supabaseClient.setCircuitBreaker(Dotenv.envInt("MOODIFY_BREAKER_FAILURES", 5),
+                java.time.Duration.ofMillis(Dotenv.envInt("MOODIFY_BREAKER_OPEN_MS", 30_000)));
+        supabaseClient.enableHedgedReads("on".equalsIgnoreCase(Dotenv.env("MOODIFY_HTTP_HEDGE")));
+        // metrik per operasi lewat JMX, dan opsional dump teks berkala ke file
+        supabaseClient.metrics().register();
+        int metricsDump = Dotenv.envInt("MOODIFY_METRICS_DUMP_SECONDS", 0);
+        if (metricsDump > 0) {
+            String metricsFile = Dotenv.env("MOODIFY_METRICS_FILE");
+            supabaseClient.metrics().startDump(java.time.Duration.ofSeconds(metricsDump),
+                    java.nio.file.Paths.get(metricsFile == null || metricsFile.isBlank() ? "data/metrics.log" : metricsFile));
+        }
+        // MOODIFY_TRANSFER=series: minta data mood dalam format MoodCodec (server yang tidak mendukung tetap mengirim CSV)
+        supabaseClient.enableSeriesTransfer("series".equalsIgnoreCase(Dotenv.env("MOODIFY_TRANSFER")));
+        if (args.length > 0) {
+            // mode perintah (tanpa menu interaktif)
+            runCommand(args, supabaseClient);
+            scanner.close();
+            return;
+        }
+        // cache untuk grafik/statistik/riwayat (MOODIFY_CACHE_TTL_SECONDS=0 untuk menonaktifkan)
+        int cacheTtl = Dotenv.envInt("MOODIFY_CACHE_TTL_SECONDS", 60);
+        if (cacheTtl > 0) {
+            supabaseClient.enableCache(Dotenv.envInt("MOODIFY_CACHE_SIZE", 32), java.time.Duration.ofSeconds(cacheTtl));
+        }
         MoodTracker tracker = new MoodTracker(supabaseClient);
+        // opsional: kirim entri per batch (MOODIFY_WRITE_BEHIND_BATCH > 0, MOODIFY_WRITE_BEHIND_MS)
+        int writeBehindBatch = Dotenv.envInt("MOODIFY_WRITE_BEHIND_BATCH", 0);
+        if (writeBehindBatch > 0) {
+            tracker.enableWriteBehind(writeBehindBatch,
+                    java.time.Duration.ofMillis(Dotenv.envInt("MOODIFY_WRITE_BEHIND_MS", 5000)));
+        }
+        // mode sinkronisasi: riwayat disimpan lokal dan hanya perubahan yang diunduh (MOODIFY_SYNC=on);
+        // MOODIFY_SYNC=snapshot menyimpan riwayat di file biner ter-mmap (MOODIFY_SNAPSHOT_DIR, default data/)
+        String syncMode = Dotenv.env("MOODIFY_SYNC");
+        if ("on".equalsIgnoreCase(syncMode)) tracker.enableSync();
+        else if ("snapshot".equalsIgnoreCase(syncMode)) {
+            String dir = Dotenv.env("MOODIFY_SNAPSHOT_DIR");
+            tracker.enableSync(java.nio.file.Paths.get(dir == null || dir.isBlank() ? "data" : dir));
+        }
+        // entri ditulis dulu ke journal lokal lalu dikirim di background (MOODIFY_JOURNAL=off untuk menonaktifkan)
+        String journalPath = Dotenv.env("MOODIFY_JOURNAL");
+        if (journalPath == null || journalPath.isBlank()) journalPath = "data/moods-journal.csv";
+        if (!journalPath.equalsIgnoreCase("off")) {
+            try {
+                tracker.enableJournal(new MoodJournal(java.nio.file.Paths.get(journalPath), supabaseClient,
+                        Dotenv.envInt("MOODIFY_JOURNAL_BATCH", 500),
+                        java.time.Duration.ofMillis(Dotenv.envInt("MOODIFY_JOURNAL_SYNC_MS", 200))));
+            } catch (java.io.IOException ex) {
+                System.err.println("Gagal membuka journal " + journalPath + ": " + ex.getMessage() + ". Entri dikirim langsung ke Supabase.");
+            }
+        }
+
+        // buka koneksi ke Supabase selagi user membaca menu / mengetik
+        supabaseClient.warmUp();
+        // BCrypt di pool sendiri; cost dikalibrasi ke MOODIFY_BCRYPT_TARGET_MS kecuali MOODIFY_BCRYPT_COST diisi
+        PasswordHasher hasher = new PasswordHasher(
+                java.time.Duration.ofMillis(Dotenv.envInt("MOODIFY_BCRYPT_TARGET_MS", 250)),
+                Dotenv.envInt("MOODIFY_BCRYPT_COST", 0),
+                Dotenv.envInt("MOODIFY_HASH_THREADS", Math.max(1, Runtime.getRuntime().availableProcessors() / 2)),
+                Dotenv.envInt("MOODIFY_HASH_QUEUE", 32));
 
         // --- Login / Register flow: pilih register atau login ---
         SupabaseClient.UserEntry currentUser = null;
@@ -44,6 +117,8 @@ public class Main {
             String opt = scanner.nextLine().trim();
             if (opt.equalsIgnoreCase("q")) {
                 System.out.println("Keluar. Terima kasih.");
+                hasher.close();
+                tracker.close();
                 scanner.close();
                 return;
             }
@@ -58,7 +133,13 @@ public class Main {
                 System.out.print("Pilih password: ");
                 String password = scanner.nextLine();
                 if (password.isEmpty()) { System.out.println("Password tidak boleh kosong."); continue; }
-                String hash = BCrypt.hashpw(password, BCrypt.gensalt(12));
+                String hash;
+                try {
+                    hash = hasher.hash(password).join();
+                } catch (java.util.concurrent.CompletionException ex) {
+                    System.out.println("Server sedang sibuk. Coba lagi sebentar.");
+                    continue;
+                }
                 boolean ok = supabaseClient.createUser(username, hash, LocalDateTime.now());
                 if (ok) {
                     System.out.println("Pendaftaran berhasil. Silakan login.");
@@ -71,23 +152,59 @@ public class Main {
                 System.out.print("Username: ");
                 String username = scanner.nextLine().trim();
                 if (username.isEmpty()) { System.out.println("Username tidak boleh kosong."); continue; }
+                // data user diambil selagi password diketik
+                java.util.concurrent.CompletableFuture<SupabaseClient.UserEntry> userLookup = supabaseClient.async().fetchUserByUsername(username);
                 System.out.print("Password: ");
                 String password = scanner.nextLine();
-                SupabaseClient.UserEntry u = supabaseClient.fetchUserByUsername(username);
+                SupabaseClient.UserEntry u;
+                try {
+                    u = userLookup.join();
+                } catch (java.util.concurrent.CompletionException ex) {
+                    System.err.println("[Main] fetchUserByUsername failed: " + ex.getCause());
+                    System.out.println("Gagal menghubungi server. Coba lagi.");
+                    continue;
+                }
                 if (u == null) { System.out.println("User tidak ditemukan."); continue; }
                 if (u.passwordHash == null || u.passwordHash.isEmpty()) { System.out.println("User belum memiliki password yang valid."); continue; }
-                boolean ok = BCrypt.checkpw(password, u.passwordHash);
-                if (!ok) { System.out.println("Password salah. Coba lagi."); continue; }
+                // riwayat diunduh bersamaan dengan verifikasi BCrypt (dipakai untuk anchor dan cache);
+                // future-nya mengisi cache sendiri, dan dibatalkan jika password salah
+                boolean needHistory = u.createdAt == null || supabaseClient.isCacheEnabled();
+                java.util.concurrent.CompletableFuture<MoodHistory> historyPrefetch = needHistory ? supabaseClient.async().fetchHistoryForUser(u.id) : null;
+                PasswordHasher.Verification check;
+                try {
+                    check = hasher.verify(password, u.passwordHash).join();
+                } catch (java.util.concurrent.CompletionException ex) {
+                    if (historyPrefetch != null) historyPrefetch.cancel(true);
+                    System.out.println("Server sedang sibuk. Coba lagi sebentar.");
+                    continue;
+                }
+                if (!check.ok) {
+                    if (historyPrefetch != null) historyPrefetch.cancel(true);
+                    System.out.println("Password salah. Coba lagi.");
+                    continue;
+                }
                 // sukses
                 currentUser = u;
                 LocalDateTime now = LocalDateTime.now();
                 tracker.setUserLoginDate(now);
+                // hanya user tanpa created_at yang menunggu riwayat (untuk anchor); selain itu cache diisi di background
+                MoodHistory history = null;
+                if (historyPrefetch != null && currentUser.createdAt == null) {
+                    try {
+                        history = historyPrefetch.join();
+                    } catch (java.util.concurrent.CompletionException ex) {
+                        System.err.println("[Main] history prefetch failed: " + ex.getCause());
+                    }
+                } else if (historyPrefetch != null) {
+                    historyPrefetch.exceptionally(ex -> {
+                        System.err.println("[Main] history prefetch failed: " + ex);
+                        return null;
+                    });
+                }
                 // set anchor strictly from user's account creation (timestamp) when available
                 if (currentUser.createdAt == null) {
-                    java.util.List<SupabaseClient.MoodEntry> entries = supabaseClient.fetchAllEntriesForUser(currentUser.id);
-                    if (entries != null && !entries.isEmpty()) {
-                        java.time.LocalDateTime inferred = entries.get(0).timestamp;
-                        tracker.setAnchorDate(inferred);
+                    if (history != null && !history.isEmpty()) {
+                        tracker.setAnchorDate(history.timestamp(0));
                     } else {
                         tracker.setAnchorDate(null);
                     }
@@ -96,8 +213,18 @@ public class Main {
                 }
                 // set current user id in tracker so entries are associated
                 tracker.setUserId(currentUser.id);
-                // set current user id in tracker (no debug print)
-                supabaseClient.updateUserLastLogin(u.id, now);
+                // last_login tidak perlu ditunggu; kegagalannya hanya dicatat
+                supabaseClient.async().updateUserLastLogin(u.id, now).exceptionally(ex -> {
+                    System.err.println("[Main] updateUserLastLogin failed: " + ex);
+                    return null;
+                });
+                // hash lama dengan cost berbeda dari target diganti (juga tanpa ditunggu)
+                if (check.rehash != null) {
+                    supabaseClient.async().updatePasswordHash(u.id, u.passwordHash, check.rehash).exceptionally(ex -> {
+                        System.err.println("[Main] updatePasswordHash failed: " + ex);
+                        return null;
+                    });
+                }
                 System.out.println("Login berhasil sebagai '" + username + "' pada " + now + ".");
                 // show which day number today is relative to the anchor (first-login)
                 long todayDay = tracker.getTodayDayNumber();
@@ -134,28 +261,20 @@ public class Main {
                 
                 case 1 -> {
                     System.out.println("Pilih mood:");
-                    System.out.println("1) Kacau");
-                    System.out.println("2) Buruk");
-                    System.out.println("3) Netral");
-                    System.out.println("4) Bagus");
-                    System.out.println("5) Sangat bagus");
+                    for (Mood m : Mood.values()) {
+                        System.out.println(m.score() + ") " + m.label());
+                    }
                     System.out.print("Masukkan pilihan (1-5): ");
                     String moodChoiceStr = scanner.nextLine().trim();
 
-                    String mood;
+                    // pilihan menu = skor mood
+                    Mood selected;
                     try {
-                        int moodChoice = Integer.parseInt(moodChoiceStr);
-                        mood = switch (moodChoice) {
-                            case 1 -> "Kacau";
-                            case 2 -> "Buruk";
-                            case 3 -> "Netral";
-                            case 4 -> "Bagus";
-                            case 5 -> "Sangat bagus";
-                            default -> null;
-                        };
+                        selected = Mood.fromScore(Integer.parseInt(moodChoiceStr));
                     } catch (NumberFormatException ex) {
-                        mood = null;
+                        selected = null;
                     }
+                    String mood = selected == null ? null : selected.label();
 
                     if (mood == null) {
                         System.out.println("Pilihan mood tidak valid.");
@@ -235,7 +354,7 @@ public class Main {
                     }
 
                     boolean saved = tracker.inputMood(mood, dateTime);
-                    int score = MoodTracker.scoreForMood(mood);
+                    int score = selected.score();
                     if (saved) {
                         System.out.println("Entry ditambahkan: " + mood + " (skor: " + score + ") pada " + dateTime);
                     } else {
@@ -266,7 +385,81 @@ public class Main {
             }
         }
 
+        hasher.close();
+        tracker.close();
         scanner.close();
         System.out.println("Keluar. Terima kasih menggunakan Moodify.");
     }
-}
\ No newline at end of file
+
+    // standin [port]; latensi lewat MOODIFY_STANDIN_LATENCY_MS ("5" atau "5-50"), error lewat MOODIFY_STANDIN_ERROR_RATE
+    private static void runStandIn(String[] args, Scanner scanner) {
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : 54321;
+        try (PostgrestStandIn standIn = new PostgrestStandIn(port)) {
+            String latency = Dotenv.env("MOODIFY_STANDIN_LATENCY_MS");
+            if (latency != null && !latency.isBlank()) {
+                String[] range = latency.trim().split("-", 2);
+                long min = Long.parseLong(range[0].trim());
+                long max = range.length > 1 ? Long.parseLong(range[1].trim()) : min;
+                standIn.setLatency(java.time.Duration.ofMillis(min), java.time.Duration.ofMillis(max));
+            }
+            String rate = Dotenv.env("MOODIFY_STANDIN_ERROR_RATE");
+            if (rate != null && !rate.isBlank()) {
+                standIn.setErrorRate(Double.parseDouble(rate.trim()), Dotenv.envInt("MOODIFY_STANDIN_ERROR_STATUS", 503));
+            }
+            standIn.start();
+            System.out.println("Stand-in PostgREST berjalan di " + standIn.url());
+            System.out.println("Jalankan Moodify di terminal lain dengan SUPABASE_URL=" + standIn.url() + " dan SUPABASE_KEY=apa saja.");
+            System.out.println("Tekan Enter untuk berhenti.");
+            if (scanner.hasNextLine()) scanner.nextLine();
+            System.out.println("Stand-in berhenti: " + standIn.rowCount("moods") + " mood, " + standIn.rowCount("users") + " user di memori dibuang.");
+        } catch (java.io.IOException | NumberFormatException ex) {
+            System.err.println("Gagal menjalankan stand-in: " + ex.getMessage());
+        }
+    }
+
+    private static void runCommand(String[] args, SupabaseClient supabaseClient) {
+        switch (args[0]) {
+            case "backfill-rollup" -> {
+                System.out.println("Membangun ulang tabel mood_daily dari tabel moods...");
+                RollupBackfill backfill = new RollupBackfill(supabaseClient, 1000);
+                long rows = backfill.run();
+                if (rows < 0) System.out.println("Backfill gagal. Cek log di atas.");
+                else System.out.println("Backfill selesai: " + rows + " baris rollup ditulis, "
+                        + backfill.getRowsDeleted() + " baris tanpa mood dihapus.");
+            }
+            case "import" -> {
+                // import [file] [user_id]; ukuran batch dan jumlah POST paralel lewat MOODIFY_IMPORT_BATCH / MOODIFY_IMPORT_CONCURRENCY
+                java.nio.file.Path file = java.nio.file.Paths.get(args.length > 1 ? args[1] : "data/moods.csv");
+                String userId = args.length > 2 ? args[2] : null;
+                System.out.println("Mengimpor " + file + " ke tabel moods...");
+                MoodImporter importer = new MoodImporter(supabaseClient, file, userId,
+                        Dotenv.envInt("MOODIFY_IMPORT_BATCH", 1000), Dotenv.envInt("MOODIFY_IMPORT_CONCURRENCY", 4));
+                long rows = importer.run();
+                if (rows < 0) System.out.println("Import gagal. Jalankan lagi perintah yang sama untuk melanjutkan dari checkpoint.");
+                else {
+                    System.out.println("Import selesai: " + rows + " baris dikirim, " + importer.getRowsSkipped() + " baris dilewati, "
+                            + importer.getRowsRejected() + " baris ditolak.");
+                    if (importer.getRowsRejected() > 0) System.out.println("Baris yang ditolak disimpan di " + importer.getRejectedFile());
+                }
+            }
+            case "export" -> {
+                // export [file] [user_id]; file .bin -> format biner, selain itu CSV seperti data/moods.csv
+                java.nio.file.Path file = java.nio.file.Paths.get(args.length > 1 ? args[1] : "data/export.csv");
+                String userId = args.length > 2 ? args[2] : null;
+                MoodExporter.Format format = MoodExporter.Format.forFile(file);
+                System.out.println("Mengekspor riwayat " + (userId == null ? "semua user" : "user " + userId) + " ke " + file + " (" + format + ")...");
+                long rows = new MoodExporter(supabaseClient, SupabaseClient.DEFAULT_PAGE_SIZE).export(userId, file, format);
+                if (rows < 0) System.out.println("Export gagal. Cek log di atas.");
+                else System.out.println("Export selesai: " + rows + " baris ditulis ke " + file + ".");
+            }
+            default -> {
+                System.out.println("Perintah tidak dikenal: " + args[0]);
+                System.out.println("Perintah yang tersedia:");
+                System.out.println("  backfill-rollup   bangun ulang tabel mood_daily dari tabel moods");
+                System.out.println("  import [file] [user_id]   impor CSV (default data/moods.csv) ke tabel moods");
+                System.out.println("  export [file] [user_id]   ekspor riwayat ke CSV, atau format biner jika file berakhiran .bin");
+                System.out.println("  standin [port]   jalankan server PostgREST lokal di memori (default port 54321) untuk test offline");
+            }
+        }
+    }
+}
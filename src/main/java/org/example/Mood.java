@@ -0,0 +1,103 @@
+package org.example;
+
+import java.util.Locale;
+
+/**
+ * Skala mood 1..5. Label Indonesia ({@link #label()}) adalah nilai yang disimpan di kolom 'mood';
+ * label Inggris dipakai oleh GUI ({@link MoodifyFrame}).
+ *
+ * Skor dan label disimpan di tabel yang di-index dengan ordinal, jadi lookup tidak memakai switch string.
+ */
+public enum Mood {
+    KACAU,
+    BURUK,
+    NETRAL,
+    BAGUS,
+    SANGAT_BAGUS;
+
+    private static final Mood[] VALUES = values();
+    private static final int[] SCORES = {1, 2, 3, 4, 5};
+    private static final String[] LABELS_ID = {"Kacau", "Buruk", "Netral", "Bagus", "Sangat bagus"};
+    private static final String[] LABELS_EN = {"Awful", "Sad", "Neutral", "Calm", "Happy"};
+
+    public int score() {
+        return SCORES[ordinal()];
+    }
+
+    /** Label stored in the database and shown in the console UI. */
+    public String label() {
+        return LABELS_ID[ordinal()];
+    }
+
+    /** English label for {@link Locale#ENGLISH} (any "en" locale), Indonesian otherwise. */
+    public String label(Locale locale) {
+        return "en".equals(locale.getLanguage()) ? LABELS_EN[ordinal()] : LABELS_ID[ordinal()];
+    }
+
+    /** One-byte code (the ordinal), as used by compact encodings. */
+    public byte code() {
+        return (byte) ordinal();
+    }
+
+    public static Mood fromCode(int code) {
+        return code >= 0 && code < VALUES.length ? VALUES[code] : null;
+    }
+
+    /** Mood with the given score, or null if the score is outside 1..5. */
+    public static Mood fromScore(int score) {
+        for (Mood m : VALUES) {
+            if (SCORES[m.ordinal()] == score) return m;
+        }
+        return null;
+    }
+
+    /**
+     * Mood nearest to an average score: below 1.5 is KACAU, below 2.5 BURUK, below 3.5 NETRAL, below 4.5 BAGUS,
+     * otherwise SANGAT_BAGUS.
+     */
+    public static Mood forAverage(double average) {
+        if (average < 1.5) return KACAU;
+        if (average < 2.5) return BURUK;
+        if (average < 3.5) return NETRAL;
+        if (average < 4.5) return BAGUS;
+        return SANGAT_BAGUS;
+    }
+
+    /**
+     * Lenient lookup for user input: Indonesian or English label, ignoring case and surrounding whitespace.
+     * Returns null for unknown labels.
+     */
+    public static Mood fromLabel(String label) {
+        if (label == null) return null;
+        String s = label.trim();
+        for (Mood m : VALUES) {
+            if (LABELS_ID[m.ordinal()].equalsIgnoreCase(s) || LABELS_EN[m.ordinal()].equalsIgnoreCase(s)) return m;
+        }
+        return null;
+    }
+
+    /**
+     * Exact match of {@code s[start, end)} (whitespace trimmed) against the stored Indonesian labels, without creating
+     * a String. Used by the CSV decoders; returns null if the token is not a canonical label.
+     */
+    static Mood fromToken(CharSequence s, int start, int end) {
+        while (start < end && s.charAt(start) <= ' ') start++;
+        while (end > start && s.charAt(end - 1) <= ' ') end--;
+        int len = end - start;
+        for (int i = 0; i < LABELS_ID.length; i++) {
+            String label = LABELS_ID[i];
+            if (label.length() != len) continue;
+            int k = 0;
+            while (k < len && label.charAt(k) == s.charAt(start + k)) k++;
+            if (k == len) return VALUES[i];
+        }
+        return null;
+    }
+
+    /** Score of a stored label, or 0 if the label is unknown. */
+    public static int scoreOf(String label) {
+        if (label == null) return 0;
+        Mood m = fromToken(label, 0, label.length());
+        return m == null ? 0 : m.score();
+    }
+}
@@ -0,0 +1,98 @@
+package org.example;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+
+/**
+ * Agregasi skor per hari di sisi klien. Menghasilkan bentuk yang sama dengan rpc/mood_daily_stats,
+ * sehingga dipakai sebagai pengganti lokal saat fungsi RPC tidak tersedia, dan untuk data replika.
+ */
+final class MoodAggregator {
+    private static final long MICROS_PER_DAY = 86_400_000_000L;
+
+    private MoodAggregator() {}
+
+    static List<SupabaseClient.DailyAggregate> daily(Iterable<SupabaseClient.MoodEntry> entries) {
+        Daily d = new Daily();
+        for (SupabaseClient.MoodEntry e : entries) d.accept(e);
+        return d.result();
+    }
+
+    /** Same as {@link #daily(Iterable)} over columnar rows, reading primitives only. */
+    static List<SupabaseClient.DailyAggregate> daily(MoodHistory history) {
+        if (history.isSorted()) return buckets(history, 0, history.size(), ScoreKernel.Width.DAY);
+        Daily d = new Daily();
+        for (int i = 0; i < history.size(); i++) d.add(history.epochDay(i), history.score(i));
+        return d.result();
+    }
+
+    /**
+     * Count/sum/min/max per day, ISO week or calendar month (UTC) over rows [from, to) of a history in timestamp
+     * order, computed by {@link ScoreKernel}. Each row's {@code date} is the first day of its bucket; empty buckets
+     * are omitted.
+     */
+    static List<SupabaseClient.DailyAggregate> buckets(MoodHistory history, int from, int to, ScoreKernel.Width width) {
+        if (!history.isSorted()) throw new IllegalArgumentException("history is not in timestamp order");
+        ScoreKernel.Buckets b = ScoreKernel.aggregate(history.microsColumn(), history.scoreColumn(), from, to,
+                MICROS_PER_DAY, width);
+        List<SupabaseClient.DailyAggregate> out = new ArrayList<>(b.size);
+        for (int i = 0; i < b.size; i++) {
+            out.add(new SupabaseClient.DailyAggregate(LocalDate.ofEpochDay(b.startDay[i]), b.count[i], b.sum[i], b.min[i], b.max[i]));
+        }
+        return out;
+    }
+
+    /**
+     * Sum of all daily rows as weekly totals.
+     */
+    static WeeklyStats weekly(List<SupabaseClient.DailyAggregate> days) {
+        int total = 0;
+        int sum = 0;
+        for (SupabaseClient.DailyAggregate d : days) {
+            total += d.count;
+            sum += (int) d.sum;
+        }
+        double avg = total == 0 ? 0.0 : ((double) sum) / total;
+        return new WeeklyStats(total, sum, avg);
+    }
+
+    /** Streaming sink: feed entries in any order, then call {@link #result()}. */
+    static final class Daily implements Consumer<SupabaseClient.MoodEntry> {
+        // epoch-day -> {count, sum, min, max}
+        private final TreeMap<Long, long[]> days = new TreeMap<>();
+        // baris biasanya datang urut waktu -> hari yang sama berturut-turut tidak perlu lookup TreeMap
+        private long lastDay = Long.MIN_VALUE;
+        private long[] lastAcc;
+
+        @Override
+        public void accept(SupabaseClient.MoodEntry e) {
+            add(e.timestamp.toLocalDate().toEpochDay(), e.score);
+        }
+
+        void add(long epochDay, int score) {
+            long[] acc = lastAcc;
+            if (epochDay != lastDay || acc == null) {
+                acc = days.computeIfAbsent(epochDay, k -> new long[] {0, 0, Long.MAX_VALUE, Long.MIN_VALUE});
+                lastDay = epochDay;
+                lastAcc = acc;
+            }
+            acc[0]++;
+            acc[1] += score;
+            acc[2] = Math.min(acc[2], score);
+            acc[3] = Math.max(acc[3], score);
+        }
+
+        List<SupabaseClient.DailyAggregate> result() {
+            List<SupabaseClient.DailyAggregate> out = new ArrayList<>(days.size());
+            for (Map.Entry<Long, long[]> me : days.entrySet()) {
+                long[] acc = me.getValue();
+                out.add(new SupabaseClient.DailyAggregate(LocalDate.ofEpochDay(me.getKey()), (int) acc[0], acc[1], (int) acc[2], (int) acc[3]));
+            }
+            return out;
+        }
+    }
+}
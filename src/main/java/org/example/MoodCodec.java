@@ -0,0 +1,385 @@
+package org.example;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Kompresi deret mood ala Gorilla (delta-of-delta timestamp + kode mood 3 bit) untuk {@link MoodHistory}.
+ * Dipakai oleh {@link EntryCache} (riwayat panjang disimpan terkompresi), export {@code .bin}
+ * ({@link MoodExporter}) dan sebagai format transfer opsional ({@link #MEDIA_TYPE}) dari server ke
+ * {@link SupabaseClient}.
+ *
+ * Stream = {@link #MAGIC} (4 byte) lalu blok-blok, diakhiri varint 0. Setiap blok berdiri sendiri:
+ * - varint jumlah baris (> 0), varint panjang byte sisa blok
+ * - kamus mood di luar {@link Mood} standar (kode 0..4 tidak ditulis): varint jumlah, lalu per mood
+ *   string (varint panjang+1, 0 = null) dan skor (varint zigzag)
+ * - kamus user: varint jumlah, lalu string seperti di atas
+ * - varint satuan waktu (mikrodetik): kelipatan terbesar dari 1 jam/1 menit/1 detik/1 ms/1 us yang membagi
+ *   semua selisih timestamp di blok ini
+ * - bitstream per baris:
+ *   timestamp: baris pertama 64 bit mentah; selanjutnya delta-of-delta dalam satuan di atas:
+ *   '0' = 0, '10' + 5 bit, '110' + 9 bit, '1110' + 16 bit, '1111' + 64 bit
+ *   mood: 3 bit kode (0..6), atau '111' + 8 bit kode
+ *   user (hanya jika kamus user > 1): '0' = sama dengan baris sebelumnya, '1' + index
+ *
+ * Dibanding 9 byte per baris di {@link MoodHistory}: entri tiap jam ~0,5 byte per baris, entri harian pada jam
+ * acak (data dari menu input dibulatkan ke jam) ~1,4 byte per baris.
+ */
+final class MoodCodec {
+    /** Content type of the stream when used as an HTTP transfer format. */
+    static final String MEDIA_TYPE = "application/vnd.moodify.series";
+    static final int MAGIC = 0x3153444D; // "MDS1"
+
+    static final int BLOCK_ROWS = 4096;
+    private static final long[] UNITS = {3_600_000_000L, 60_000_000L, 1_000_000L, 1_000L, 1L};
+
+    private MoodCodec() {}
+
+    // -------------------- Whole streams --------------------
+
+    static byte[] encode(MoodHistory h) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(16 + h.size());
+        try {
+            write(h, out);
+        } catch (IOException e) {
+            throw new AssertionError(e); // ByteArrayOutputStream tidak melempar
+        }
+        return out.toByteArray();
+    }
+
+    static void write(MoodHistory h, OutputStream out) throws IOException {
+        writeHeader(out);
+        for (int from = 0; from < h.size(); from += BLOCK_ROWS) {
+            out.write(encodeBlock(h, from, Math.min(h.size(), from + BLOCK_ROWS)));
+        }
+        writeEnd(out);
+    }
+
+    static void writeHeader(OutputStream out) throws IOException {
+        out.write(MAGIC);
+        out.write(MAGIC >>> 8);
+        out.write(MAGIC >>> 16);
+        out.write(MAGIC >>> 24);
+    }
+
+    static void writeEnd(OutputStream out) throws IOException {
+        out.write(0);
+    }
+
+    /** Decode a stream produced by {@link #encode}. The result is frozen. */
+    static MoodHistory decode(byte[] data) {
+        try {
+            MoodHistory out = new MoodHistory(BLOCK_ROWS);
+            read(new java.io.ByteArrayInputStream(data), null, out);
+            return out.freeze();
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Invalid mood series", e);
+        }
+    }
+
+    /**
+     * Append every row of the stream to {@code out}; rows without a user get {@code defaultUserId}.
+     * Returns the number of rows. Throws if the stream is malformed or ends before its end marker.
+     */
+    static int read(InputStream in, String defaultUserId, MoodHistory out) throws IOException {
+        readHeader(in);
+        int rows = 0, n;
+        while ((n = readBlock(in, defaultUserId, out)) > 0) rows += n;
+        return rows;
+    }
+
+    static void readHeader(InputStream in) throws IOException {
+        int magic = 0;
+        for (int i = 0; i < 4; i++) magic |= readByte(in) << (8 * i);
+        if (magic != MAGIC) throw new IOException("Not a mood series stream");
+    }
+
+    /** Decode the next block into {@code out}; returns its row count, or 0 at the end marker. */
+    static int readBlock(InputStream in, String defaultUserId, MoodHistory out) throws IOException {
+        long n = readVarint(in);
+        if (n == 0) return 0;
+        long len = readVarint(in);
+        if (n < 0 || n > BLOCK_ROWS || len < 0 || len > Integer.MAX_VALUE) throw new IOException("Malformed mood series block header");
+        byte[] body = in.readNBytes((int) len);
+        if (body.length != len) throw new EOFException("Truncated mood series block");
+        try {
+            decodeBlock(body, (int) n, defaultUserId, out);
+        } catch (MoodHistory.MoodTableFullException ex) {
+            throw new IOException("Mood series has more distinct (mood, score) pairs than MoodHistory can hold", ex);
+        } catch (IllegalArgumentException ex) {
+            throw new IOException(ex.getMessage(), ex);
+        }
+        return (int) n;
+    }
+
+    // -------------------- Blocks --------------------
+
+    /** Encode rows [from, to) of {@code h} as one block (row count and length prefix included). */
+    static byte[] encodeBlock(MoodHistory h, int from, int to) {
+        int n = to - from;
+        Bits bits = new Bits(16 + n);
+
+        // kamus: mood di luar skala standar dan user yang dipakai blok ini
+        int[] moodMap = new int[h.moodCount()];
+        int extraMoods = 0;
+        int[] userMap = new int[Math.max(1, h.userCount())];
+        Arrays.fill(userMap, -1);
+        int usedUsers = 0;
+        int[] moodOrder = new int[h.moodCount()];
+        int[] userOrder = new int[userMap.length];
+        Arrays.fill(moodMap, -1);
+        for (int c = 0; c < Math.min(h.moodCount(), Mood.values().length); c++) moodMap[c] = c;
+        for (int i = from; i < to; i++) {
+            int c = h.moodCode(i);
+            if (moodMap[c] < 0) {
+                moodOrder[extraMoods] = c;
+                moodMap[c] = Mood.values().length + extraMoods++;
+            }
+            int u = h.userIndexOf(i);
+            if (userMap[u] < 0) {
+                userOrder[usedUsers] = u;
+                userMap[u] = usedUsers++;
+            }
+        }
+        bits.varint(extraMoods);
+        for (int k = 0; k < extraMoods; k++) {
+            bits.string(h.moodLabel(moodOrder[k]));
+            bits.varint(zigzag(h.moodScore(moodOrder[k])));
+        }
+        bits.varint(usedUsers);
+        for (int k = 0; k < usedUsers; k++) bits.string(h.userAt(userOrder[k]));
+
+        long[] micros = h.microsColumn();
+        long unit = unit(micros, from, to);
+        bits.varint(unit);
+
+        int userBits = 32 - Integer.numberOfLeadingZeros(Math.max(1, usedUsers - 1));
+        long prevTs = micros[from], prevDelta = 0;
+        int prevUser = 0;
+        for (int i = from; i < to; i++) {
+            if (i == from) {
+                bits.write(micros[i], 64);
+            } else {
+                long delta = (micros[i] - prevTs) / unit;
+                long dod = delta - prevDelta;
+                if (dod == 0) bits.write(0, 1);
+                else if (dod >= -15 && dod <= 16) { bits.write(0b10, 2); bits.write(dod + 15, 5); }
+                else if (dod >= -255 && dod <= 256) { bits.write(0b110, 3); bits.write(dod + 255, 9); }
+                else if (dod >= -32767 && dod <= 32768) { bits.write(0b1110, 4); bits.write(dod + 32767, 16); }
+                else { bits.write(0b1111, 4); bits.write(dod, 64); }
+                prevDelta = delta;
+                prevTs = micros[i];
+            }
+            int code = moodMap[h.moodCode(i)];
+            if (code < 7) bits.write(code, 3);
+            else { bits.write(7, 3); bits.write(code, 8); }
+            if (usedUsers > 1) {
+                int u = userMap[h.userIndexOf(i)];
+                if (u == prevUser) bits.write(0, 1);
+                else { bits.write(1, 1); bits.write(u, userBits); }
+                prevUser = u;
+            }
+        }
+        byte[] body = bits.toByteArray();
+
+        Bits head = new Bits(10);
+        head.varint(n);
+        head.varint(body.length);
+        byte[] prefix = head.toByteArray();
+        byte[] block = Arrays.copyOf(prefix, prefix.length + body.length);
+        System.arraycopy(body, 0, block, prefix.length, body.length);
+        return block;
+    }
+
+    static void decodeBlock(byte[] body, int n, String defaultUserId, MoodHistory out) {
+        Reader r = new Reader(body);
+        int std = Mood.values().length;
+        // blok hanya menulis mood dan user yang dipakai barisnya, jadi kamus tidak lebih besar dari jumlah baris
+        long extraMoods = r.varint();
+        if (extraMoods > Math.min(n, 256 - std)) throw new IllegalArgumentException("Invalid mood dictionary size " + extraMoods);
+        int[] codes = new int[std + (int) extraMoods];
+        for (int c = 0; c < std; c++) codes[c] = c;
+        for (int k = 0; k < extraMoods; k++) {
+            String label = r.string();
+            codes[std + k] = out.moodCode(label, (int) unzigzag(r.varint()));
+        }
+        long usersInBlock = r.varint();
+        if (usersInBlock > n) throw new IllegalArgumentException("Invalid user dictionary size " + usersInBlock);
+        int usedUsers = (int) usersInBlock;
+        int[] users = new int[Math.max(1, usedUsers)];
+        for (int k = 0; k < usedUsers; k++) {
+            String u = r.string();
+            users[k] = out.userIndex(u == null ? defaultUserId : u);
+        }
+        if (usedUsers == 0) users[0] = out.userIndex(defaultUserId);
+        long unit = r.varint();
+        if (unit <= 0) throw new IllegalArgumentException("Invalid time unit " + unit);
+
+        int userBits = 32 - Integer.numberOfLeadingZeros(Math.max(1, usedUsers - 1));
+        long ts = 0, delta = 0;
+        int user = 0;
+        for (int i = 0; i < n; i++) {
+            if (i == 0) {
+                ts = r.read(64);
+            } else {
+                long dod;
+                if (r.read(1) == 0) dod = 0;
+                else if (r.read(1) == 0) dod = r.read(5) - 15;
+                else if (r.read(1) == 0) dod = r.read(9) - 255;
+                else if (r.read(1) == 0) dod = r.read(16) - 32767;
+                else dod = r.read(64);
+                delta += dod;
+                ts += delta * unit;
+            }
+            int code = (int) r.read(3);
+            if (code == 7) code = (int) r.read(8);
+            if (code >= codes.length) throw new IllegalArgumentException("Invalid mood code " + code);
+            if (usedUsers > 1 && r.read(1) == 1) user = (int) r.read(userBits);
+            if (user >= usedUsers && usedUsers > 0) throw new IllegalArgumentException("Invalid user index " + user);
+            out.append(ts, codes[code], users[user]);
+        }
+    }
+
+    // satuan terbesar yang membagi semua selisih terhadap baris pertama
+    private static long unit(long[] micros, int from, int to) {
+        for (long unit : UNITS) {
+            boolean fits = true;
+            for (int i = from + 1; i < to && fits; i++) fits = (micros[i] - micros[from]) % unit == 0;
+            if (fits) return unit;
+        }
+        return 1;
+    }
+
+    static long zigzag(long v) {
+        return (v << 1) ^ (v >> 63);
+    }
+
+    static long unzigzag(long v) {
+        return (v >>> 1) ^ -(v & 1);
+    }
+
+    private static int readByte(InputStream in) throws IOException {
+        int b = in.read();
+        if (b < 0) throw new EOFException("Truncated mood series");
+        return b;
+    }
+
+    private static long readVarint(InputStream in) throws IOException {
+        long v = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = readByte(in);
+            v |= (long) (b & 0x7F) << shift;
+            if (b < 0x80) return v;
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    // -------------------- Bit I/O --------------------
+
+    /** Big-endian bit writer; varints and strings are byte-aligned. */
+    private static final class Bits {
+        private byte[] buf;
+        private int pos;      // byte berikutnya yang ditulis
+        private long acc;     // bit yang belum ditulis, rata kanan
+        private int accBits;
+
+        Bits(int capacity) {
+            buf = new byte[Math.max(16, capacity)];
+        }
+
+        void write(long value, int bits) {
+            if (bits == 64) {
+                write(value >>> 32, 32);
+                write(value & 0xFFFFFFFFL, 32);
+                return;
+            }
+            acc = (acc << bits) | (value & ((1L << bits) - 1));
+            accBits += bits;
+            while (accBits >= 8) {
+                accBits -= 8;
+                put((byte) (acc >>> accBits));
+            }
+        }
+
+        void varint(long v) {
+            align();
+            while ((v & ~0x7FL) != 0) {
+                put((byte) ((v & 0x7F) | 0x80));
+                v >>>= 7;
+            }
+            put((byte) v);
+        }
+
+        void string(String s) {
+            if (s == null) {
+                varint(0);
+                return;
+            }
+            byte[] b = s.getBytes(StandardCharsets.UTF_8);
+            varint(b.length + 1L);
+            for (byte x : b) put(x);
+        }
+
+        byte[] toByteArray() {
+            align();
+            return Arrays.copyOf(buf, pos);
+        }
+
+        private void align() {
+            if (accBits > 0) write(0, 8 - accBits);
+        }
+
+        private void put(byte b) {
+            if (pos == buf.length) buf = Arrays.copyOf(buf, buf.length * 2);
+            buf[pos++] = b;
+        }
+    }
+
+    private static final class Reader {
+        private final byte[] buf;
+        private int pos;
+        private long acc;
+        private int accBits;
+
+        Reader(byte[] buf) {
+            this.buf = buf;
+        }
+
+        long read(int bits) {
+            if (bits == 64) return (read(32) << 32) | read(32);
+            while (accBits < bits) {
+                if (pos == buf.length) throw new IllegalArgumentException("Truncated mood series block");
+                acc = (acc << 8) | (buf[pos++] & 0xFF);
+                accBits += 8;
+            }
+            accBits -= bits;
+            return (acc >>> accBits) & ((1L << bits) - 1);
+        }
+
+        long varint() {
+            accBits = 0; // buang sisa bit sampai batas byte
+            long v = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                if (pos == buf.length) throw new IllegalArgumentException("Truncated mood series block");
+                byte b = buf[pos++];
+                v |= (long) (b & 0x7F) << shift;
+                if (b >= 0) return v;
+            }
+            throw new IllegalArgumentException("Malformed varint");
+        }
+
+        String string() {
+            long len = varint();
+            if (len == 0) return null;
+            if (len - 1 > buf.length - pos) throw new IllegalArgumentException("Truncated mood series block");
+            String s = new String(buf, pos, (int) len - 1, StandardCharsets.UTF_8);
+            pos += (int) len - 1;
+            return s;
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package org.example;
+
+import java.time.LocalDateTime;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Iterator atas tabel 'moods' yang mengambil data per halaman (keyset pagination).
+ * - baris diurutkan menurut (timestamp, id); id memutus seri karena banyak baris berbagi timestamp
+ *   (entri dibulatkan ke jam) dan Postgres tidak menjamin urutan baris yang seri
+ * - posisi disimpan sebagai (timestamp, id) baris terakhir; halaman berikutnya diminta dengan
+ *   {@code or=(timestamp.gt.<ts>,and(timestamp.eq.<ts>,id.gt.<id>))&limit=<n>}, jadi tidak ada baris yang
+ *   terlewat atau terulang di batas halaman
+ * - halaman berikutnya sudah di-prefetch selagi halaman sekarang dikonsumsi
+ *
+ * Jika sebuah halaman gagal diambil, iterasi berhenti dan {@link #failed()} bernilai true.
+ */
+public final class MoodCursor implements Iterator<SupabaseClient.MoodEntry>, AutoCloseable {
+    /** Fetches one page after the given (timestamp, id) position; returns null on failure. */
+    interface PageSource {
+        List<SupabaseClient.MoodEntry> fetch(LocalDateTime after, String afterId, int limit);
+    }
+
+    private static final ExecutorService PREFETCH = Executors.newVirtualThreadPerTaskExecutor();
+
+    private final PageSource source;
+    private final int pageSize;
+    private List<SupabaseClient.MoodEntry> page = List.of();
+    private int idx = 0;
+    private CompletableFuture<List<SupabaseClient.MoodEntry>> pending;
+    private LocalDateTime lastTs;
+    private String lastId;
+    private boolean failed = false;
+
+    MoodCursor(PageSource source, int pageSize, LocalDateTime after, String afterId) {
+        if (pageSize <= 0) throw new IllegalArgumentException("pageSize must be positive");
+        this.source = source;
+        this.pageSize = pageSize;
+        this.lastTs = after;
+        this.lastId = afterId;
+        this.pending = prefetch(after, afterId);
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (idx >= page.size()) {
+            if (pending == null) return false;
+            List<SupabaseClient.MoodEntry> fetched = pending.join();
+            pending = null;
+            if (fetched == null) {
+                failed = true;
+                page = List.of();
+                return false;
+            }
+            page = fetched;
+            idx = 0;
+            if (!fetched.isEmpty()) {
+                SupabaseClient.MoodEntry last = fetched.get(fetched.size() - 1);
+                lastTs = last.timestamp;
+                lastId = last.id;
+            }
+            // halaman penuh -> kemungkinan masih ada data; ambil halaman berikutnya di background
+            if (fetched.size() >= pageSize) pending = prefetch(lastTs, lastId);
+        }
+        return true;
+    }
+
+    @Override
+    public SupabaseClient.MoodEntry next() {
+        if (!hasNext()) throw new NoSuchElementException();
+        return page.get(idx++);
+    }
+
+    /** True if iteration stopped because a page request failed. */
+    public boolean failed() {
+        return failed;
+    }
+
+    /** Timestamp of the last row fetched so far (null before the first page). */
+    public LocalDateTime lastTimestamp() {
+        return lastTs;
+    }
+
+    /** Id of the last row fetched so far; with {@link #lastTimestamp()} the position to resume from. */
+    public String lastId() {
+        return lastId;
+    }
+
+    public Stream<SupabaseClient.MoodEntry> stream() {
+        return StreamSupport.stream(
+                Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(this::close);
+    }
+
+    @Override
+    public void close() {
+        if (pending != null) {
+            pending.cancel(true);
+            pending = null;
+        }
+        page = List.of();
+    }
+
+    private CompletableFuture<List<SupabaseClient.MoodEntry>> prefetch(LocalDateTime after, String afterId) {
+        return CompletableFuture.supplyAsync(() -> source.fetch(after, afterId, pageSize), PREFETCH);
+    }
+}
@@ -0,0 +1,224 @@
+package org.example;
+
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Export riwayat mood (satu user atau semua user) dari Supabase langsung ke file.
+ * - baris diambil per halaman lewat {@link MoodCursor} dan ditulis ke {@link FileChannel} lewat buffer tetap,
+ *   jadi memori yang dipakai tidak bergantung pada jumlah baris
+ * - {@link Format#CSV}: {@code timestamp,mood,score[,user_id]}, sama dengan data/moods.csv (bisa dibaca lagi oleh
+ *   {@link MoodImporter})
+ * - {@link Format#BINARY}: format ringkas di bawah, dibaca kembali dengan {@link #readBinary}
+ * File ditulis dulu ke {@code <file>.part} lalu dipindah, jadi export yang gagal tidak meninggalkan file setengah jadi.
+ *
+ * Format biner = stream {@link MoodCodec} (blok delta-of-delta timestamp + kode mood 3 bit, masing-masing
+ * {@link MoodCodec#BLOCK_ROWS} baris); riwayat per jam butuh kurang dari 1 byte per baris.
+ */
+public class MoodExporter {
+    public enum Format {
+        CSV, BINARY;
+
+        /** BINARY for {@code .bin} files, CSV otherwise. */
+        public static Format forFile(Path file) {
+            return file.getFileName().toString().toLowerCase().endsWith(".bin") ? BINARY : CSV;
+        }
+    }
+
+    private static final int BUFFER_BYTES = 1 << 16;
+
+    private final SupabaseClient supabase;
+    private final int pageSize;
+
+    public MoodExporter(SupabaseClient supabase, int pageSize) {
+        this.supabase = supabase;
+        this.pageSize = pageSize;
+    }
+
+    /**
+     * Export the history of {@code userId} (all users when null) to {@code target}. Returns the number of rows
+     * written, or -1 if fetching or writing failed.
+     */
+    public long export(String userId, Path target, Format format) {
+        Path part = target.resolveSibling(target.getFileName() + ".part");
+        long startNanos = System.nanoTime();
+        long rows = 0;
+        try (MoodCursor cursor = userId == null ? supabase.cursorAllEntries(pageSize) : supabase.cursorAllEntriesForUser(userId, pageSize)) {
+            try (FileChannel ch = FileChannel.open(part, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                RowWriter w = format == Format.BINARY ? new BinaryWriter(ch) : new CsvWriter(ch);
+                while (cursor.hasNext()) {
+                    w.write(cursor.next());
+                    rows++;
+                }
+                if (cursor.failed()) {
+                    System.err.println("[MoodExporter] pengambilan data gagal setelah " + rows + " baris.");
+                    return -1;
+                }
+                w.finish(rows);
+                ch.force(false);
+            }
+            Files.move(part, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException ex) {
+            ex.printStackTrace();
+            return -1;
+        } finally {
+            try {
+                Files.deleteIfExists(part);
+            } catch (IOException ignored) {
+            }
+        }
+        double secs = Math.max(1e-9, (System.nanoTime() - startNanos) / 1e9);
+        System.out.printf("Export: %d baris (%.0f baris/detik)%n", rows, rows / secs);
+        return rows;
+    }
+
+    /**
+     * Read a file written with {@link Format#BINARY}, handing every row to {@code sink}. Returns the number of rows,
+     * or -1 if the file is not a valid (complete) export.
+     */
+    public static long readBinary(Path file, Consumer<SupabaseClient.MoodEntry> sink) {
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(file), BUFFER_BYTES)) {
+            MoodCodec.readHeader(in);
+            long rows = 0;
+            while (true) {
+                MoodHistory block = new MoodHistory(MoodCodec.BLOCK_ROWS);
+                int n = MoodCodec.readBlock(in, null, block);
+                if (n == 0) return rows;
+                for (int i = 0; i < n; i++) sink.accept(block.entry(i));
+                rows += n;
+            }
+        } catch (EOFException ex) {
+            System.err.println("[MoodExporter] file export terpotong: " + file);
+            return -1;
+        } catch (IOException | RuntimeException ex) {
+            System.err.println("[MoodExporter] file export tidak valid: " + file + " (" + ex.getMessage() + ")");
+            return -1;
+        }
+    }
+
+    // -------------------- Writers --------------------
+
+    private abstract static class RowWriter {
+        final FileChannel ch;
+        final ByteBuffer buf = ByteBuffer.allocateDirect(BUFFER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+
+        RowWriter(FileChannel ch) {
+            this.ch = ch;
+        }
+
+        abstract void write(SupabaseClient.MoodEntry e) throws IOException;
+
+        void finish(long rows) throws IOException {
+            flush();
+        }
+
+        void ensure(int n) throws IOException {
+            if (buf.remaining() < n) flush();
+        }
+
+        void put(byte[] b) throws IOException {
+            if (b.length > buf.capacity()) {
+                flush();
+                ByteBuffer wrap = ByteBuffer.wrap(b);
+                while (wrap.hasRemaining()) ch.write(wrap);
+                return;
+            }
+            ensure(b.length);
+            buf.put(b);
+        }
+
+        void flush() throws IOException {
+            buf.flip();
+            while (buf.hasRemaining()) ch.write(buf);
+            buf.clear();
+        }
+    }
+
+    private static final class CsvWriter extends RowWriter {
+        // mood dan user_id berulang terus -> bytes-nya (sudah di-escape) disimpan sekali
+        private final Map<String, byte[]> fields = new HashMap<>();
+
+        CsvWriter(FileChannel ch) {
+            super(ch);
+        }
+
+        @Override
+        void write(SupabaseClient.MoodEntry e) throws IOException {
+            // timestamp ISO + skor selalu ASCII, maksimal ~40 byte
+            ensure(48);
+            putAscii(e.timestamp.toString());
+            buf.put((byte) ',');
+            put(field(e.mood));
+            ensure(16);
+            buf.put((byte) ',');
+            putAscii(Integer.toString(e.score));
+            if (e.userId != null) {
+                buf.put((byte) ',');
+                put(field(e.userId));
+            }
+            ensure(1);
+            buf.put((byte) '\n');
+        }
+
+        private void putAscii(String s) {
+            for (int i = 0; i < s.length(); i++) buf.put((byte) s.charAt(i));
+        }
+
+        private byte[] field(String v) {
+            byte[] b = fields.get(v);
+            if (b == null) {
+                StringBuilder sb = new StringBuilder();
+                String clean = v.replace('\n', ' ').replace('\r', ' ');
+                if (clean.indexOf(',') < 0 && clean.indexOf('"') < 0) sb.append(clean);
+                else sb.append('"').append(clean.replace("\"", "\"\"")).append('"');
+                b = sb.toString().getBytes(StandardCharsets.UTF_8);
+                if (fields.size() < 4096) fields.put(v, b);
+            }
+            return b;
+        }
+    }
+
+    private static final class BinaryWriter extends RowWriter {
+        // baris dikumpulkan per blok lalu dikompresi sekaligus
+        private final MoodHistory block = new MoodHistory(MoodCodec.BLOCK_ROWS);
+
+        BinaryWriter(FileChannel ch) {
+            super(ch);
+            buf.putInt(MoodCodec.MAGIC);
+        }
+
+        @Override
+        void write(SupabaseClient.MoodEntry e) throws IOException {
+            // kamus mood blok penuh: tutup blok lebih awal, blok berikutnya mulai dengan kamus baru
+            if (!block.hasRoomFor(e.mood, e.score)) writeBlock();
+            block.add(e);
+            if (block.size() == MoodCodec.BLOCK_ROWS) writeBlock();
+        }
+
+        @Override
+        void finish(long rows) throws IOException {
+            if (!block.isEmpty()) writeBlock();
+            ensure(1);
+            buf.put((byte) 0);
+            flush();
+        }
+
+        private void writeBlock() throws IOException {
+            put(MoodCodec.encodeBlock(block, 0, block.size()));
+            block.clear();
+        }
+    }
+}
@@ -0,0 +1,477 @@
+package org.example;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Riwayat mood dalam bentuk kolom (struct-of-arrays), pengganti list objek MoodEntry untuk data besar.
+ * - timestamp disimpan sebagai {@code long} mikrodetik sejak epoch UTC (presisi yang sama dengan Postgres)
+ * - mood + skor disimpan sebagai satu {@code byte} kode ke kamus (mood, skor) kecil; kode 0..4 selalu
+ *   {@link Mood} standar (kode = ordinal), jadi loop cukup membandingkan byte ({@link #moodCode(int)}).
+ *   Kamus berisi paling banyak 256 pasangan; baris dengan pasangan ke-257 ditolak dengan
+ *   {@link MoodTableFullException} (cek dulu dengan {@link #hasRoomFor} jika sumbernya data luar)
+ * - user_id di-dictionary-encode; kolom index user baru dialokasikan jika ada lebih dari satu user
+ *
+ * Satu baris riwayat satu user = 9 byte, jadi satu juta entri sekitar 9 MB. Akses per baris lewat index
+ * ({@link #epochMicros(int)}, {@link #score(int)}, {@link #mood(int)}, ...) tidak membuat objek;
+ * {@link #timestamp(int)}, {@link #entry(int)} dan {@link #asList()} membuat objek per panggilan.
+ *
+ * Baris disimpan dalam urutan ditambahkan; hasil query (order=timestamp.asc) dan {@link #insertSorted}
+ * menjaga urutan timestamp yang dibutuhkan {@link #lowerBound}/{@link #upperBound}.
+ * Tidak thread-safe; instance yang sudah {@link #freeze()} aman dibaca dari banyak thread.
+ */
+public final class MoodHistory {
+    /** Thrown when a row would need a 257th distinct (mood, score) pair; the history is left unchanged. */
+    public static final class MoodTableFullException extends IllegalStateException {
+        private static final long serialVersionUID = 1L;
+
+        MoodTableFullException() {
+            super("MoodHistory supports at most " + MAX_MOODS + " distinct (mood, score) pairs");
+        }
+    }
+
+    private static final long MICROS_PER_SECOND = 1_000_000L;
+    private static final long MICROS_PER_DAY = 86_400L * MICROS_PER_SECOND;
+    private static final int MAX_MOODS = 256;
+
+    private long[] micros;
+    private byte[] codes;
+    // null selama semua baris milik userIds[0]
+    private int[] users;
+    private int size;
+
+    private String[] moodLabels = new String[8];
+    private int[] moodScores = new int[8];
+    private int moodCount = seedMoods();
+    private String[] userIds = new String[2];
+    private int userCount;
+    // user id -> indeks di userIds; null boleh jadi key (baris tanpa user)
+    private final HashMap<String, Integer> userIndexes = new HashMap<>();
+    // indeks user yang terakhir dicari lewat overload CharSequence
+    private int lastUser = -1;
+
+    private boolean frozen = false;
+    // false begitu ada baris yang lebih awal dari baris sebelumnya
+    private boolean sorted = true;
+    // skor per baris untuk ScoreKernel; dibuat sekali untuk instance frozen
+    private byte[] scoreColumn;
+
+    public MoodHistory() {
+        this(16);
+    }
+
+    public MoodHistory(int initialCapacity) {
+        int cap = Math.max(1, initialCapacity);
+        this.micros = new long[cap];
+        this.codes = new byte[cap];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    // -------------------- Row access --------------------
+
+    public long epochMicros(int i) {
+        checkIndex(i);
+        return micros[i];
+    }
+
+    public long epochSecond(int i) {
+        return Math.floorDiv(epochMicros(i), MICROS_PER_SECOND);
+    }
+
+    /** Days since 1970-01-01 of row {@code i} (UTC), as used by {@link LocalDate#ofEpochDay}. */
+    public long epochDay(int i) {
+        return Math.floorDiv(epochMicros(i), MICROS_PER_DAY);
+    }
+
+    public int score(int i) {
+        checkIndex(i);
+        return moodScores[codes[i] & 0xFF];
+    }
+
+    /** Mood label of row {@code i}; the same String instance for every row with that mood. May be null. */
+    public String mood(int i) {
+        checkIndex(i);
+        return moodLabels[codes[i] & 0xFF];
+    }
+
+    /** The row's {@link Mood}, or null for a label/score pair outside the standard scale. */
+    public Mood moodOf(int i) {
+        return Mood.fromCode(moodCode(i));
+    }
+
+    /** Dictionary code of row {@code i}: the {@link Mood} ordinal for standard moods, >= 5 otherwise. */
+    public int moodCode(int i) {
+        checkIndex(i);
+        return codes[i] & 0xFF;
+    }
+
+    public String userId(int i) {
+        checkIndex(i);
+        return userIds[users == null ? 0 : users[i]];
+    }
+
+    public LocalDateTime timestamp(int i) {
+        return toLocalDateTime(epochMicros(i));
+    }
+
+    public SupabaseClient.MoodEntry entry(int i) {
+        return new SupabaseClient.MoodEntry(mood(i), score(i), timestamp(i), userId(i));
+    }
+
+    /**
+     * Read-only {@link List} view for code that works with MoodEntry; each {@code get} creates one entry.
+     */
+    public List<SupabaseClient.MoodEntry> asList() {
+        return new EntryView();
+    }
+
+    // -------------------- Search --------------------
+
+    /** Index of the first row with a timestamp >= {@code epochMicros}. */
+    public int lowerBound(long epochMicros) {
+        int lo = 0, hi = size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (micros[mid] < epochMicros) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    /** Index after the last row with a timestamp <= {@code epochMicros}. */
+    public int upperBound(long epochMicros) {
+        int lo = 0, hi = size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (micros[mid] > epochMicros) hi = mid;
+            else lo = mid + 1;
+        }
+        return lo;
+    }
+
+    /** Index of the first row on or after {@code date} (UTC). */
+    public int indexOf(LocalDate date) {
+        return lowerBound(date.toEpochDay() * MICROS_PER_DAY);
+    }
+
+    // -------------------- Mutation --------------------
+
+    public void add(SupabaseClient.MoodEntry e) {
+        add(e.mood, e.score, toEpochMicros(e.timestamp), e.userId);
+    }
+
+    public void add(String mood, int score, long epochMicros, String userId) {
+        int code = moodCode(mood, score);
+        int user = userIndex(userId);
+        append(epochMicros, code, user);
+    }
+
+    /**
+     * Append a row whose mood and user id are given as character ranges (e.g. straight from {@link CsvReader#chars()});
+     * Strings are only created for values not seen before. A null {@code mood} sequence means "no mood column".
+     */
+    void add(CharSequence mood, int moodStart, int moodEnd, int score, long epochMicros,
+             CharSequence user, int userStart, int userEnd, String defaultUserId) {
+        int code = mood == null ? moodCode(null, score) : moodCode(mood, moodStart, moodEnd, score);
+        int u = user == null ? userIndex(defaultUserId) : userIndex(user, userStart, userEnd);
+        append(epochMicros, code, u);
+    }
+
+    /**
+     * Insert a row after every row with a timestamp <= its own, keeping timestamp order.
+     */
+    public void insertSorted(SupabaseClient.MoodEntry e) {
+        long ts = toEpochMicros(e.timestamp);
+        int code = moodCode(e.mood, e.score);
+        int user = userIndex(e.userId);
+        int at = upperBound(ts);
+        if (at == size) {
+            append(ts, code, user);
+            return;
+        }
+        // baris baru tidak ditaruh di ujung, jadi jangan lewat append(): cek urutan di sana akan salah
+        // menandai history sebagai tidak urut. Geser baris [at, size) satu posisi ke kanan lalu isi 'at'.
+        checkMutable();
+        if (size == micros.length) grow();
+        if (user != 0 && users == null) users = new int[micros.length];
+        System.arraycopy(micros, at, micros, at + 1, size - at);
+        System.arraycopy(codes, at, codes, at + 1, size - at);
+        micros[at] = ts;
+        codes[at] = (byte) code;
+        if (users != null) {
+            System.arraycopy(users, at, users, at + 1, size - at);
+            users[at] = user;
+        }
+        size++;
+    }
+
+    /** Append every row of {@code other} in order. */
+    public void addAll(MoodHistory other) {
+        addRange(other, 0, other.size);
+    }
+
+    public void clear() {
+        checkMutable();
+        size = 0;
+        sorted = true;
+        users = null;
+        userCount = 0;
+        userIndexes.clear();
+        lastUser = -1;
+        moodCount = seedMoods();
+    }
+
+    /** Copy of rows [from, to) that can be modified independently. */
+    public MoodHistory slice(int from, int to) {
+        if (from < 0 || to > size || from > to) throw new IndexOutOfBoundsException("[" + from + ", " + to + ") of " + size);
+        MoodHistory out = new MoodHistory(to - from);
+        out.addRange(this, from, to);
+        return out;
+    }
+
+    public MoodHistory copy() {
+        return slice(0, size);
+    }
+
+    /**
+     * Make this instance read-only (mutators throw {@link UnsupportedOperationException}) and trim spare capacity.
+     * Returns this.
+     */
+    public MoodHistory freeze() {
+        if (!frozen) {
+            micros = Arrays.copyOf(micros, Math.max(1, size));
+            codes = Arrays.copyOf(codes, Math.max(1, size));
+            if (users != null) users = Arrays.copyOf(users, Math.max(1, size));
+            frozen = true;
+        }
+        return this;
+    }
+
+    /** True if rows are in timestamp order (required by {@link #lowerBound} and the aggregation kernel). */
+    public boolean isSorted() {
+        return sorted;
+    }
+
+    /** Raw timestamp column (epoch microseconds); only indexes below {@link #size()} are valid. Do not modify. */
+    long[] microsColumn() {
+        return micros;
+    }
+
+    /**
+     * Score of every row as a byte array of length {@link #size()}, for primitive kernels. Cached once frozen.
+     */
+    byte[] scoreColumn() {
+        byte[] col = scoreColumn;
+        if (col != null) return col;
+        col = new byte[size];
+        byte[] byCode = new byte[moodCount];
+        for (int c = 0; c < moodCount; c++) byCode[c] = (byte) Math.max(Byte.MIN_VALUE, Math.min(Byte.MAX_VALUE, moodScores[c]));
+        for (int i = 0; i < size; i++) col[i] = byCode[codes[i] & 0xFF];
+        if (frozen) scoreColumn = col;
+        return col;
+    }
+
+    public boolean isFrozen() {
+        return frozen;
+    }
+
+    /** Approximate heap bytes used by the row columns (dictionaries not included). */
+    public long columnBytes() {
+        return (long) micros.length * Long.BYTES + codes.length + (users == null ? 0 : (long) users.length * Integer.BYTES);
+    }
+
+    // -------------------- Dictionaries (for MoodCodec) --------------------
+
+    int moodCount() {
+        return moodCount;
+    }
+
+    String moodLabel(int code) {
+        return moodLabels[code];
+    }
+
+    int moodScore(int code) {
+        return moodScores[code];
+    }
+
+    int userCount() {
+        return userCount;
+    }
+
+    String userAt(int user) {
+        return userIds[user];
+    }
+
+    /** Dictionary index of the user of row {@code i}. */
+    int userIndexOf(int i) {
+        checkIndex(i);
+        return users == null ? 0 : users[i];
+    }
+
+    // -------------------- Conversion --------------------
+
+    static long toEpochMicros(LocalDateTime ts) {
+        return ts.toEpochSecond(ZoneOffset.UTC) * MICROS_PER_SECOND + ts.getNano() / 1_000;
+    }
+
+    static LocalDateTime toLocalDateTime(long epochMicros) {
+        long sec = Math.floorDiv(epochMicros, MICROS_PER_SECOND);
+        int nanos = (int) Math.floorMod(epochMicros, MICROS_PER_SECOND) * 1_000;
+        return LocalDateTime.ofEpochSecond(sec, nanos, ZoneOffset.UTC);
+    }
+
+    // -------------------- Internals --------------------
+
+    private void addRange(MoodHistory other, int from, int to) {
+        checkMutable();
+        // kode 'other' -> kode di sini; pasangan baru dihitung dulu supaya kamus penuh tidak meninggalkan separuh baris
+        int[] map = new int[other.moodCount];
+        Arrays.fill(map, -1);
+        int missing = 0;
+        for (int i = from; i < to; i++) {
+            int oc = other.codes[i] & 0xFF;
+            if (map[oc] != -1) continue;
+            map[oc] = findMood(other.moodLabels[oc], other.moodScores[oc]);
+            if (map[oc] < 0) {
+                map[oc] = -2;
+                missing++;
+            }
+        }
+        if (moodCount + missing > MAX_MOODS) throw new MoodTableFullException();
+        for (int i = from; i < to; i++) {
+            int oc = other.codes[i] & 0xFF;
+            if (map[oc] == -2) map[oc] = newMood(other.moodLabels[oc], other.moodScores[oc]);
+            int user = userIndex(other.userIds[other.users == null ? 0 : other.users[i]]);
+            append(other.micros[i], map[oc], user);
+        }
+    }
+
+    void append(long ts, int code, int user) {
+        checkMutable();
+        if (size == micros.length) grow();
+        if (user != 0 && users == null) users = new int[micros.length];
+        if (size > 0 && ts < micros[size - 1]) sorted = false;
+        micros[size] = ts;
+        codes[size] = (byte) code;
+        if (users != null) users[size] = user;
+        size++;
+    }
+
+    private void grow() {
+        int cap = micros.length + (micros.length >> 1) + 1;
+        micros = Arrays.copyOf(micros, cap);
+        codes = Arrays.copyOf(codes, cap);
+        if (users != null) users = Arrays.copyOf(users, cap);
+    }
+
+    private int seedMoods() {
+        for (Mood m : Mood.values()) {
+            moodLabels[m.ordinal()] = m.label();
+            moodScores[m.ordinal()] = m.score();
+        }
+        return Mood.values().length;
+    }
+
+    int moodCode(String mood, int score) {
+        int c = findMood(mood, score);
+        return c >= 0 ? c : newMood(mood, score);
+    }
+
+    /** True if a row with this (mood, score) can be added: the pair is known or the dictionary is not full. */
+    public boolean hasRoomFor(String mood, int score) {
+        return moodCount < MAX_MOODS || findMood(mood, score) >= 0;
+    }
+
+    private int findMood(String mood, int score) {
+        for (int c = 0; c < moodCount; c++) {
+            if (moodScores[c] == score && java.util.Objects.equals(moodLabels[c], mood)) return c;
+        }
+        return -1;
+    }
+
+    private int moodCode(CharSequence s, int start, int end, int score) {
+        while (start < end && s.charAt(start) <= ' ') start++;
+        while (end > start && s.charAt(end - 1) <= ' ') end--;
+        for (int c = 0; c < moodCount; c++) {
+            if (moodScores[c] == score && regionEquals(moodLabels[c], s, start, end)) return c;
+        }
+        return newMood(s.subSequence(start, end).toString(), score);
+    }
+
+    private int newMood(String mood, int score) {
+        checkMutable();
+        if (moodCount == MAX_MOODS) throw new MoodTableFullException();
+        if (moodCount == moodLabels.length) {
+            moodLabels = Arrays.copyOf(moodLabels, moodCount * 2);
+            moodScores = Arrays.copyOf(moodScores, moodCount * 2);
+        }
+        moodLabels[moodCount] = mood;
+        moodScores[moodCount] = score;
+        return moodCount++;
+    }
+
+    int userIndex(String userId) {
+        Integer u = userIndexes.get(userId);
+        return u != null ? u : newUser(userId);
+    }
+
+    private int userIndex(CharSequence s, int start, int end) {
+        while (start < end && s.charAt(start) <= ' ') start++;
+        while (end > start && s.charAt(end - 1) <= ' ') end--;
+        // user_id NULL muncul sebagai field kosong di CSV PostgREST
+        if (start == end) return userIndex(null);
+        // user paling sering sama dengan baris sebelumnya (hasil query per-user): cek tanpa membuat String
+        if (lastUser >= 0 && regionEquals(userIds[lastUser], s, start, end)) return lastUser;
+        lastUser = userIndex(s.subSequence(start, end).toString());
+        return lastUser;
+    }
+
+    private int newUser(String userId) {
+        checkMutable();
+        if (userCount == userIds.length) userIds = Arrays.copyOf(userIds, userCount * 2);
+        userIds[userCount] = userId;
+        userIndexes.put(userId, userCount);
+        return userCount++;
+    }
+
+    private static boolean regionEquals(String v, CharSequence s, int start, int end) {
+        if (v == null || v.length() != end - start) return false;
+        for (int i = 0; i < v.length(); i++) {
+            if (v.charAt(i) != s.charAt(start + i)) return false;
+        }
+        return true;
+    }
+
+    private void checkIndex(int i) {
+        if (i < 0 || i >= size) throw new IndexOutOfBoundsException("Index " + i + " out of bounds for size " + size);
+    }
+
+    private void checkMutable() {
+        if (frozen) throw new UnsupportedOperationException("MoodHistory is frozen");
+    }
+
+    private final class EntryView extends AbstractList<SupabaseClient.MoodEntry> implements RandomAccess {
+        @Override
+        public SupabaseClient.MoodEntry get(int index) {
+            return entry(index);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+}
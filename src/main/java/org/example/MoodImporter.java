@@ -0,0 +1,364 @@
+package org.example;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Import massal file CSV berformat data/moods.csv ({@code timestamp,mood,score[,user_id]}) ke tabel 'moods'.
+ * - file di-memory-map lalu dibagi menjadi potongan (chunk) yang batasnya digeser ke akhir baris;
+ *   setiap chunk di-parse oleh virtual thread sendiri
+ * - baris dikirim per batch dengan {@link SupabaseClient#insertMoods}; jumlah POST yang berjalan bersamaan
+ *   dibatasi {@code concurrency}
+ * - posisi byte yang sudah terkirim per chunk disimpan di {@code <file>.import-checkpoint}, jadi import yang
+ *   terhenti dilanjutkan dari situ saat dijalankan lagi
+ * - setiap baris mendapat idempotency key yang diturunkan dari ukuran file, posisi byte dan isi baris, jadi batch
+ *   yang dikirim ulang (retry atau resume setelah crash) tidak menghasilkan baris ganda
+ * - kegagalan sementara sudah di-retry oleh {@link SupabaseClient}; jika tetap gagal, import berhenti dan checkpoint
+ *   disimpan. Batch yang ditolak server (4xx, {@link SupabaseClient#isRejected}) dibelah dua sampai baris yang
+ *   ditolak ketemu; baris itu ditulis apa adanya ke {@code <file>.rejected} dan import berlanjut
+ *
+ * Nilai dalam file tidak boleh mengandung newline (sama seperti {@link MoodJournal}). Header dan baris yang
+ * tidak valid dilewati.
+ */
+public class MoodImporter {
+    private static final long TARGET_CHUNK_BYTES = 16L << 20;
+
+    private final SupabaseClient supabase;
+    private final Path file;
+    private final Path checkpointFile;
+    private final Path rejectedFile;
+    private final String defaultUserId;
+    private final int batchSize;
+    private final int concurrency;
+
+    private final AtomicLong rowsSent = new AtomicLong();
+    private final AtomicLong rowsSkipped = new AtomicLong();
+    private final AtomicLong rowsRejected = new AtomicLong();
+    // [start, end, committed] per chunk; guarded by this
+    private long[][] chunks;
+
+    public MoodImporter(SupabaseClient supabase, Path file, String defaultUserId, int batchSize, int concurrency) {
+        if (batchSize <= 0 || concurrency <= 0) throw new IllegalArgumentException("batchSize and concurrency must be positive");
+        this.supabase = supabase;
+        this.file = file;
+        this.checkpointFile = file.resolveSibling(file.getFileName() + ".import-checkpoint");
+        this.rejectedFile = file.resolveSibling(file.getFileName() + ".rejected");
+        this.defaultUserId = defaultUserId;
+        this.batchSize = batchSize;
+        this.concurrency = concurrency;
+    }
+
+    /**
+     * Run (or resume) the import. Returns the number of rows sent in this run, or -1 if some batches could not be
+     * sent; the checkpoint is kept in that case so the next run continues. Refused rows do not fail the run, see
+     * {@link #getRowsRejected()}.
+     */
+    public long run() {
+        long startNanos = System.nanoTime();
+        ScheduledExecutorService progress = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "moodify-import-progress");
+            t.setDaemon(true);
+            return t;
+        });
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ); Arena arena = Arena.ofShared()) {
+            long size = ch.size();
+            MemorySegment data = ch.map(FileChannel.MapMode.READ_ONLY, 0, size, arena);
+            chunks = readCheckpoint(size);
+            if (chunks == null) {
+                chunks = split(data, size);
+            } else {
+                System.out.println("Melanjutkan import dari checkpoint (" + committedBytes() + " dari " + size + " byte sudah terkirim).");
+            }
+
+            progress.scheduleAtFixedRate(() -> report(startNanos, size), 2, 2, TimeUnit.SECONDS);
+            Semaphore uploads = new Semaphore(concurrency);
+            boolean ok = true;
+            try (ExecutorService workers = Executors.newVirtualThreadPerTaskExecutor()) {
+                List<Future<Boolean>> results = new ArrayList<>();
+                for (int i = 0; i < chunks.length; i++) {
+                    int chunk = i;
+                    results.add(workers.submit(() -> importChunk(data, chunk, uploads)));
+                }
+                for (Future<Boolean> f : results) ok &= f.get();
+            }
+            progress.shutdownNow();
+            report(startNanos, size);
+            if (ok) Files.deleteIfExists(checkpointFile);
+            return ok ? rowsSent.get() : -1;
+        } catch (Exception ex) {
+            ex.printStackTrace();
+            return -1;
+        } finally {
+            progress.shutdownNow();
+        }
+    }
+
+    public long getRowsSkipped() {
+        return rowsSkipped.get();
+    }
+
+    /** Rows the server refused in this run; their lines were appended to {@link #getRejectedFile()}. */
+    public long getRowsRejected() {
+        return rowsRejected.get();
+    }
+
+    public Path getRejectedFile() {
+        return rejectedFile;
+    }
+
+    private boolean importChunk(MemorySegment data, int chunk, Semaphore uploads) throws IOException, InterruptedException {
+        long pos, end;
+        synchronized (this) {
+            pos = chunks[chunk][2];
+            end = chunks[chunk][1];
+        }
+        LineParser parser = new LineParser(data, data.byteSize(), defaultUserId);
+        List<Row> batch = new ArrayList<>(batchSize);
+        while (pos < end) {
+            long eol = pos;
+            while (eol < end && data.get(ValueLayout.JAVA_BYTE, eol) != '\n') eol++;
+            SupabaseClient.MoodEntry e = parser.parse(pos, eol);
+            if (e != null) batch.add(new Row(e, pos, eol));
+            else if (eol > pos) rowsSkipped.incrementAndGet();
+            pos = Math.min(end, eol + 1);
+            if (batch.size() == batchSize || (pos == end && !batch.isEmpty())) {
+                List<Row> refused = new ArrayList<>();
+                long sent = send(batch, uploads, refused);
+                if (sent < 0) return false;
+                // baris yang ditolak ditulis sebelum checkpoint maju, dan hanya setelah seluruh batch selesai
+                if (!refused.isEmpty()) setAside(data, refused);
+                rowsSent.addAndGet(sent);
+                rowsRejected.addAndGet(refused.size());
+                commit(chunk, pos);
+                batch = new ArrayList<>(batchSize);
+            }
+        }
+        commit(chunk, end);
+        return true;
+    }
+
+    // satu baris file yang akan dikirim: entri hasil parse dan posisi byte barisnya [from, to)
+    private record Row(SupabaseClient.MoodEntry entry, long from, long to) {}
+
+    /**
+     * Send {@code rows}; returns how many were stored, or -1 on a failure that is not about the rows (network,
+     * 5xx after the client's retries). A refused batch is split in half until the refused rows are isolated; those
+     * are added to {@code refused}.
+     */
+    private long send(List<Row> rows, Semaphore uploads, List<Row> refused) throws InterruptedException {
+        List<SupabaseClient.MoodEntry> entries = new ArrayList<>(rows.size());
+        for (Row row : rows) entries.add(row.entry());
+        int status;
+        uploads.acquire();
+        try {
+            status = supabase.insertMoodsStatus(entries);
+        } finally {
+            uploads.release();
+        }
+        if (status >= 200 && status < 300) return rows.size();
+        if (!SupabaseClient.isRejected(status)) {
+            System.err.println("[MoodImporter] batch gagal (status=" + status + "); jalankan import lagi untuk melanjutkan.");
+            return -1;
+        }
+        if (rows.size() == 1) {
+            refused.add(rows.get(0));
+            return 0;
+        }
+        // insert PostgREST atomik: belah dua sampai baris yang ditolak ketemu
+        int mid = rows.size() / 2;
+        long left = send(rows.subList(0, mid), uploads, refused);
+        if (left < 0) return -1;
+        long right = send(rows.subList(mid, rows.size()), uploads, refused);
+        return right < 0 ? -1 : left + right;
+    }
+
+    private synchronized void setAside(MemorySegment data, List<Row> refused) throws IOException {
+        try (OutputStream out = Files.newOutputStream(rejectedFile, StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            for (Row row : refused) {
+                out.write(data.asSlice(row.from(), row.to() - row.from()).toArray(ValueLayout.JAVA_BYTE));
+                out.write('\n');
+            }
+        }
+    }
+
+    private void report(long startNanos, long size) {
+        double secs = Math.max(1e-9, (System.nanoTime() - startNanos) / 1e9);
+        long rows = rowsSent.get();
+        System.out.printf("Import: %d baris terkirim (%.0f baris/detik), %d ditolak, %.1f%% file selesai%n",
+                rows, rows / secs, rowsRejected.get(), size == 0 ? 100.0 : committedBytes() * 100.0 / size);
+    }
+
+    // -------------------- Chunks & checkpoint --------------------
+
+    // potong file menjadi chunk ~TARGET_CHUNK_BYTES; setiap batas digeser tepat setelah '\n' berikutnya
+    private long[][] split(MemorySegment data, long size) {
+        List<long[]> out = new ArrayList<>();
+        long start = 0;
+        while (start < size) {
+            long end = Math.min(size, start + TARGET_CHUNK_BYTES);
+            while (end < size && data.get(ValueLayout.JAVA_BYTE, end - 1) != '\n') end++;
+            out.add(new long[] {start, end, start});
+            start = end;
+        }
+        return out.toArray(new long[0][]);
+    }
+
+    private synchronized long committedBytes() {
+        if (chunks == null) return 0;
+        long done = 0;
+        for (long[] c : chunks) done += c[2] - c[0];
+        return done;
+    }
+
+    private synchronized void commit(int chunk, long offset) throws IOException {
+        chunks[chunk][2] = offset;
+        StringBuilder sb = new StringBuilder("size=").append(Files.size(file)).append('\n');
+        for (long[] c : chunks) sb.append(c[0]).append(',').append(c[1]).append(',').append(c[2]).append('\n');
+        Path tmp = checkpointFile.resolveSibling(checkpointFile.getFileName() + ".tmp");
+        Files.writeString(tmp, sb, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        Files.move(tmp, checkpointFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // null jika tidak ada checkpoint atau file sudah berubah ukuran
+    private long[][] readCheckpoint(long size) throws IOException {
+        if (!Files.exists(checkpointFile)) return null;
+        List<String> lines = Files.readAllLines(checkpointFile, StandardCharsets.UTF_8);
+        if (lines.isEmpty() || !lines.get(0).equals("size=" + size)) {
+            System.err.println("[MoodImporter] checkpoint tidak cocok dengan file, import dimulai dari awal.");
+            return null;
+        }
+        List<long[]> out = new ArrayList<>();
+        try {
+            for (String line : lines.subList(1, lines.size())) {
+                if (line.isBlank()) continue;
+                String[] p = line.split(",");
+                out.add(new long[] {Long.parseLong(p[0]), Long.parseLong(p[1]), Long.parseLong(p[2])});
+            }
+        } catch (RuntimeException e) {
+            System.err.println("[MoodImporter] checkpoint tidak valid, import dimulai dari awal.");
+            return null;
+        }
+        return out.toArray(new long[0][]);
+    }
+
+    // -------------------- Line parsing --------------------
+
+    /**
+     * Parses one {@code timestamp,mood,score[,user_id]} line straight from the mapped bytes. Lines with quotes or
+     * non-ASCII bytes fall back to {@link MoodJournal#parseLine}.
+     */
+    private static final class LineParser implements CharSequence {
+        private final MemorySegment data;
+        private final String defaultUserId;
+        private final byte[] keyPrefix;
+        private long base;
+        private int length;
+
+        LineParser(MemorySegment data, long fileSize, String defaultUserId) {
+            this.data = data;
+            this.defaultUserId = defaultUserId;
+            this.keyPrefix = (fileSize + ":").getBytes(StandardCharsets.US_ASCII);
+        }
+
+        SupabaseClient.MoodEntry parse(long from, long to) {
+            if (to > from && data.get(ValueLayout.JAVA_BYTE, to - 1) == '\r') to--;
+            if (to - from > 4096) return null;
+            base = from;
+            length = (int) (to - from);
+            int[] commas = new int[3];
+            int n = 0;
+            for (int i = 0; i < length; i++) {
+                byte b = data.get(ValueLayout.JAVA_BYTE, base + i);
+                if (b == '"' || b < 0) return slowPath();
+                if (b == ',' && n < 3) commas[n++] = i;
+            }
+            if (n < 2) return null;
+            LocalDateTime ts = PgTimestamp.parse(this, 0, commas[0]);
+            if (ts == null) return null;
+            int scoreEnd = n > 2 ? commas[2] : length;
+            int score = parseInt(commas[1] + 1, scoreEnd);
+            if (score == Integer.MIN_VALUE) return null;
+            Mood known = Mood.fromToken(this, commas[0] + 1, commas[1]);
+            String mood = known != null ? known.label() : subSequence(commas[0] + 1, commas[1]).toString().trim();
+            String userId = defaultUserId;
+            if (n > 2) {
+                String u = subSequence(commas[2] + 1, length).toString().trim();
+                if (!u.isEmpty()) userId = u;
+            }
+            return new SupabaseClient.MoodEntry(null, mood, score, ts, userId, lineKey());
+        }
+
+        private SupabaseClient.MoodEntry slowPath() {
+            byte[] bytes = data.asSlice(base, length).toArray(ValueLayout.JAVA_BYTE);
+            SupabaseClient.MoodEntry e = MoodJournal.parseLine(new String(bytes, StandardCharsets.UTF_8));
+            if (e == null) return null;
+            String userId = e.userId != null ? e.userId : defaultUserId;
+            String key = e.idempotencyKey != null ? e.idempotencyKey : lineKey();
+            return new SupabaseClient.MoodEntry(null, e.mood, e.score, e.timestamp, userId, key);
+        }
+
+        /**
+         * Key that stays the same for this line across retries and resumed runs: name UUID of
+         * {@code "<file size>:<byte offset>:"} followed by the line bytes.
+         */
+        private String lineKey() {
+            byte[] offset = (base + ":").getBytes(StandardCharsets.US_ASCII);
+            byte[] name = new byte[keyPrefix.length + offset.length + length];
+            System.arraycopy(keyPrefix, 0, name, 0, keyPrefix.length);
+            System.arraycopy(offset, 0, name, keyPrefix.length, offset.length);
+            MemorySegment.copy(data, ValueLayout.JAVA_BYTE, base, name, keyPrefix.length + offset.length, length);
+            return UUID.nameUUIDFromBytes(name).toString();
+        }
+
+        private int parseInt(int from, int to) {
+            while (from < to && charAt(from) == ' ') from++;
+            while (to > from && charAt(to - 1) == ' ') to--;
+            if (from == to || to - from > 9) return Integer.MIN_VALUE;
+            int v = 0;
+            for (int i = from; i < to; i++) {
+                char c = charAt(i);
+                if (c < '0' || c > '9') return Integer.MIN_VALUE;
+                v = v * 10 + (c - '0');
+            }
+            return v;
+        }
+
+        @Override
+        public int length() {
+            return length;
+        }
+
+        @Override
+        public char charAt(int index) {
+            return (char) data.get(ValueLayout.JAVA_BYTE, base + index);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            StringBuilder sb = new StringBuilder(end - start);
+            for (int i = start; i < end; i++) sb.append(charAt(i));
+            return sb;
+        }
+    }
+}
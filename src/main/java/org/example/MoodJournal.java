@@ -0,0 +1,427 @@
+package org.example;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Write-ahead log lokal untuk entri mood, dengan format seperti data/moods.csv
+ * ({@code timestamp,mood,score}) ditambah kolom opsional {@code user_id} dan {@code idempotency_key}.
+ * - {@link #append} menulis satu baris ke file dan langsung kembali; fsync dilakukan per batch
+ *   oleh thread background setiap {@code syncInterval}
+ * - thread replayer mengirim baris secara berurutan ke Supabase ({@link SupabaseClient#insertMoods})
+ *   dan menyimpan posisi byte yang sudah terkirim di file {@code <journal>.checkpoint}
+ * - saat Supabase gagal, replay dicoba lagi dengan backoff; entri tetap aman di file dan
+ *   dilanjutkan saat aplikasi dijalankan lagi
+ * - batch yang ditolak server (4xx, lihat {@link SupabaseClient#isRejected}) dikirim ulang per baris; baris yang
+ *   tetap ditolak dipindah ke {@code <journal>.rejected} supaya tidak menahan entri sesudahnya
+ * - jika semua baris sudah terkirim, file dipotong kembali ke 0 byte
+ * - file dikunci (file lock) selama journal terbuka; proses kedua gagal membuka journal yang sama, jadi tidak ada
+ *   dua replayer dan tidak ada yang memotong baris milik proses lain
+ *
+ * Catatan: jika proses mati setelah batch terkirim tetapi sebelum checkpoint ditulis, batch itu
+ * dikirim ulang saat start berikutnya (at-least-once). Setiap baris menyimpan idempotency key-nya, jadi
+ * pengiriman ulang diabaikan server.
+ */
+public class MoodJournal implements AutoCloseable {
+    private static final int READ_CHUNK = 1 << 20;
+    private static final long MAX_BACKOFF_MS = 30_000;
+
+    private final SupabaseClient supabase;
+    private final Path checkpointFile;
+    private final Path rejectedFile;
+    private final FileChannel channel;
+    private final int maxBatch;
+    private final ScheduledExecutorService syncer;
+    private final Thread replayer;
+
+    // guarded by this
+    private long checkpoint;
+    private boolean dirty = false;
+    private boolean closed = false;
+
+    public MoodJournal(Path file, SupabaseClient supabase, int maxBatch, Duration syncInterval) throws IOException {
+        if (maxBatch <= 0) throw new IllegalArgumentException("maxBatch must be positive");
+        this.supabase = supabase;
+        this.maxBatch = maxBatch;
+        this.checkpointFile = file.resolveSibling(file.getFileName() + ".checkpoint");
+        this.rejectedFile = file.resolveSibling(file.getFileName() + ".rejected");
+        if (file.getParent() != null) Files.createDirectories(file.getParent());
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        // kunci dilepas saat channel ditutup (close() atau proses berhenti)
+        FileLock lock;
+        try {
+            lock = channel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            lock = null; // sudah dibuka MoodJournal lain di JVM ini
+        }
+        if (lock == null) {
+            channel.close();
+            throw new IOException("journal " + file + " sedang dipakai proses lain");
+        }
+        this.checkpoint = readCheckpoint();
+        // file dipotong setelah checkpoint terakhir ditulis -> checkpoint lama tidak berlaku lagi
+        if (this.checkpoint > channel.size()) this.checkpoint = 0;
+        terminatePartialLine();
+
+        this.syncer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "moodify-journal-sync");
+            t.setDaemon(true);
+            return t;
+        });
+        long syncMs = Math.max(1, syncInterval.toMillis());
+        syncer.scheduleWithFixedDelay(this::sync, syncMs, syncMs, TimeUnit.MILLISECONDS);
+
+        this.replayer = new Thread(this::replayLoop, "moodify-journal-replay");
+        this.replayer.setDaemon(true);
+        this.replayer.start();
+    }
+
+    /**
+     * Append one entry to the log. Returns once the line is written to the file (fsync happens in the background);
+     * returns false if the file could not be written.
+     */
+    public boolean append(SupabaseClient.MoodEntry e) {
+        ByteBuffer line = StandardCharsets.UTF_8.encode(formatLine(e.keyed()));
+        synchronized (this) {
+            if (closed) throw new IllegalStateException("MoodJournal is closed");
+            try {
+                long pos = channel.size();
+                while (line.hasRemaining()) pos += channel.write(line, pos);
+            } catch (IOException ex) {
+                ex.printStackTrace();
+                return false;
+            }
+            dirty = true;
+            notifyAll();
+        }
+        return true;
+    }
+
+    /** File that receives lines the server refused (same line format as the journal). */
+    public Path rejectedFile() {
+        return rejectedFile;
+    }
+
+    /** Bytes written to the log that have not been replayed to Supabase yet. */
+    public synchronized long pendingBytes() {
+        try {
+            return channel.size() - checkpoint;
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Wait until everything appended so far has been replayed, or until {@code timeout} passes.
+     * Returns true if the log is fully drained.
+     */
+    public synchronized boolean awaitDrained(Duration timeout) {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        try {
+            while (checkpoint < channel.size()) {
+                long left = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                if (left <= 0 || closed) return false;
+                wait(left);
+            }
+            return true;
+        } catch (IOException e) {
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (closed) return;
+            closed = true;
+            notifyAll();
+        }
+        replayer.interrupt();
+        try {
+            replayer.join(5_000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        syncer.shutdown();
+        sync();
+        try {
+            channel.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void sync() {
+        synchronized (this) {
+            if (!dirty) return;
+            dirty = false;
+        }
+        try {
+            channel.force(false);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void replayLoop() {
+        long backoff = 500;
+        while (true) {
+            Batch batch;
+            try {
+                synchronized (this) {
+                    while (!closed && checkpoint >= channel.size()) {
+                        compactIfDrained();
+                        wait();
+                    }
+                    if (closed) return;
+                }
+                batch = readBatch();
+            } catch (InterruptedException e) {
+                return;
+            } catch (IOException e) {
+                e.printStackTrace();
+                if (!sleep(backoff)) return;
+                continue;
+            }
+
+            if (batch.endOffset == batch.startOffset) {
+                // belum ada baris lengkap (tidak terjadi selama append menulis baris utuh)
+                if (!sleep(backoff)) return;
+                continue;
+            }
+            int done = send(batch.entries);
+            // checkpoint maju sampai entri terakhir yang selesai (terkirim atau disisihkan)
+            long commitTo = done == batch.entries.size() ? batch.endOffset
+                    : done == 0 ? batch.startOffset : batch.entryEnds.get(done - 1);
+            if (commitTo > batch.startOffset) {
+                try {
+                    commitCheckpoint(commitTo);
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+            if (done == batch.entries.size()) {
+                backoff = 500;
+            } else {
+                System.err.println("[MoodJournal] replay gagal, " + (batch.entries.size() - done) + " entri dicoba lagi dalam " + backoff + " ms.");
+                if (!sleep(backoff)) return;
+                backoff = Math.min(backoff * 2, MAX_BACKOFF_MS);
+            }
+        }
+    }
+
+    /**
+     * Send {@code entries} and return how many, from the front, are done. A batch the server refuses is resent row
+     * by row and refused rows are written to {@link #rejectedFile()}; stops at the first temporary failure.
+     */
+    private int send(List<SupabaseClient.MoodEntry> entries) {
+        if (entries.isEmpty()) return 0;
+        int status = supabase.insertMoodsStatus(entries);
+        if (status >= 200 && status < 300) return entries.size();
+        if (!SupabaseClient.isRejected(status)) return 0;
+        // insert PostgREST atomik: satu baris buruk menolak seluruh batch, jadi pisahkan per baris
+        for (int i = 0; i < entries.size(); i++) {
+            SupabaseClient.MoodEntry e = entries.get(i);
+            int one = supabase.insertMoodsStatus(List.of(e));
+            if (one >= 200 && one < 300) continue;
+            if (!SupabaseClient.isRejected(one) || !setAside(e, one)) return i;
+        }
+        return entries.size();
+    }
+
+    private boolean setAside(SupabaseClient.MoodEntry e, int status) {
+        String line = formatLine(e);
+        System.err.print("[MoodJournal] entri ditolak Supabase (status=" + status + "), dipindah ke " + rejectedFile.getFileName() + ": " + line);
+        try {
+            Files.writeString(rejectedFile, line, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND, StandardOpenOption.WRITE, StandardOpenOption.SYNC);
+            return true;
+        } catch (IOException ex) {
+            ex.printStackTrace();
+            return false;
+        }
+    }
+
+    private static final class Batch {
+        final List<SupabaseClient.MoodEntry> entries = new ArrayList<>();
+        // offset setelah baris setiap entri, sejajar dengan entries
+        final List<Long> entryEnds = new ArrayList<>();
+        long startOffset;
+        long endOffset;
+    }
+
+    /**
+     * Read up to maxBatch complete lines starting at the checkpoint. Unparseable lines are skipped, and so is a
+     * line longer than {@code READ_CHUNK} bytes (no valid entry is that long), so replay cannot stall on it.
+     */
+    private Batch readBatch() throws IOException {
+        long from, size;
+        synchronized (this) {
+            from = checkpoint;
+            size = channel.size();
+        }
+        ByteBuffer buf = ByteBuffer.allocate((int) Math.min(READ_CHUNK, size - from));
+        while (buf.hasRemaining()) {
+            if (channel.read(buf, from + buf.position()) < 0) break;
+        }
+        byte[] bytes = buf.array();
+        int len = buf.position();
+
+        Batch batch = new Batch();
+        batch.startOffset = from;
+        batch.endOffset = from;
+        int lineStart = 0;
+        for (int i = 0; i < len && batch.entries.size() < maxBatch; i++) {
+            if (bytes[i] != '\n') continue;
+            String line = new String(bytes, lineStart, i - lineStart, StandardCharsets.UTF_8);
+            SupabaseClient.MoodEntry e = parseLine(line);
+            lineStart = i + 1;
+            batch.endOffset = from + lineStart;
+            if (e != null) {
+                batch.entries.add(e);
+                batch.entryEnds.add(batch.endOffset);
+            } else if (!line.isBlank()) {
+                System.err.println("[MoodJournal] baris tidak valid dilewati: " + line);
+            }
+        }
+        if (batch.endOffset == from && len == READ_CHUNK) {
+            long end = skipLine(from + len, size);
+            if (end > 0) {
+                System.err.println("[MoodJournal] baris terlalu panjang (" + (end - from) + " byte) dilewati.");
+                batch.endOffset = end;
+            }
+        }
+        return batch;
+    }
+
+    // offset setelah '\n' berikutnya mulai dari pos, atau -1 jika baris itu belum selesai ditulis
+    private long skipLine(long pos, long size) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(64 << 10);
+        while (pos < size) {
+            buf.clear().limit((int) Math.min(buf.capacity(), size - pos));
+            int n = channel.read(buf, pos);
+            if (n <= 0) break;
+            for (int i = 0; i < n; i++) if (buf.get(i) == '\n') return pos + i + 1;
+            pos += n;
+        }
+        return -1;
+    }
+
+    private void commitCheckpoint(long offset) throws IOException {
+        writeCheckpoint(offset);
+        synchronized (this) {
+            checkpoint = offset;
+            notifyAll();
+        }
+    }
+
+    // caller holds the lock, so no append can slip in between the size check and the truncate
+    private void compactIfDrained() throws IOException {
+        if (checkpoint == 0 || checkpoint < channel.size()) return;
+        // truncate dulu: jika crash sebelum checkpoint ditulis, checkpoint > size dan di-reset saat start
+        channel.truncate(0);
+        channel.force(true);
+        writeCheckpoint(0);
+        checkpoint = 0;
+    }
+
+    // baris terakhir yang terpotong karena crash ditutup dengan newline; replay akan melewatinya sebagai baris tidak valid
+    private void terminatePartialLine() throws IOException {
+        long size = channel.size();
+        if (size == 0) return;
+        ByteBuffer last = ByteBuffer.allocate(1);
+        channel.read(last, size - 1);
+        if (last.get(0) != '\n') channel.write(ByteBuffer.wrap(new byte[] {'\n'}), size);
+    }
+
+    private long readCheckpoint() throws IOException {
+        if (!Files.exists(checkpointFile)) return 0;
+        try {
+            return Long.parseLong(Files.readString(checkpointFile, StandardCharsets.UTF_8).trim());
+        } catch (NumberFormatException e) {
+            System.err.println("[MoodJournal] checkpoint tidak valid, replay dari awal.");
+            return 0;
+        }
+    }
+
+    private void writeCheckpoint(long offset) throws IOException {
+        Path tmp = checkpointFile.resolveSibling(checkpointFile.getFileName() + ".tmp");
+        Files.writeString(tmp, Long.toString(offset), StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE, StandardOpenOption.SYNC);
+        Files.move(tmp, checkpointFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static boolean sleep(long ms) {
+        try {
+            Thread.sleep(ms);
+            return true;
+        } catch (InterruptedException e) {
+            return false;
+        }
+    }
+
+    // -------------------- Line format --------------------
+
+    static String formatLine(SupabaseClient.MoodEntry e) {
+        StringBuilder sb = new StringBuilder(64);
+        sb.append(e.timestamp).append(',');
+        appendField(sb, e.mood);
+        sb.append(',').append(e.score).append(',');
+        if (e.userId != null) appendField(sb, e.userId);
+        if (e.idempotencyKey != null) appendField(sb.append(','), e.idempotencyKey);
+        return sb.append('\n').toString();
+    }
+
+    private static void appendField(StringBuilder sb, String v) {
+        // satu entri = satu baris, jadi newline di dalam nilai diganti spasi
+        v = v.replace('\n', ' ').replace('\r', ' ');
+        if (v.indexOf(',') < 0 && v.indexOf('"') < 0) {
+            sb.append(v);
+        } else {
+            sb.append('"').append(v.replace("\"", "\"\"")).append('"');
+        }
+    }
+
+    /**
+     * Parse one {@code timestamp,mood,score[,user_id[,idempotency_key]]} line. Returns null if the line is not a
+     * valid entry.
+     */
+    static SupabaseClient.MoodEntry parseLine(String line) {
+        try (CsvReader r = new CsvReader(new StringReader(line))) {
+            if (!r.next() || r.size() < 3) return null;
+            LocalDateTime ts = PgTimestamp.parse(r.chars(), r.start(0), r.end(0));
+            if (ts == null) return null;
+            int score;
+            try {
+                score = Integer.parseInt(r.field(2).trim());
+            } catch (NumberFormatException e) {
+                return null;
+            }
+            String userId = r.size() > 3 && !r.field(3).isBlank() ? r.field(3).trim() : null;
+            String key = r.size() > 4 && !r.field(4).isBlank() ? r.field(4).trim() : null;
+            Mood known = Mood.fromToken(r.chars(), r.start(1), r.end(1));
+            return new SupabaseClient.MoodEntry(null, known != null ? known.label() : r.field(1).trim(), score, ts, userId, key);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+}
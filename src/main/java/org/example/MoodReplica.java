@@ -0,0 +1,135 @@
+package org.example;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Replika lokal riwayat mood satu user yang disinkronkan secara inkremental.
+ * - watermark = (timestamp, id) baris terakhir yang sudah diterima, dalam urutan keyset {@link MoodCursor}
+ * - {@link #refresh()} hanya meminta baris setelah watermark (lihat
+ *   {@link SupabaseClient#cursorEntriesForUserSince}) lalu menambahkannya ke replika
+ * - insert yang berhasil lewat SupabaseClient dengan timestamp sebelum watermark (entri terlambat)
+ *   langsung disisipkan, karena delta berikutnya tidak akan memuatnya
+ *
+ * - setelah delta, jumlah baris di server dibandingkan lewat HEAD {@code count=exact}
+ *   ({@link SupabaseClient#countEntriesForUser}); jika berbeda (entri terlambat dari klien lain, baris yang dihapus)
+ *   replika di-{@link #resync()} dan diunduh ulang
+ * Baris disimpan dalam {@link MoodHistory} (kolom primitif), bukan satu objek per baris.
+ */
+public class MoodReplica implements AutoCloseable {
+    private final SupabaseClient supabase;
+    private final String userId;
+    private final int pageSize;
+    private final Consumer<List<SupabaseClient.MoodEntry>> insertListener = this::onInserted;
+
+    // guarded by this
+    private final MoodHistory entries = new MoodHistory(1024);
+    private LocalDateTime watermark = null;
+    private String watermarkId = null;
+
+    public MoodReplica(SupabaseClient supabase, String userId, int pageSize) {
+        this.supabase = supabase;
+        this.userId = userId;
+        this.pageSize = pageSize;
+        supabase.addInsertListener(insertListener);
+    }
+
+    public String getUserId() {
+        return userId;
+    }
+
+    public synchronized LocalDateTime getWatermark() {
+        return watermark;
+    }
+
+    /**
+     * Fetch rows newer than the watermark and merge them, then download everything again if the row count still
+     * differs from the server's. Returns the number of rows added, or -1 if a request failed (the replica keeps
+     * what it had).
+     */
+    public int refresh() {
+        int added = pull();
+        if (added < 0) return -1;
+        long remote = supabase.countEntriesForUser(userId);
+        if (remote < 0 || remote == size()) return added;
+        System.err.println("[MoodReplica] " + size() + " baris lokal, " + remote + " di server; riwayat diunduh ulang.");
+        resync();
+        return pull();
+    }
+
+    // baris setelah watermark
+    private int pull() {
+        LocalDateTime after;
+        String afterId;
+        synchronized (this) {
+            after = watermark;
+            afterId = watermarkId;
+        }
+        MoodHistory delta = new MoodHistory();
+        LocalDateTime last;
+        String lastId;
+        try (MoodCursor cursor = supabase.cursorEntriesForUserSince(userId, after, afterId, pageSize)) {
+            cursor.forEachRemaining(delta::add);
+            if (cursor.failed()) return -1;
+            // posisi keyset (timestamp, id) baris terakhir; tetap (after, afterId) jika tidak ada baris baru
+            last = cursor.lastTimestamp();
+            lastId = cursor.lastId();
+        } catch (MoodHistory.MoodTableFullException ex) {
+            System.err.println("[MoodReplica] " + ex.getMessage());
+            return -1;
+        }
+        synchronized (this) {
+            // replika tidak berubah selama fetch -> posisi masih sama; jika resync terjadi di tengah, buang delta
+            if (!java.util.Objects.equals(after, watermark) || !java.util.Objects.equals(afterId, watermarkId)) return 0;
+            try {
+                entries.addAll(delta);
+            } catch (MoodHistory.MoodTableFullException ex) {
+                // addAll tidak mengubah replika jika kamusnya tidak cukup
+                System.err.println("[MoodReplica] " + ex.getMessage());
+                return -1;
+            }
+            watermark = last;
+            watermarkId = lastId;
+        }
+        return delta.size();
+    }
+
+    /** Drop everything and download the full history again on the next refresh. */
+    public synchronized void resync() {
+        entries.clear();
+        watermark = null;
+        watermarkId = null;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /** Snapshot of the whole replica in timestamp order (read-only). */
+    public synchronized MoodHistory entries() {
+        return entries.copy().freeze();
+    }
+
+    /** Rows whose date lies in [startDate, endDate], in timestamp order (read-only). */
+    public synchronized MoodHistory entriesBetween(LocalDate startDate, LocalDate endDate) {
+        int from = entries.indexOf(startDate);
+        int to = entries.indexOf(endDate.plusDays(1));
+        return entries.slice(from, to).freeze();
+    }
+
+    @Override
+    public void close() {
+        supabase.removeInsertListener(insertListener);
+    }
+
+    private synchronized void onInserted(List<SupabaseClient.MoodEntry> inserted) {
+        for (SupabaseClient.MoodEntry e : inserted) {
+            // baris >= watermark akan datang lewat delta berikutnya
+            if (watermark == null || !userId.equals(e.userId) || !e.timestamp.isBefore(watermark)) continue;
+            // tidak muat di kamus: jumlah baris jadi beda dari server, refresh berikutnya melaporkan kegagalan
+            if (entries.hasRoomFor(e.mood, e.score)) entries.insertSorted(e);
+        }
+    }
+}
@@ -3,6 +3,7 @@ package org.example;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.Iterator;
 import java.util.List;
 
 /**
@@ -10,6 +11,9 @@ import java.util.List;
  * Hanya implementasi metode yang diperlukan oleh Main.java disediakan.
  */
 public class MoodTracker {
+    private static final int HISTORY_PAGE_SIZE = 200;
+    private static final java.time.Duration JOURNAL_READ_WAIT = java.time.Duration.ofSeconds(2);
+
     private final SupabaseClient supabase;
     // store last login date/time in memory for anchoring entry selection
     private java.time.LocalDateTime userLoginDate = null;
@@ -17,6 +21,16 @@ public class MoodTracker {
     private java.time.LocalDateTime anchorDate = null;
     // store current logged-in user id (nullable)
     private String userId = null;
+    // optional write-behind buffer for inserts (null = every inputMood is sent immediately)
+    private MoodWriteBuffer writeBuffer = null;
+    // optional local write-ahead log; when set, inputMood only appends to it
+    private MoodJournal journal = null;
+    // sync mode: per-user replica refreshed by watermark deltas
+    private boolean syncEnabled = false;
+    private MoodReplica replica = null;
+    // sync mode with an on-disk snapshot per user (null = in-memory replica)
+    private java.nio.file.Path snapshotDir = null;
+    private EntryHistory snapshot = null;
 
     public MoodTracker(SupabaseClient supabase) {
         this.supabase = supabase;
@@ -81,19 +95,206 @@ public class MoodTracker {
         return sb.toString();
     }
 
+    /**
+     * Aktifkan buffer write-behind: inputMood hanya mengantrekan entri dan pengiriman dilakukan
+     * per batch (lihat {@link MoodWriteBuffer}).
+     */
+    public void enableWriteBehind(int maxBatch, java.time.Duration maxDelay) {
+        if (this.writeBuffer != null) this.writeBuffer.close();
+        this.writeBuffer = MoodWriteBuffer.open(supabase, maxBatch, maxDelay);
+    }
+
+    /**
+     * Simpan entri ke write-ahead log lokal terlebih dahulu; pengiriman ke Supabase dilakukan oleh
+     * replayer di background (lihat {@link MoodJournal}). Takes precedence over write-behind.
+     */
+    public void enableJournal(MoodJournal journal) {
+        if (this.journal != null) this.journal.close();
+        this.journal = journal;
+    }
+
+    /**
+     * Kirim entri yang masih ada di buffer write-behind (jika aktif). Returns false if some entries could not be sent.
+     * With a journal, waits briefly for the replayer so read paths see the session's own writes when online.
+     */
+    public boolean flush() {
+        boolean ok = writeBuffer == null || writeBuffer.flush();
+        if (journal != null) ok &= journal.awaitDrained(JOURNAL_READ_WAIT);
+        return ok;
+    }
+
+    /**
+     * Flush and stop the write-behind buffer and journal, if enabled. Unsent journal entries are replayed on next start.
+     */
+    public void close() {
+        if (writeBuffer != null) {
+            writeBuffer.close();
+            writeBuffer = null;
+        }
+        if (journal != null) {
+            journal.awaitDrained(JOURNAL_READ_WAIT);
+            journal.close();
+            journal = null;
+        }
+        if (replica != null) {
+            replica.close();
+            replica = null;
+        }
+        if (snapshot != null) {
+            snapshot.close();
+            snapshot = null;
+        }
+    }
+
     public boolean inputMood(String mood, LocalDateTime dateTime) {
-        int score = scoreForMood(mood);
-        boolean ok = supabase.insertMood(mood, score, dateTime, userId);
-        if (!ok) {
-            System.err.println("Gagal menyimpan ke Supabase. Cek logs untuk detail (SupabaseClient akan menampilkan respons).");
+        MoodifyEvents.Action action = beginAction();
+        try {
+            int score = scoreForMood(mood);
+            // idempotency key dibuat di sini, sekali per entri, dan ikut ke journal/buffer sampai terkirim
+            SupabaseClient.MoodEntry entry = SupabaseClient.MoodEntry.create(mood, score, dateTime, userId);
+            if (journal != null) {
+                return journal.append(entry);
+            }
+            if (writeBuffer != null) {
+                if (!writeBuffer.add(entry)) {
+                    System.err.println("Buffer penuh karena Supabase belum bisa dihubungi; entri tidak disimpan.");
+                    return false;
+                }
+                return true;
+            }
+            boolean ok = supabase.insertMood(entry);
+            if (!ok) {
+                System.err.println("Gagal menyimpan ke Supabase. Cek logs untuk detail (SupabaseClient akan menampilkan respons).");
+            }
+            return ok;
+        } finally {
+            endAction(action, "inputMood");
         }
-        return ok;
     }
 
     public void setUserId(String userId) {
+        if (this.replica != null && !this.replica.getUserId().equals(userId)) {
+            this.replica.close();
+            this.replica = null;
+        }
+        if (this.snapshot != null && !this.snapshot.getUserId().equals(userId)) {
+            this.snapshot.close();
+            this.snapshot = null;
+        }
         this.userId = userId;
     }
 
+    /**
+     * Mode sinkronisasi: simpan replika lokal riwayat user dan pada setiap tampilan hanya minta baris
+     * yang lebih baru dari watermark (lihat {@link MoodReplica}).
+     */
+    public void enableSync() {
+        this.syncEnabled = true;
+    }
+
+    /**
+     * Mode sinkronisasi dengan snapshot biner per user di {@code dir} (lihat {@link EntryHistory}): riwayat
+     * tetap ada setelah aplikasi ditutup, jadi start berikutnya hanya mengunduh baris baru.
+     */
+    public void enableSync(java.nio.file.Path dir) {
+        this.syncEnabled = true;
+        this.snapshotDir = dir;
+    }
+
+    /**
+     * Snapshot of the current user's history after a delta sync; null when snapshot mode is off, no user is
+     * logged in, or the file cannot be opened (the in-memory replica is used instead).
+     */
+    private EntryHistory syncedSnapshot() {
+        if (!syncEnabled || snapshotDir == null || userId == null) return null;
+        if (snapshot == null) {
+            try {
+                snapshot = EntryHistory.open(snapshotDir.resolve("history-" + userId + ".bin"), supabase, userId);
+            } catch (java.io.IOException ex) {
+                System.err.println("Gagal membuka snapshot riwayat: " + ex.getMessage() + ". Memakai replika di memori.");
+                snapshotDir = null;
+                return null;
+            }
+        }
+        if (snapshot.sync(SupabaseClient.DEFAULT_PAGE_SIZE) < 0) {
+            System.err.println("Sinkronisasi gagal; menampilkan data lokal terakhir.");
+        }
+        return snapshot;
+    }
+
+    /**
+     * Replica of the current user's history, refreshed with a delta request; null when sync mode is off
+     * or no user is logged in.
+     */
+    private MoodReplica syncedReplica() {
+        if (!syncEnabled || userId == null) return null;
+        if (replica == null) replica = new MoodReplica(supabase, userId, SupabaseClient.DEFAULT_PAGE_SIZE);
+        if (replica.refresh() < 0) {
+            System.err.println("Sinkronisasi gagal; menampilkan data lokal terakhir.");
+        }
+        return replica;
+    }
+
+    /**
+     * Per-day aggregates of the current user (all users if not logged in) for [start, end]. Uses rows that
+     * are already local (replica or cache) when available; otherwise reads the mood_daily rollup (one row
+     * per day), so no raw rows are downloaded. Returns null if the rollup could not be fetched.
+     */
+    private List<SupabaseClient.DailyAggregate> dailyBetween(LocalDate start, LocalDate end) {
+        MoodifyEvents.Aggregation event = new MoodifyEvents.Aggregation();
+        event.begin();
+        String source;
+        List<SupabaseClient.DailyAggregate> days;
+        EntryHistory s = syncedSnapshot();
+        MoodReplica r = s == null ? syncedReplica() : null;
+        MoodHistory cached = s == null && r == null ? supabase.peekCache(this.userId, start, end) : null;
+        if (s != null) {
+            source = "snapshot";
+            days = s.daily(start, end);
+        } else if (r != null) {
+            source = "replica";
+            days = MoodAggregator.daily(r.entriesBetween(start, end));
+        } else if (cached != null) {
+            source = "cache";
+            days = MoodAggregator.daily(cached);
+        } else {
+            source = "rollup";
+            days = supabase.fetchDailyRollups(start, end, this.userId);
+        }
+        event.end();
+        if (days != null && event.shouldCommit()) {
+            long entries = 0;
+            for (SupabaseClient.DailyAggregate d : days) entries += d.count;
+            event.source = source;
+            event.windowStart = start.toString();
+            event.windowEnd = end.toString();
+            event.entries = entries;
+            event.days = days.size();
+            event.commit();
+        }
+        return days;
+    }
+
+    // event JFR yang membungkus satu aksi menu; request/parse/agregasi di dalamnya tampil di bawahnya
+    private MoodifyEvents.Action beginAction() {
+        MoodifyEvents.Action event = new MoodifyEvents.Action();
+        // id aksi disimpan per thread supaya request HTTP yang dikirim dari sini bisa dihubungkan ke aksi ini
+        event.parentActionId = MoodifyEvents.currentActionId();
+        event.actionId = MoodifyEvents.enterAction();
+        event.begin();
+        return event;
+    }
+
+    private void endAction(MoodifyEvents.Action event, String action) {
+        MoodifyEvents.exitAction(event.parentActionId);
+        event.end();
+        if (event.shouldCommit()) {
+            event.action = action;
+            event.userId = this.userId;
+            event.commit();
+        }
+    }
+
     public String getUserId() {
         return this.userId;
     }
@@ -104,93 +305,155 @@ public class MoodTracker {
     }
 
     public void displayEntryHistory() {
-        List<SupabaseClient.MoodEntry> entries = supabase.fetchAllEntriesForUser(this.userId);
+        MoodifyEvents.Action action = beginAction();
+        try {
+            flush();
+            // baris ditampilkan per halaman begitu tiba, tidak menunggu seluruh riwayat terunduh
+            int shown = 0;
+            EntryHistory snap = syncedSnapshot();
+            MoodReplica synced = snap == null ? syncedReplica() : null;
+            MoodHistory cached = snap == null && synced == null && this.userId != null
+                    ? supabase.peekCache(this.userId, null, null) : null;
+            if (snap != null) {
+                shown = printEntryHistory(snap.asList().iterator());
+            } else if (synced != null) {
+                shown = printEntryHistory(synced.entries().asList().iterator());
+            } else if (cached != null) {
+                // riwayat lengkap user sudah ada di cache -> tampilkan tanpa request jaringan
+                shown = printEntryHistory(cached.asList().iterator());
+            } else if (this.userId != null) {
+                // cache aktif tapi belum berisi riwayat ini: halaman yang ditampilkan sekaligus mengisi cache
+                MoodHistory fill = supabase.isCacheEnabled() ? new MoodHistory() : null;
+                long version = supabase.cacheVersion();
+                try (MoodCursor cursor = supabase.cursorAllEntriesForUser(this.userId, HISTORY_PAGE_SIZE)) {
+                    shown = printEntryHistory(fill == null ? cursor : collecting(cursor, fill));
+                    if (cursor.failed()) {
+                        System.err.println("Gagal memuat riwayat dari Supabase. Cek logs untuk detail.");
+                        return;
+                    }
+                }
+                // baris yang tidak muat di kamus MoodHistory tidak ikut dikumpulkan: riwayat tidak lengkap, jangan di-cache
+                if (fill != null && fill.size() == shown) supabase.cacheHistory(this.userId, fill.freeze(), version);
+            }
 
-        if (entries.isEmpty()) {
-            System.out.println("Tidak ditemukan entri untuk user ini. Menampilkan semua entri sebagai fallback.");
-            entries = supabase.fetchAllEntries();
-        }
+            if (shown == 0) {
+                System.out.println("Tidak ditemukan entri untuk user ini. Menampilkan semua entri sebagai fallback.");
+                try (MoodCursor cursor = supabase.cursorAllEntries(HISTORY_PAGE_SIZE)) {
+                    shown = printEntryHistory(cursor);
+                }
+            }
 
-        if (entries.isEmpty()) {
-            System.out.println("Tidak ada entri.");
-            return;
+            if (shown == 0) {
+                System.out.println("Tidak ada entri.");
+            }
+        } finally {
+            endAction(action, "displayEntryHistory");
         }
+    }
+
+    // meneruskan baris dari it sambil menyalinnya ke out
+    private static Iterator<SupabaseClient.MoodEntry> collecting(Iterator<SupabaseClient.MoodEntry> it, MoodHistory out) {
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return it.hasNext();
+            }
 
-        System.out.println("Riwayat entri:");
-    // determine anchor for day counting: prefer anchorDate (account creation), otherwise fall back to earliest entry date
-    LocalDate anchorLocal = null;
-    if (this.anchorDate != null) anchorLocal = this.anchorDate.toLocalDate();
-    else anchorLocal = entries.get(0).timestamp.toLocalDate();
+            @Override
+            public SupabaseClient.MoodEntry next() {
+                SupabaseClient.MoodEntry e = it.next();
+                if (out.hasRoomFor(e.mood, e.score)) out.add(e);
+                return e;
+            }
+        };
+    }
 
-        for (SupabaseClient.MoodEntry e : entries) {
+    private int printEntryHistory(Iterator<SupabaseClient.MoodEntry> entries) {
+        int shown = 0;
+        LocalDate anchorLocal = null;
+        while (entries.hasNext()) {
+            SupabaseClient.MoodEntry e = entries.next();
+            if (shown == 0) {
+                System.out.println("Riwayat entri:");
+                // determine anchor for day counting: prefer anchorDate (account creation), otherwise fall back to earliest entry date
+                if (this.anchorDate != null) anchorLocal = this.anchorDate.toLocalDate();
+                else anchorLocal = e.timestamp.toLocalDate();
+            }
             String dayOfWeek = e.timestamp.getDayOfWeek().toString();
             String dayInIndonesian = translateDayToIndonesian(dayOfWeek);
             long daysSinceStart = java.time.Duration.between(anchorLocal.atStartOfDay(), e.timestamp.toLocalDate().atStartOfDay()).toDays() + 1;
             System.out.println("Hari ke-" + daysSinceStart + " - " + e.mood + " (skor: " + e.score + ") [hari: " + dayInIndonesian + "]");
+            shown++;
         }
+        return shown;
     }
 
     public void displayWeeklyGraph() {
-        LocalDate today = LocalDate.now();
-        LocalDate windowStart = today.minusDays(6);
-        LocalDate start;
-        if (this.anchorDate != null) {
-            LocalDate a = this.anchorDate.toLocalDate();
-            start = a.isAfter(windowStart) ? a : windowStart;
-        } else {
-            start = windowStart;
-        }
-        List<SupabaseClient.MoodEntry> entries = supabase.fetchEntriesBetweenForUser(start, today, this.userId);
+        MoodifyEvents.Action action = beginAction();
+        try {
+            flush();
+            LocalDate today = LocalDate.now();
+            LocalDate windowStart = today.minusDays(6);
+            LocalDate start;
+            if (this.anchorDate != null) {
+                LocalDate a = this.anchorDate.toLocalDate();
+                start = a.isAfter(windowStart) ? a : windowStart;
+            } else {
+                start = windowStart;
+            }
+            List<SupabaseClient.DailyAggregate> days = dailyBetween(start, today);
 
-        if (entries.isEmpty()) {
-            entries = supabase.fetchEntriesBetween(start, today);
-        }
+            if (days != null && days.isEmpty()) {
+                days = supabase.fetchDailyAggregates(start, today, null);
+            }
 
-        if (entries.isEmpty()) {
-            return;
-        }
+            if (days == null) {
+                System.err.println("Gagal memuat grafik mingguan dari Supabase. Cek logs untuk detail.");
+                return;
+            }
+            if (days.isEmpty()) {
+                return;
+            }
 
-        double[] totals = new double[7];
-        int[] counts = new int[7];
+            double[] totals = new double[7];
+            int[] counts = new int[7];
 
-        for (SupabaseClient.MoodEntry e : entries) {
-            int idx = (int) java.time.Duration.between(start.atStartOfDay(), e.timestamp.toLocalDate().atStartOfDay()).toDays();
-            if (idx < 0 || idx > 6) continue;
-            totals[idx] += e.score;
-            counts[idx] += 1;
-        }
+            long startDay = start.toEpochDay();
+            for (SupabaseClient.DailyAggregate d : days) {
+                int idx = (int) (d.date.toEpochDay() - startDay);
+                if (idx < 0 || idx > 6) continue;
+                totals[idx] += d.sum;
+                counts[idx] += d.count;
+            }
 
-        for (int i = 0; i < 7; i++) {
-            double avg = counts[i] == 0 ? 0.0 : totals[i] / counts[i];
-            System.out.printf("Hari %d (%s): %.2f (%d entri)%n", i + 1, start.plusDays(i), avg, counts[i]);
+            for (int i = 0; i < 7; i++) {
+                double avg = counts[i] == 0 ? 0.0 : totals[i] / counts[i];
+                System.out.printf("Hari %d (%s): %.2f (%d entri)%n", i + 1, start.plusDays(i), avg, counts[i]);
+            }
+        } finally {
+            endAction(action, "displayWeeklyGraph");
         }
     }
 
     public WeeklyStats calculateWeeklyStats() {
-        LocalDate today = LocalDate.now();
-        LocalDate start = today.minusDays(6);
-        List<SupabaseClient.MoodEntry> entries;
-        if (this.userId != null) entries = supabase.fetchEntriesBetweenForUser(start, today, this.userId);
-        else entries = supabase.fetchEntriesBetween(start, today);
-        int total = 0;
-        int sum = 0;
-        for (SupabaseClient.MoodEntry e : entries) {
-            total++;
-            sum += e.score;
+        MoodifyEvents.Action action = beginAction();
+        try {
+            flush();
+            LocalDate today = LocalDate.now();
+            LocalDate start = today.minusDays(6);
+            List<SupabaseClient.DailyAggregate> days = dailyBetween(start, today);
+            if (days == null) {
+                System.err.println("Gagal memuat statistik mingguan dari Supabase. Cek logs untuk detail.");
+                days = List.of();
+            }
+            return MoodAggregator.weekly(days);
+        } finally {
+            endAction(action, "calculateWeeklyStats");
         }
-        double avg = total == 0 ? 0.0 : ((double)sum)/total;
-        return new WeeklyStats(total, sum, avg);
     }
 
     public static int scoreForMood(String mood) {
-        return switch (mood) {
-            case "Kacau" -> 1;
-            case "Buruk" -> 2;
-            case "Netral" -> 3;
-            case "Bagus" -> 4;
-            case "Sangat bagus" -> 5;
-            default -> 0;
-        };
+        return Mood.scoreOf(mood);
     }
 
     public String translateDayToIndonesian(String dayOfWeek) {
@@ -0,0 +1,156 @@
+package org.example;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Buffer write-behind untuk entri mood: entri dikumpulkan di memori lalu dikirim dengan satu
+ * {@link SupabaseClient#insertMoods(List)} ketika
+ * - jumlah entri mencapai {@code maxBatch},
+ * - entri tertua sudah menunggu {@code maxDelay}, atau
+ * - JVM shutdown / {@link #close()} dipanggil.
+ *
+ * Batch yang gagal dikirim tetap di depan antrean dan dicoba lagi pada flush berikutnya. Setiap entri membawa
+ * idempotency key sejak masuk buffer, jadi batch yang sebenarnya sudah tersimpan (respons hilang) tidak
+ * menjadi duplikat saat dikirim ulang.
+ *
+ * Batch yang ditolak server (4xx, lihat {@link SupabaseClient#isRejected}) tidak akan pernah berhasil, jadi tidak
+ * dibiarkan menahan antrean: batch dikirim ulang per baris dan hanya baris yang ditolak yang disisihkan
+ * ({@link #rejected()}, juga dicetak ke stderr). Buffer dibatasi {@code maxPending} entri; selama Supabase tidak
+ * bisa dihubungi, {@link #add} menolak entri baru alih-alih menumpuk memori tanpa batas.
+ */
+public class MoodWriteBuffer implements AutoCloseable {
+    public static final int DEFAULT_MAX_PENDING = 10_000;
+
+    private final SupabaseClient supabase;
+    private final int maxBatch;
+    private final int maxPending;
+    private final ScheduledExecutorService timer;
+    // diisi oleh open() sebelum instance dikembalikan
+    private Thread shutdownHook;
+    private final List<SupabaseClient.MoodEntry> pending = new ArrayList<>();
+    // guarded by this; paling banyak maxPending, yang tertua dibuang lebih dulu
+    private final List<SupabaseClient.MoodEntry> rejected = new ArrayList<>();
+    private final Object flushLock = new Object();
+    private boolean closed = false;
+
+    private MoodWriteBuffer(SupabaseClient supabase, int maxBatch, int maxPending) {
+        this.supabase = supabase;
+        this.maxBatch = maxBatch;
+        this.maxPending = maxPending;
+        this.timer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "moodify-write-behind");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    public static MoodWriteBuffer open(SupabaseClient supabase, int maxBatch, Duration maxDelay) {
+        return open(supabase, maxBatch, maxDelay, Math.max(DEFAULT_MAX_PENDING, maxBatch));
+    }
+
+    /**
+     * Create a buffer and start its flush timer and shutdown hook. These are registered here rather than in the
+     * constructor so neither can call {@link #flush} on a half-constructed instance.
+     */
+    public static MoodWriteBuffer open(SupabaseClient supabase, int maxBatch, Duration maxDelay, int maxPending) {
+        if (maxBatch <= 0) throw new IllegalArgumentException("maxBatch must be positive");
+        if (maxPending < maxBatch) throw new IllegalArgumentException("maxPending must be at least maxBatch");
+        MoodWriteBuffer b = new MoodWriteBuffer(supabase, maxBatch, maxPending);
+        long delayMs = Math.max(1, maxDelay.toMillis());
+        b.timer.scheduleWithFixedDelay(b::flush, delayMs, delayMs, TimeUnit.MILLISECONDS);
+        b.shutdownHook = new Thread(b::flush, "moodify-write-behind-shutdown");
+        Runtime.getRuntime().addShutdownHook(b.shutdownHook);
+        return b;
+    }
+
+    /**
+     * Queue one entry. Triggers a background flush when the batch is full. Returns false (entry not queued) if
+     * {@code maxPending} entries are already waiting.
+     */
+    public boolean add(SupabaseClient.MoodEntry entry) {
+        boolean full;
+        synchronized (this) {
+            if (closed) throw new IllegalStateException("MoodWriteBuffer is closed");
+            if (pending.size() >= maxPending) return false;
+            pending.add(entry.keyed());
+            full = pending.size() >= maxBatch;
+        }
+        if (full) timer.execute(this::flush);
+        return true;
+    }
+
+    public synchronized int size() {
+        return pending.size();
+    }
+
+    /** Entries the server refused (they are no longer queued), oldest first. */
+    public synchronized List<SupabaseClient.MoodEntry> rejected() {
+        return List.copyOf(rejected);
+    }
+
+    /**
+     * Send everything queued so far, in batches of at most {@code maxBatch}. Returns true if the buffer is empty afterwards.
+     */
+    public boolean flush() {
+        // hanya flush yang menghapus dari depan antrean, jadi add() tidak perlu menunggu request jaringan
+        synchronized (flushLock) {
+            while (true) {
+                List<SupabaseClient.MoodEntry> batch;
+                synchronized (this) {
+                    if (pending.isEmpty()) return true;
+                    batch = new ArrayList<>(pending.subList(0, Math.min(maxBatch, pending.size())));
+                }
+                int status = supabase.insertMoodsStatus(batch);
+                // insert PostgREST atomik: satu baris buruk menolak seluruh batch, jadi pisahkan per baris
+                int sent = status >= 200 && status < 300 ? batch.size()
+                        : SupabaseClient.isRejected(status) ? sendEach(batch) : 0;
+                synchronized (this) {
+                    pending.subList(0, sent).clear();
+                }
+                if (sent < batch.size()) {
+                    System.err.println("[MoodWriteBuffer] flush gagal, " + size() + " entri tetap di buffer.");
+                    return false;
+                }
+            }
+        }
+    }
+
+    // kirim satu per satu; baris yang ditolak disisihkan. Berhenti pada kegagalan sementara; mengembalikan jumlah yang selesai
+    private int sendEach(List<SupabaseClient.MoodEntry> batch) {
+        for (int i = 0; i < batch.size(); i++) {
+            SupabaseClient.MoodEntry e = batch.get(i);
+            int status = supabase.insertMoodsStatus(List.of(e));
+            if (status >= 200 && status < 300) continue;
+            if (!SupabaseClient.isRejected(status)) return i;
+            System.err.print("[MoodWriteBuffer] entri ditolak Supabase (status=" + status + "), disisihkan: " + MoodJournal.formatLine(e));
+            synchronized (this) {
+                if (rejected.size() >= maxPending) rejected.remove(0);
+                rejected.add(e);
+            }
+        }
+        return batch.size();
+    }
+
+    @Override
+    public void close() {
+        synchronized (this) {
+            closed = true;
+        }
+        timer.shutdown();
+        if (!flush()) {
+            System.err.println("[MoodWriteBuffer] " + size() + " entri tidak terkirim ke Supabase.");
+        }
+        int refused = rejected().size();
+        if (refused > 0) System.err.println("[MoodWriteBuffer] " + refused + " entri ditolak Supabase dan tidak disimpan.");
+        try {
+            Runtime.getRuntime().removeShutdownHook(shutdownHook);
+        } catch (IllegalStateException ignored) {
+            // sedang shutdown; hook sudah berjalan
+        }
+    }
+}
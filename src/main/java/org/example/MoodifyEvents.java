@@ -0,0 +1,133 @@
+package org.example;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Event JFR (JDK Flight Recorder) untuk melihat ke mana waktu satu aksi menu habis:
+ * {@link Action} membungkus aksi menu; di dalamnya ada {@link HttpRequest} (jaringan), {@link CsvParse} (decoding)
+ * dan {@link Aggregation} (perhitungan).
+ *
+ * {@link Aggregation} dan parsing dari SupabaseClient (sinkron) berjalan di thread aksi, jadi di JMC terlihat di bawah
+ * Action pada thread yang sama. {@link HttpRequest} di-commit di thread executor HttpClient (dan retry/hedge di
+ * thread lain lagi), begitu juga parsing lewat AsyncSupabaseClient; HttpRequest dihubungkan ke aksinya lewat field
+ * "Action Id" yang sama dengan milik {@link Action} (0 jika request tidak berasal dari aksi menu).
+ *
+ * Rekam dengan {@code java -XX:StartFlightRecording=filename=moodify.jfr -jar ...} lalu buka di JDK Mission Control
+ * (kategori "Moodify"). Tanpa rekaman, begin/end/shouldCommit praktis gratis: field hanya diisi jika
+ * {@code shouldCommit()} true, dan objek event dieliminasi oleh JIT (escape analysis).
+ */
+final class MoodifyEvents {
+    private static final AtomicLong NEXT_ACTION_ID = new AtomicLong();
+    // id aksi yang sedang berjalan di thread ini; dibaca saat request dikirim, bukan saat event di-commit
+    private static final ThreadLocal<Long> CURRENT_ACTION = new ThreadLocal<>();
+
+    private MoodifyEvents() {
+    }
+
+    /** Id of the action running on the calling thread, or 0. */
+    static long currentActionId() {
+        Long id = CURRENT_ACTION.get();
+        return id == null ? 0 : id;
+    }
+
+    /** Start a new action on this thread and return its id; undo with {@link #exitAction(long)}. */
+    static long enterAction() {
+        long id = NEXT_ACTION_ID.incrementAndGet();
+        CURRENT_ACTION.set(id);
+        return id;
+    }
+
+    /** Restore the action that was running before {@link #enterAction()} (0 = none). */
+    static void exitAction(long previousId) {
+        if (previousId == 0) CURRENT_ACTION.remove();
+        else CURRENT_ACTION.set(previousId);
+    }
+
+    @Name("org.example.HttpRequest")
+    @Label("Supabase Request")
+    @Category({"Moodify", "Network"})
+    @Description("One HTTP attempt: from sending the request until the response body was consumed or closed")
+    @StackTrace(false)
+    static final class HttpRequest extends Event {
+        @Label("Action Id")
+        @Description("Id of the Action that sent the request (captured on the calling thread), 0 if none")
+        long actionId;
+        @Label("Operation")
+        String operation;
+        @Label("Method")
+        String method;
+        @Label("Path")
+        String path;
+        @Label("Attempt")
+        int attempt;
+        @Label("Status")
+        @Description("HTTP status, 0 if no response arrived")
+        int status;
+        @Label("Request Bytes")
+        @DataAmount
+        long requestBytes;
+        @Label("Response Bytes")
+        @Description("Body bytes as received, before gzip/deflate decoding")
+        @DataAmount
+        long responseBytes;
+        @Label("Error")
+        String error;
+    }
+
+    @Name("org.example.CsvParse")
+    @Label("CSV Parse")
+    @Category({"Moodify", "Decoding"})
+    @Description("Decoding one CSV response; includes waiting for body bytes, since bodies are parsed as they stream in")
+    @StackTrace(false)
+    static final class CsvParse extends Event {
+        @Label("Parser")
+        String parser;
+        @Label("Rows")
+        int rows;
+        @Label("Skipped Rows")
+        @Description("Malformed or incomplete rows that were skipped")
+        int skipped;
+    }
+
+    @Name("org.example.Aggregation")
+    @Label("Mood Aggregation")
+    @Category({"Moodify", "Computation"})
+    @StackTrace(false)
+    static final class Aggregation extends Event {
+        @Label("Source")
+        @Description("snapshot, replica, cache or rollup")
+        String source;
+        @Label("Window Start")
+        String windowStart;
+        @Label("Window End")
+        String windowEnd;
+        @Label("Entries")
+        long entries;
+        @Label("Days")
+        int days;
+    }
+
+    @Name("org.example.Action")
+    @Label("Menu Action")
+    @Category({"Moodify"})
+    @StackTrace(false)
+    static final class Action extends Event {
+        @Label("Action Id")
+        long actionId;
+        @Label("Parent Action Id")
+        @Description("Action that was already running on the thread, 0 if none")
+        long parentActionId;
+        @Label("Action")
+        String action;
+        @Label("User")
+        String userId;
+    }
+}
@@ -0,0 +1,132 @@
+package org.example;
+
+import java.time.Duration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.mindrot.jbcrypt.BCrypt;
+
+/**
+ * Hash/verifikasi password BCrypt di pool thread terpisah.
+ * - cost dikalibrasi saat start: cost terbesar (dalam [{@link #MIN_COST}, {@link #MAX_COST}]) yang satu hash-nya
+ *   masih di bawah target latensi di mesin ini, atau cost tetap jika diberikan. Kalibrasi adalah tugas pertama
+ *   di pool, jadi konstruktor tidak menunggu
+ * - pool berukuran tetap dengan antrean terbatas; jika antrean penuh, future langsung gagal dengan
+ *   {@link RejectedExecutionException} (caller menampilkan "server sibuk") alih-alih menumpuk pekerjaan
+ * - {@link #verify} yang berhasil untuk hash dengan cost berbeda dari target sekaligus membuat hash baru
+ *   ({@link Verification#rehash}) supaya bisa disimpan ulang
+ */
+public class PasswordHasher implements AutoCloseable {
+    /** Result of {@link #verify}; {@code rehash} is non-null when the stored hash should be replaced. */
+    public static final class Verification {
+        public final boolean ok;
+        public final String rehash;
+
+        Verification(boolean ok, String rehash) {
+            this.ok = ok;
+            this.rehash = rehash;
+        }
+    }
+
+    // cost di bawah 10 terlalu murah untuk password, di atas 16 terlalu lambat untuk login interaktif
+    static final int MIN_COST = 10;
+    static final int MAX_COST = 16;
+    private static final int PROBE_COST = 8;
+
+    private final CompletableFuture<Integer> cost;
+    private final ThreadPoolExecutor pool;
+
+    /**
+     * @param target     latency target for one hash; ignored when {@code fixedCost} > 0
+     * @param fixedCost  cost to use without calibrating, or 0 to calibrate
+     * @param threads    hashing threads
+     * @param queueDepth calls allowed to wait for a thread before new ones are rejected
+     */
+    public PasswordHasher(Duration target, int fixedCost, int threads, int queueDepth) {
+        AtomicInteger n = new AtomicInteger();
+        this.pool = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(queueDepth), r -> {
+            Thread t = new Thread(r, "moodify-bcrypt-" + n.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        }, new ThreadPoolExecutor.AbortPolicy());
+        // antrean FIFO: tugas hash/verify selalu berjalan setelah kalibrasi selesai
+        this.cost = fixedCost > 0
+                ? CompletableFuture.completedFuture(Math.max(4, Math.min(31, fixedCost)))
+                : CompletableFuture.supplyAsync(() -> calibrate(target), pool);
+    }
+
+    /** BCrypt cost used for new hashes. */
+    public int getCost() {
+        return cost.join();
+    }
+
+    /** Calls waiting for a hashing thread. */
+    public int queued() {
+        return pool.getQueue().size();
+    }
+
+    public CompletableFuture<String> hash(String password) {
+        return submit(() -> BCrypt.hashpw(password, BCrypt.gensalt(getCost())));
+    }
+
+    /**
+     * Check {@code password} against {@code storedHash}. A malformed hash counts as a mismatch.
+     */
+    public CompletableFuture<Verification> verify(String password, String storedHash) {
+        return submit(() -> {
+            boolean ok;
+            try {
+                ok = BCrypt.checkpw(password, storedHash);
+            } catch (IllegalArgumentException ex) {
+                ok = false;
+            }
+            if (!ok) return new Verification(false, null);
+            int target = getCost();
+            String rehash = costOf(storedHash) != target ? BCrypt.hashpw(password, BCrypt.gensalt(target)) : null;
+            return new Verification(true, rehash);
+        });
+    }
+
+    @Override
+    public void close() {
+        pool.shutdown();
+    }
+
+    /** Cost encoded in a {@code $2a$NN$...} hash, or -1 if it cannot be read. */
+    static int costOf(String hash) {
+        if (hash == null || hash.length() < 7 || hash.charAt(0) != '$' || hash.charAt(3) != '$' || hash.charAt(6) != '$') return -1;
+        char a = hash.charAt(4), b = hash.charAt(5);
+        if (a < '0' || a > '9' || b < '0' || b > '9') return -1;
+        return (a - '0') * 10 + (b - '0');
+    }
+
+    private <T> CompletableFuture<T> submit(java.util.function.Supplier<T> task) {
+        try {
+            return CompletableFuture.supplyAsync(task, pool);
+        } catch (RejectedExecutionException ex) {
+            return CompletableFuture.failedFuture(ex);
+        }
+    }
+
+    // waktu BCrypt berlipat dua per kenaikan cost: ukur di cost kecil lalu ekstrapolasi
+    private static int calibrate(Duration target) {
+        String salt = BCrypt.gensalt(PROBE_COST);
+        BCrypt.hashpw("calibration", salt); // pemanasan JIT
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < 3; i++) {
+            long t0 = System.nanoTime();
+            BCrypt.hashpw("calibration", salt);
+            best = Math.min(best, System.nanoTime() - t0);
+        }
+        int c = PROBE_COST;
+        long estimate = best;
+        while (c < MAX_COST && estimate * 2 <= target.toNanos()) {
+            estimate *= 2;
+            c++;
+        }
+        return Math.max(MIN_COST, c);
+    }
+}
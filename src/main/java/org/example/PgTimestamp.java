@@ -0,0 +1,177 @@
+package org.example;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * Parser timestamp Postgres/ISO-8601 tanpa alokasi string dan tanpa exception, untuk jalur parsing CSV.
+ * Format yang diterima (spasi di awal/akhir diabaikan):
+ * <pre>
+ *   YYYY-MM-DD(T| )HH:MM[:SS[.fraction]][Z | ±HH | ±HHMM | ±HH:MM | ±HH:MM:SS]
+ * </pre>
+ * Contoh: {@code 2025-11-02 22:00:00+00} (timestamptz dari Supabase), {@code 2025-11-02T22:00:00.123456+00:00},
+ * {@code 2025-11-02T22:00} (format data/moods.csv).
+ *
+ * Nilai dengan offset dinormalisasi ke UTC; nilai tanpa offset dianggap sudah UTC (sama seperti insert).
+ */
+final class PgTimestamp {
+    /** Returned by {@link #parseEpochSecond} and {@link #parseEpochMicros} for text that is not a valid timestamp. */
+    static final long INVALID = Long.MIN_VALUE;
+
+    private static final int[] DAYS_IN_MONTH = {31, 28, 31, 30, 31, 30, 31, 31, 30, 31, 30, 31};
+
+    private PgTimestamp() {}
+
+    static LocalDateTime parse(CharSequence s) {
+        return parse(s, 0, s.length());
+    }
+
+    /**
+     * Parse {@code s[start, end)} as a UTC LocalDateTime, or null if it is not a valid timestamp.
+     */
+    static LocalDateTime parse(CharSequence s, int start, int end) {
+        long[] f = FIELDS.get();
+        if (!scan(s, start, end, f)) return null;
+        if (f[7] == 0) {
+            return LocalDateTime.of((int) f[0], (int) f[1], (int) f[2], (int) f[3], (int) f[4], (int) f[5], (int) f[6]);
+        }
+        return LocalDateTime.ofEpochSecond(epochSecond(f), (int) f[6], ZoneOffset.UTC);
+    }
+
+    /**
+     * Parse {@code s[start, end)} into seconds since 1970-01-01T00:00Z (fraction dropped), or {@link #INVALID}.
+     */
+    static long parseEpochSecond(CharSequence s, int start, int end) {
+        long[] f = FIELDS.get();
+        if (!scan(s, start, end, f)) return INVALID;
+        return epochSecond(f);
+    }
+
+    /**
+     * Parse {@code s[start, end)} into microseconds since 1970-01-01T00:00Z (the precision Postgres stores),
+     * or {@link #INVALID}.
+     */
+    static long parseEpochMicros(CharSequence s, int start, int end) {
+        long[] f = FIELDS.get();
+        if (!scan(s, start, end, f)) return INVALID;
+        return epochSecond(f) * 1_000_000L + f[6] / 1_000;
+    }
+
+    // year, month, day, hour, minute, second, nanos, offsetSeconds; per thread so parsing does not allocate
+    private static final ThreadLocal<long[]> FIELDS = ThreadLocal.withInitial(() -> new long[8]);
+
+    private static boolean scan(CharSequence s, int start, int end, long[] f) {
+        while (start < end && s.charAt(start) <= ' ') start++;
+        while (end > start && s.charAt(end - 1) <= ' ') end--;
+        if (end - start < 16) return false;
+
+        int p = start;
+        int year = digits(s, p, 4, end);
+        if (year < 0 || s.charAt(p + 4) != '-') return false;
+        int month = digits(s, p + 5, 2, end);
+        if (month < 1 || month > 12 || s.charAt(p + 7) != '-') return false;
+        int day = digits(s, p + 8, 2, end);
+        if (day < 1 || day > daysInMonth(year, month)) return false;
+        char sep = s.charAt(p + 10);
+        if (sep != 'T' && sep != ' ' && sep != 't') return false;
+        int hour = digits(s, p + 11, 2, end);
+        if (hour < 0 || hour > 23 || s.charAt(p + 13) != ':') return false;
+        int minute = digits(s, p + 14, 2, end);
+        if (minute < 0 || minute > 59) return false;
+        p += 16;
+
+        int second = 0;
+        int nanos = 0;
+        if (p < end && s.charAt(p) == ':') {
+            if (end - p < 3) return false;
+            second = digits(s, p + 1, 2, end);
+            if (second < 0 || second > 59) return false;
+            p += 3;
+            if (p < end && (s.charAt(p) == '.' || s.charAt(p) == ',')) {
+                p++;
+                int n = 0;
+                int scale = 100_000_000;
+                int begin = p;
+                while (p < end && isDigit(s.charAt(p))) {
+                    // digit setelah ke-9 (di bawah nanodetik) diabaikan
+                    if (p - begin < 9) {
+                        n += (s.charAt(p) - '0') * scale;
+                        scale /= 10;
+                    }
+                    p++;
+                }
+                if (p == begin) return false;
+                nanos = n;
+            }
+        }
+
+        int offset = 0;
+        if (p < end) {
+            char c = s.charAt(p);
+            if ((c == 'Z' || c == 'z') && p + 1 == end) {
+                p++;
+            } else if (c == '+' || c == '-') {
+                int sign = c == '-' ? -1 : 1;
+                p++;
+                int oh = digits(s, p, 2, end);
+                if (oh < 0 || oh > 18) return false;
+                p += 2;
+                int om = 0, os = 0;
+                if (p < end) {
+                    if (s.charAt(p) == ':') p++;
+                    om = digits(s, p, 2, end);
+                    if (om < 0 || om > 59) return false;
+                    p += 2;
+                    if (p < end) {
+                        if (s.charAt(p) != ':') return false;
+                        os = digits(s, p + 1, 2, end);
+                        if (os < 0 || os > 59) return false;
+                        p += 3;
+                    }
+                }
+                offset = sign * (oh * 3600 + om * 60 + os);
+            } else {
+                return false;
+            }
+        }
+        if (p != end) return false;
+
+        f[0] = year; f[1] = month; f[2] = day; f[3] = hour; f[4] = minute; f[5] = second; f[6] = nanos; f[7] = offset;
+        return true;
+    }
+
+    private static long epochSecond(long[] f) {
+        return daysFromCivil(f[0], f[1], f[2]) * 86_400L + f[3] * 3600 + f[4] * 60 + f[5] - f[7];
+    }
+
+    // jumlah hari sejak 1970-01-01 untuk tanggal proleptic Gregorian (algoritma "days_from_civil")
+    static long daysFromCivil(long y, long m, long d) {
+        y -= m <= 2 ? 1 : 0;
+        long era = Math.floorDiv(y, 400);
+        long yoe = y - era * 400;
+        long doy = (153 * (m + (m > 2 ? -3 : 9)) + 2) / 5 + d - 1;
+        long doe = yoe * 365 + yoe / 4 - yoe / 100 + doy;
+        return era * 146_097 + doe - 719_468;
+    }
+
+    private static int daysInMonth(int year, int month) {
+        if (month == 2 && (year % 4 == 0 && (year % 100 != 0 || year % 400 == 0))) return 29;
+        return DAYS_IN_MONTH[month - 1];
+    }
+
+    // n digit desimal mulai dari index p, atau -1 jika bukan digit / melewati end
+    private static int digits(CharSequence s, int p, int n, int end) {
+        if (p + n > end) return -1;
+        int v = 0;
+        for (int i = p; i < p + n; i++) {
+            char c = s.charAt(i);
+            if (!isDigit(c)) return -1;
+            v = v * 10 + (c - '0');
+        }
+        return v;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+}
@@ -0,0 +1,1275 @@
+package org.example;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
+import java.util.stream.IntStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Server lokal pengganti Supabase (subset PostgREST) untuk test integrasi dan pengukuran performa tanpa jaringan.
+ * Data disimpan di memori dalam tabel {@code moods}, {@code users} dan {@code mood_daily} (dijaga "trigger" saat
+ * insert/update/delete di moods, sama seperti supabase/migrations/20261017000100_mood_daily_rollup.sql), plus RPC
+ * {@code mood_daily_stats}.
+ *
+ * Yang didukung, sebatas yang dipakai {@link SupabaseClient}:
+ * - GET/HEAD dengan filter {@code eq, neq, gt, gte, lt, lte, is, in}, gabungan {@code or=(..)} / {@code and(..)},
+ *   {@code select}, {@code order}, {@code limit}, {@code offset}; respons JSON, CSV ({@code Accept: text/csv}) atau
+ *   {@link MoodCodec#MEDIA_TYPE}, gzip jika diminta; {@code Prefer: count=exact} mengisi total di Content-Range
+ * - POST objek atau array, {@code on_conflict} + {@code Prefer: resolution=ignore-duplicates|merge-duplicates},
+ *   {@code Prefer: return=representation|minimal}; pelanggaran unique tanpa resolusi = 409
+ * - PATCH dengan filter (termasuk update bersyarat seperti {@code password_hash=eq.<lama>}), DELETE dengan filter
+ * - injeksi latensi ({@link #setLatency}) dan error ({@link #setErrorRate}) per request, dan check constraint per kolom
+ *   ({@link #addCheck}) untuk baris yang ditolak server (400, kode 23514)
+ *
+ * Kolom uuid diperlakukan sebagai teks (tidak divalidasi) dan header apikey hanya harus ada. Query yang diurutkan
+ * menurut timestamp (moods) / date (mood_daily) memakai salinan terurut yang dibuat ulang setelah ada penulisan,
+ * jadi halaman keyset ({@code or=(timestamp.gt.X,and(timestamp.eq.X,id.gt.Y))&order=timestamp.asc,id.asc&limit=N})
+ * tidak memindai seluruh tabel. Seperti Postgres, baris yang sama menurut {@code order} tidak punya urutan tetap:
+ * jika urutan tidak mencakup kolom unik, baris seri diacak per request supaya klien yang bergantung padanya ketahuan.
+ */
+public class PostgrestStandIn implements AutoCloseable {
+    private enum Type { BIGINT, INT, TEXT, TIMESTAMP, DATE }
+
+    private static final long MICROS_PER_DAY = 86_400_000_000L;
+
+    /** PostgREST-style error: {@code {"code":..,"message":..}} with an HTTP status. */
+    private static final class ApiError extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        final int status;
+        final String code;
+
+        ApiError(int status, String code, String message) {
+            super(message);
+            this.status = status;
+            this.code = code;
+        }
+    }
+
+    private static final class Table {
+        final String name;
+        final String[] columns;
+        final Type[] types;
+        // kolom unik (primary key dulu); baris dengan null di salah satu kolomnya tidak diindeks, seperti Postgres
+        final int[][] uniqueKeys;
+        final List<Map<List<Object>, Integer>> uniqueIndex = new ArrayList<>();
+        final int sortColumn;
+        // urutan salinan terurut: sortColumn lalu kolom primary key sebagai pemutus seri
+        final int[] sortOrder;
+        final List<Object[]> rows = new ArrayList<>();
+        // kolom -> syarat nilai (check constraint); diubah lewat addCheck, dibaca dengan lock
+        final Map<Integer, Predicate<Object>> checks = new HashMap<>();
+        private volatile Object[][] sorted;
+        long nextId = 1;
+
+        Table(String name, String[] columns, Type[] types, String[][] uniqueKeys, String sortColumn) {
+            this.name = name;
+            this.columns = columns;
+            this.types = types;
+            this.uniqueKeys = new int[uniqueKeys.length][];
+            for (int k = 0; k < uniqueKeys.length; k++) {
+                this.uniqueKeys[k] = new int[uniqueKeys[k].length];
+                for (int c = 0; c < uniqueKeys[k].length; c++) this.uniqueKeys[k][c] = column(uniqueKeys[k][c]);
+                uniqueIndex.add(new HashMap<>());
+            }
+            this.sortColumn = sortColumn == null ? -1 : column(sortColumn);
+            this.sortOrder = this.sortColumn < 0 ? new int[0]
+                    : IntStream.concat(IntStream.of(this.sortColumn),
+                            Arrays.stream(this.uniqueKeys[0]).filter(c -> c != this.sortColumn)).toArray();
+        }
+
+        int column(String name) {
+            for (int i = 0; i < columns.length; i++) if (columns[i].equals(name)) return i;
+            return -1;
+        }
+
+        List<Object> key(int k, Object[] row) {
+            int[] cols = uniqueKeys[k];
+            List<Object> key = new ArrayList<>(cols.length);
+            for (int c : cols) {
+                if (row[c] == null) return null;
+                key.add(row[c]);
+            }
+            return key;
+        }
+
+        void add(Object[] row) {
+            int idx = rows.size();
+            rows.add(row);
+            for (int k = 0; k < uniqueKeys.length; k++) {
+                List<Object> key = key(k, row);
+                if (key != null) uniqueIndex.get(k).put(key, idx);
+            }
+            sorted = null;
+        }
+
+        void remove(Set<Integer> idx) {
+            List<Object[]> keep = new ArrayList<>(rows.size() - idx.size());
+            for (int i = 0; i < rows.size(); i++) if (!idx.contains(i)) keep.add(rows.get(i));
+            rows.clear();
+            for (Map<List<Object>, Integer> index : uniqueIndex) index.clear();
+            for (Object[] row : keep) add(row);
+            sorted = null;
+        }
+
+        void replace(int idx, Object[] row) {
+            Object[] old = rows.get(idx);
+            for (int k = 0; k < uniqueKeys.length; k++) {
+                List<Object> oldKey = key(k, old);
+                if (oldKey != null) uniqueIndex.get(k).remove(oldKey);
+                List<Object> key = key(k, row);
+                if (key != null) uniqueIndex.get(k).put(key, idx);
+            }
+            rows.set(idx, row);
+            sorted = null;
+        }
+
+        // dipanggil dengan read lock
+        synchronized Object[][] sorted() {
+            Object[][] s = sorted;
+            if (s == null) {
+                s = rows.toArray(new Object[0][]);
+                Arrays.sort(s, comparator(sortOrder, new boolean[sortOrder.length]));
+                sorted = s;
+            }
+            return s;
+        }
+    }
+
+    // column = -1 untuk or/and: value berisi List<Filter> cabangnya
+    private record Filter(int column, String op, Object value) {}
+
+    private static final class Query {
+        int[] select;
+        final List<Filter> filters = new ArrayList<>();
+        int[] order = new int[0];
+        boolean[] desc = new boolean[0];
+        int limit = -1;
+        int offset = 0;
+        String onConflict;
+    }
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final Map<String, Table> tables = new HashMap<>();
+    // satu lock untuk semua tabel: insert ke moods juga menulis mood_daily
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private volatile long latencyMinNanos = 0;
+    private volatile long latencyMaxNanos = 0;
+    private volatile double errorRate = 0;
+    private volatile int errorStatus = 503;
+
+    /**
+     * Bind to {@code port} on all interfaces (0 = any free port). Call {@link #start()} to accept requests.
+     */
+    public PostgrestStandIn(int port) throws IOException {
+        table(new Table("moods",
+                new String[] {"id", "mood", "score", "timestamp", "user_id", "idempotency_key"},
+                new Type[] {Type.BIGINT, Type.TEXT, Type.INT, Type.TIMESTAMP, Type.TEXT, Type.TEXT},
+                new String[][] {{"id"}, {"idempotency_key"}}, "timestamp"));
+        table(new Table("users",
+                new String[] {"id", "username", "password_hash", "last_login", "timestamp"},
+                new Type[] {Type.TEXT, Type.TEXT, Type.TEXT, Type.TIMESTAMP, Type.TIMESTAMP},
+                new String[][] {{"id"}, {"username"}}, null));
+        table(new Table("mood_daily",
+                new String[] {"user_id", "date", "count", "sum", "min", "max"},
+                new Type[] {Type.TEXT, Type.DATE, Type.INT, Type.BIGINT, Type.INT, Type.INT},
+                new String[][] {{"user_id", "date"}}, "date"));
+        this.server = HttpServer.create(new InetSocketAddress(port), 0);
+        this.executor = Executors.newVirtualThreadPerTaskExecutor();
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+    }
+
+    private void table(Table t) {
+        tables.put(t.name, t);
+    }
+
+    public PostgrestStandIn start() {
+        server.start();
+        return this;
+    }
+
+    public int port() {
+        return server.getAddress().getPort();
+    }
+
+    /** Base URL to use as SUPABASE_URL. */
+    public String url() {
+        return "http://localhost:" + port();
+    }
+
+    /** Delay every request by a uniformly random time in [min, max]. */
+    public void setLatency(Duration min, Duration max) {
+        this.latencyMinNanos = min.toNanos();
+        this.latencyMaxNanos = Math.max(min.toNanos(), max.toNanos());
+    }
+
+    /** Answer a fraction {@code rate} of requests with {@code status} instead of handling them. */
+    public void setErrorRate(double rate, int status) {
+        this.errorRate = rate;
+        this.errorStatus = status;
+    }
+
+    /**
+     * Reject inserts and updates whose {@code column} value fails {@code valid} with 400 / 23514, like a Postgres
+     * check constraint. The value is null, a Long (bigint/int), a String (text) or epoch micros (timestamp).
+     */
+    public void addCheck(String table, String column, Predicate<Object> valid) {
+        Table t = tables.get(table);
+        int c = t == null ? -1 : t.column(column);
+        if (c < 0) throw new IllegalArgumentException("no column " + table + "." + column);
+        lock.writeLock().lock();
+        try {
+            t.checks.merge(c, valid, Predicate::and);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** Number of rows in {@code table}, or -1 if there is no such table. */
+    public int rowCount(String table) {
+        Table t = tables.get(table);
+        if (t == null) return -1;
+        lock.readLock().lock();
+        try {
+            return t.rows.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    // -------------------- Dispatch --------------------
+
+    private void handle(HttpExchange ex) {
+        // exchange ditutup di finally, bukan try-with-resources: respons error masih harus ditulis di catch
+        try {
+            byte[] body = ex.getRequestBody().readAllBytes();
+            inject();
+            if (errorRate > 0 && ThreadLocalRandom.current().nextDouble() < errorRate) {
+                throw new ApiError(errorStatus, "INJECTED", "injected failure");
+            }
+            dispatch(ex, body);
+        } catch (ApiError e) {
+            try {
+                error(ex, e);
+            } catch (IOException ignored) {
+            }
+        } catch (IOException e) {
+            // klien menutup koneksi (mis. hedged read yang kalah)
+        } catch (RuntimeException | InterruptedException e) {
+            e.printStackTrace();
+        } finally {
+            ex.close();
+        }
+    }
+
+    private void dispatch(HttpExchange ex, byte[] body) throws IOException, ApiError {
+        String path = ex.getRequestURI().getRawPath();
+        String method = ex.getRequestMethod();
+        if (!path.startsWith("/rest/v1/")) throw new ApiError(404, "PGRST125", "Invalid path specified in request URL");
+        if (ex.getRequestHeaders().getFirst("apikey") == null) throw new ApiError(401, "PGRST301", "No API key found in request");
+        String rest = path.substring("/rest/v1/".length());
+        if (rest.isEmpty()) {
+            send(ex, 200, "application/json; charset=utf-8", "{}".getBytes(StandardCharsets.UTF_8));
+            return;
+        }
+        if (rest.startsWith("rpc/")) {
+            if (!method.equals("POST") && !method.equals("GET")) throw new ApiError(405, "PGRST101", "Only GET and POST are allowed for rpc");
+            rpc(ex, rest.substring(4), body);
+            return;
+        }
+        Table t = tables.get(rest);
+        if (t == null) throw new ApiError(404, "PGRST205", "Could not find the table 'public." + rest + "' in the schema cache");
+        Query q = parseQuery(t, ex.getRequestURI().getRawQuery());
+        switch (method) {
+            case "GET", "HEAD" -> select(ex, t, q);
+            case "POST" -> insert(ex, t, q, body);
+            case "PATCH" -> update(ex, t, q, body);
+            case "DELETE" -> delete(ex, t, q);
+            default -> throw new ApiError(405, "PGRST117", "Unsupported HTTP method: " + method);
+        }
+    }
+
+    // -------------------- Query string --------------------
+
+    private static Query parseQuery(Table t, String raw) throws ApiError {
+        Query q = new Query();
+        if (raw == null || raw.isEmpty()) return q;
+        for (String part : raw.split("&")) {
+            if (part.isEmpty()) continue;
+            int eq = part.indexOf('=');
+            String key = URLDecoder.decode(eq < 0 ? part : part.substring(0, eq), StandardCharsets.UTF_8);
+            String value = eq < 0 ? "" : URLDecoder.decode(part.substring(eq + 1), StandardCharsets.UTF_8);
+            switch (key) {
+                case "select" -> q.select = value.equals("*") ? null : columns(t, value);
+                case "order" -> {
+                    String[] terms = value.split(",");
+                    q.order = new int[terms.length];
+                    q.desc = new boolean[terms.length];
+                    for (int i = 0; i < terms.length; i++) {
+                        String[] bits = terms[i].split("\\.");
+                        q.order[i] = existing(t, bits[0]);
+                        q.desc[i] = bits.length > 1 && bits[1].equals("desc");
+                    }
+                }
+                case "limit" -> q.limit = integer(key, value);
+                case "offset" -> q.offset = integer(key, value);
+                case "on_conflict" -> q.onConflict = value;
+                case "or", "and" -> q.filters.add(logic(t, key, value));
+                case "columns" -> {
+                    // hanya membatasi kolom yang dibaca dari body; semua kolom kita sudah diperiksa per key
+                }
+                default -> q.filters.add(filter(t, existing(t, key), value));
+            }
+        }
+        return q;
+    }
+
+    /** {@code op.literal} on column {@code c}; literals may be double-quoted. */
+    private static Filter filter(Table t, int c, String value) throws ApiError {
+        int dot = value.indexOf('.');
+        if (dot < 0) throw new ApiError(400, "PGRST100", "failed to parse filter (" + value + ")");
+        String op = value.substring(0, dot), lit = value.substring(dot + 1);
+        switch (op) {
+            case "eq", "neq", "gt", "gte", "lt", "lte" -> {
+                return new Filter(c, op, literal(t, c, unquote(lit)));
+            }
+            case "is" -> {
+                if (!lit.equalsIgnoreCase("null")) throw new ApiError(400, "PGRST100", "failed to parse filter (" + value + ")");
+                return new Filter(c, "is", null);
+            }
+            case "in" -> {
+                if (!lit.startsWith("(") || !lit.endsWith(")")) throw new ApiError(400, "PGRST100", "failed to parse filter (" + value + ")");
+                Set<Object> values = new HashSet<>();
+                for (String v : lit.substring(1, lit.length() - 1).split(",")) values.add(literal(t, c, unquote(v.trim())));
+                return new Filter(c, "in", values);
+            }
+            default -> throw new ApiError(400, "PGRST100", "failed to parse filter (" + value + ")");
+        }
+    }
+
+    /** {@code or=(a.op.x,and(b.op.y,..))}: branches are {@code column.op.literal} or a nested {@code or(..)}/{@code and(..)}. */
+    private static Filter logic(Table t, String op, String value) throws ApiError {
+        if (!value.startsWith("(") || !value.endsWith(")")) throw new ApiError(400, "PGRST100", "failed to parse logic tree (" + value + ")");
+        List<Filter> branches = new ArrayList<>();
+        for (String term : splitTerms(value.substring(1, value.length() - 1))) {
+            int paren = term.indexOf('(');
+            if (term.startsWith("or(") || term.startsWith("and(")) {
+                branches.add(logic(t, term.substring(0, paren), term.substring(paren)));
+                continue;
+            }
+            int dot = term.indexOf('.');
+            if (dot < 0) throw new ApiError(400, "PGRST100", "failed to parse logic tree (" + value + ")");
+            branches.add(filter(t, existing(t, term.substring(0, dot)), term.substring(dot + 1)));
+        }
+        if (branches.isEmpty()) throw new ApiError(400, "PGRST100", "failed to parse logic tree (" + value + ")");
+        return new Filter(-1, op, branches);
+    }
+
+    // pisah di koma level teratas, di luar tanda kutip dan kurung
+    private static List<String> splitTerms(String s) {
+        List<String> out = new ArrayList<>();
+        int depth = 0, start = 0;
+        boolean quoted = false;
+        for (int i = 0; i < s.length(); i++) {
+            char ch = s.charAt(i);
+            if (ch == '"') quoted = !quoted;
+            else if (quoted) continue;
+            else if (ch == '(') depth++;
+            else if (ch == ')') depth--;
+            else if (ch == ',' && depth == 0) {
+                out.add(s.substring(start, i).trim());
+                start = i + 1;
+            }
+        }
+        if (start < s.length()) out.add(s.substring(start).trim());
+        return out;
+    }
+
+    private static int[] columns(Table t, String list) throws ApiError {
+        String[] names = list.split(",");
+        int[] out = new int[names.length];
+        for (int i = 0; i < names.length; i++) out[i] = existing(t, names[i].trim());
+        return out;
+    }
+
+    private static int existing(Table t, String name) throws ApiError {
+        int c = t.column(name);
+        if (c < 0) throw new ApiError(400, "42703", "column " + t.name + "." + name + " does not exist");
+        return c;
+    }
+
+    private static int integer(String key, String value) throws ApiError {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new ApiError(400, "PGRST100", "\"" + value + "\" is not a valid " + key);
+        }
+    }
+
+    private static String unquote(String v) {
+        return v.length() >= 2 && v.startsWith("\"") && v.endsWith("\"") ? v.substring(1, v.length() - 1) : v;
+    }
+
+    /** Text value from a URL or JSON string, converted to the column's type. */
+    private static Object literal(Table t, int c, String v) throws ApiError {
+        try {
+            return switch (t.types[c]) {
+                case BIGINT, INT -> Long.parseLong(v.trim());
+                case TIMESTAMP -> {
+                    long micros = PgTimestamp.parseEpochMicros(v, 0, v.length());
+                    if (micros == PgTimestamp.INVALID) throw new IllegalArgumentException(v);
+                    yield micros;
+                }
+                case DATE -> LocalDate.parse(v.trim());
+                case TEXT -> v;
+            };
+        } catch (RuntimeException e) {
+            throw new ApiError(400, "22P02", "invalid input syntax for type " + t.types[c].name().toLowerCase() + ": \"" + v + "\"");
+        }
+    }
+
+    private static Object fromJson(Table t, int c, Object v) throws ApiError {
+        if (v == null) return null;
+        if (v instanceof String s) return literal(t, c, s);
+        if (v instanceof Long || v instanceof Double) {
+            if (t.types[c] == Type.TEXT) return v.toString();
+            if (t.types[c] == Type.INT || t.types[c] == Type.BIGINT) return ((Number) v).longValue();
+        }
+        throw new ApiError(400, "22P02", "invalid input for column " + c + " of " + t.name + ": " + v);
+    }
+
+    private static boolean matches(Object[] row, List<Filter> filters) {
+        for (Filter f : filters) if (!test(row, f)) return false;
+        return true;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static boolean test(Object[] row, Filter f) {
+        if (f.column() < 0) {
+            List<Filter> branches = (List<Filter>) f.value();
+            if (f.op().equals("and")) return matches(row, branches);
+            for (Filter b : branches) if (test(row, b)) return true;
+            return false;
+        }
+        Object v = row[f.column()];
+        return switch (f.op()) {
+            case "is" -> v == null;
+            case "in" -> v != null && ((Set<?>) f.value()).contains(v);
+            default -> {
+                if (v == null) yield false;
+                int cmp = compare(v, f.value());
+                yield switch (f.op()) {
+                    case "eq" -> cmp == 0;
+                    case "neq" -> cmp != 0;
+                    case "gt" -> cmp > 0;
+                    case "gte" -> cmp >= 0;
+                    case "lt" -> cmp < 0;
+                    default -> cmp <= 0;
+                };
+            }
+        };
+    }
+
+    /** Smallest value of column {@code c} that {@code f} can accept (inclusive), or null if unbounded. */
+    @SuppressWarnings("unchecked")
+    private static Object lowerBound(Filter f, int c) {
+        if (f.column() >= 0) {
+            return f.column() == c && f.value() != null && Set.of("eq", "gt", "gte").contains(f.op()) ? f.value() : null;
+        }
+        Object bound = null;
+        for (Filter b : (List<Filter>) f.value()) {
+            Object v = lowerBound(b, c);
+            if (f.op().equals("or")) {
+                // or: cabang tanpa batas membuat seluruh filter tanpa batas
+                if (v == null) return null;
+                if (bound == null || compare(v, bound) < 0) bound = v;
+            } else if (v != null && (bound == null || compare(v, bound) > 0)) {
+                bound = v;
+            }
+        }
+        return bound;
+    }
+
+    // -------------------- GET --------------------
+
+    /** Rows matching {@code q}, ordered and sliced. Caller holds the read lock. */
+    private static List<Object[]> find(Table t, Query q) {
+        List<Object[]> out = new ArrayList<>();
+        int want = q.limit < 0 ? Integer.MAX_VALUE : q.limit;
+        if (want == 0) return out;
+        boolean unique = coversUniqueKey(t, q.order);
+        if (t.sortColumn >= 0 && q.order.length >= 1 && q.order[0] == t.sortColumn && !q.desc[0]) {
+            // salinan terurut: batas filter kolom urut lewat binary search
+            Object[][] rows = t.sorted();
+            int from = 0, to = rows.length;
+            for (Filter f : q.filters) {
+                if (f.column() < 0) {
+                    Object lb = lowerBound(f, t.sortColumn);
+                    if (lb != null) from = Math.max(from, bound(rows, t.sortColumn, lb, false));
+                    continue;
+                }
+                if (f.column() != t.sortColumn || f.value() == null) continue;
+                switch (f.op()) {
+                    case "gte" -> from = Math.max(from, bound(rows, t.sortColumn, f.value(), false));
+                    case "gt" -> from = Math.max(from, bound(rows, t.sortColumn, f.value(), true));
+                    case "lte" -> to = Math.min(to, bound(rows, t.sortColumn, f.value(), true));
+                    case "lt" -> to = Math.min(to, bound(rows, t.sortColumn, f.value(), false));
+                    case "eq" -> {
+                        from = Math.max(from, bound(rows, t.sortColumn, f.value(), false));
+                        to = Math.min(to, bound(rows, t.sortColumn, f.value(), true));
+                    }
+                    default -> {
+                    }
+                }
+            }
+            if (unique && isPrefix(q, t.sortOrder)) {
+                // urutan query = urutan salinan dan tanpa seri: berhenti setelah offset + limit baris
+                int skip = q.offset;
+                for (int i = from; i < to && out.size() < want; i++) {
+                    if (!matches(rows[i], q.filters)) continue;
+                    if (skip > 0) skip--;
+                    else out.add(rows[i]);
+                }
+                return out;
+            }
+            for (int i = from; i < to; i++) if (matches(rows[i], q.filters)) out.add(rows[i]);
+        } else {
+            for (Object[] row : t.rows) if (matches(row, q.filters)) out.add(row);
+        }
+        if (q.order.length > 0) {
+            Comparator<Object[]> cmp = comparator(q.order, q.desc);
+            out.sort(cmp);
+            if (!unique) shuffleTies(out, cmp);
+        }
+        int from = Math.min(q.offset, out.size());
+        int to = (int) Math.min(out.size(), (long) from + want);
+        return from == 0 && to == out.size() ? out : new ArrayList<>(out.subList(from, to));
+    }
+
+    private static Comparator<Object[]> comparator(int[] order, boolean[] desc) {
+        Comparator<Object[]> cmp = null;
+        for (int i = 0; i < order.length; i++) {
+            int c = order[i];
+            Comparator<Object[]> one = (a, b) -> compare(a[c], b[c]);
+            if (desc[i]) one = one.reversed();
+            cmp = cmp == null ? one : cmp.thenComparing(one);
+        }
+        return cmp;
+    }
+
+    private static boolean coversUniqueKey(Table t, int[] order) {
+        Set<Integer> cols = new HashSet<>();
+        for (int c : order) cols.add(c);
+        for (int[] key : t.uniqueKeys) {
+            boolean all = true;
+            for (int c : key) all &= cols.contains(c);
+            if (all) return true;
+        }
+        return false;
+    }
+
+    private static boolean isPrefix(Query q, int[] sortOrder) {
+        if (q.order.length > sortOrder.length) return false;
+        for (int i = 0; i < q.order.length; i++) if (q.order[i] != sortOrder[i] || q.desc[i]) return false;
+        return true;
+    }
+
+    // Postgres tidak menjamin urutan baris yang seri menurut ORDER BY; acak supaya urutan insert tidak terlihat
+    private static void shuffleTies(List<Object[]> rows, Comparator<Object[]> cmp) {
+        int start = 0;
+        for (int i = 1; i <= rows.size(); i++) {
+            if (i < rows.size() && cmp.compare(rows.get(start), rows.get(i)) == 0) continue;
+            if (i - start > 1) Collections.shuffle(rows.subList(start, i), ThreadLocalRandom.current());
+            start = i;
+        }
+    }
+
+    // index pertama dengan nilai > v (after) atau >= v
+    private static int bound(Object[][] rows, int c, Object v, boolean after) {
+        int lo = 0, hi = rows.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            int cmp = compare(rows[mid][c], v);
+            if (cmp < 0 || (after && cmp == 0)) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    private void select(HttpExchange ex, Table t, Query q) throws IOException {
+        List<Object[]> rows;
+        String total = "*";
+        lock.readLock().lock();
+        try {
+            rows = find(t, q);
+            if (preferences(ex).contains("count=exact")) {
+                // jumlah total tanpa limit/offset, seperti PostgREST
+                int limit = q.limit, offset = q.offset;
+                q.limit = -1;
+                q.offset = 0;
+                total = String.valueOf(find(t, q).size());
+                q.limit = limit;
+                q.offset = offset;
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        // baris tidak pernah diubah di tempat (PATCH mengganti array-nya), jadi aman ditulis tanpa lock
+        ex.getResponseHeaders().set("Content-Range", (rows.isEmpty() ? "*" : q.offset + "-" + (q.offset + rows.size() - 1)) + "/" + total);
+        respond(ex, 200, t, q.select, rows);
+    }
+
+    /** Write {@code rows} as series, CSV or JSON according to Accept, gzip-compressed if the client allows it. */
+    private static void respond(HttpExchange ex, int status, Table t, int[] select, List<Object[]> rows) throws IOException {
+        int[] cols = select;
+        if (cols == null) {
+            cols = new int[t.columns.length];
+            for (int i = 0; i < cols.length; i++) cols[i] = i;
+        }
+        String accept = ex.getRequestHeaders().getFirst("Accept");
+        accept = accept == null ? "" : accept;
+        String format;
+        if (accept.contains(MoodCodec.MEDIA_TYPE) && seriesCompatible(t, cols, rows)) format = MoodCodec.MEDIA_TYPE;
+        else if (accept.contains("text/csv")) format = "text/csv; charset=utf-8";
+        else format = "application/json; charset=utf-8";
+        ex.getResponseHeaders().set("Content-Type", format);
+        if (ex.getRequestMethod().equals("HEAD")) {
+            ex.sendResponseHeaders(status, -1);
+            return;
+        }
+        String encoding = ex.getRequestHeaders().getFirst("Accept-Encoding");
+        boolean gzip = encoding != null && encoding.contains("gzip");
+        if (gzip) ex.getResponseHeaders().set("Content-Encoding", "gzip");
+        ex.sendResponseHeaders(status, 0);
+        try (OutputStream out = gzip
+                ? new GZIPOutputStream(ex.getResponseBody(), 1 << 16)
+                : new BufferedOutputStream(ex.getResponseBody(), 1 << 16)) {
+            if (format.equals(MoodCodec.MEDIA_TYPE)) writeSeries(out, t, cols, rows);
+            else if (format.startsWith("text/csv")) writeCsv(out, t, cols, rows);
+            else writeJson(out, t, cols, rows);
+        }
+    }
+
+    // moods dengan kolom score+timestamp, dan tidak lebih banyak label mood daripada yang muat di satu blok codec
+    private static boolean seriesCompatible(Table t, int[] cols, List<Object[]> rows) {
+        if (!t.name.equals("moods")) return false;
+        boolean score = false, ts = false;
+        for (int c : cols) {
+            String n = t.columns[c];
+            if (n.equals("score")) score = true;
+            else if (n.equals("timestamp")) ts = true;
+            else if (!n.equals("mood") && !n.equals("user_id")) return false;
+        }
+        if (!score || !ts) return false;
+        Set<Object> moods = new HashSet<>();
+        int mood = t.column("mood");
+        for (Object[] row : rows) {
+            if (moods.add(row[mood]) && moods.size() > 200) return false;
+        }
+        return true;
+    }
+
+    private static void writeSeries(OutputStream out, Table t, int[] cols, List<Object[]> rows) throws IOException {
+        int mood = -1, user = -1;
+        for (int c : cols) {
+            if (t.columns[c].equals("mood")) mood = c;
+            else if (t.columns[c].equals("user_id")) user = c;
+        }
+        int score = t.column("score"), ts = t.column("timestamp");
+        MoodCodec.writeHeader(out);
+        MoodHistory block = new MoodHistory(MoodCodec.BLOCK_ROWS);
+        for (Object[] row : rows) {
+            String m = mood < 0 ? null : (String) row[mood];
+            int s = row[score] == null ? 0 : ((Long) row[score]).intValue();
+            if (!block.hasRoomFor(m, s)) {
+                out.write(MoodCodec.encodeBlock(block, 0, block.size()));
+                block.clear();
+            }
+            block.add(m, s, (Long) row[ts], user < 0 ? null : (String) row[user]);
+            if (block.size() == MoodCodec.BLOCK_ROWS) {
+                out.write(MoodCodec.encodeBlock(block, 0, block.size()));
+                block.clear();
+            }
+        }
+        if (!block.isEmpty()) out.write(MoodCodec.encodeBlock(block, 0, block.size()));
+        MoodCodec.writeEnd(out);
+    }
+
+    private static void writeCsv(OutputStream out, Table t, int[] cols, List<Object[]> rows) throws IOException {
+        StringBuilder sb = new StringBuilder(256);
+        for (int i = 0; i < cols.length; i++) sb.append(i == 0 ? "" : ",").append(t.columns[cols[i]]);
+        sb.append('\n');
+        for (Object[] row : rows) {
+            for (int i = 0; i < cols.length; i++) {
+                if (i > 0) sb.append(',');
+                Object v = row[cols[i]];
+                if (v == null) continue;
+                if (t.types[cols[i]] == Type.TIMESTAMP) pgTimestamp(sb, (Long) v, ' ', "+00");
+                else if (v instanceof String s && (s.indexOf(',') >= 0 || s.indexOf('"') >= 0 || s.indexOf('\n') >= 0)) {
+                    sb.append('"').append(s.replace("\"", "\"\"")).append('"');
+                } else sb.append(v);
+            }
+            sb.append('\n');
+            if (sb.length() > 1 << 15) flush(out, sb);
+        }
+        flush(out, sb);
+    }
+
+    private static void writeJson(OutputStream out, Table t, int[] cols, List<Object[]> rows) throws IOException {
+        StringBuilder sb = new StringBuilder(256).append('[');
+        boolean first = true;
+        for (Object[] row : rows) {
+            sb.append(first ? "{" : ",{");
+            first = false;
+            for (int i = 0; i < cols.length; i++) {
+                if (i > 0) sb.append(',');
+                sb.append('"').append(t.columns[cols[i]]).append("\":");
+                Object v = row[cols[i]];
+                if (v == null) sb.append("null");
+                else if (v instanceof Long) {
+                    if (t.types[cols[i]] == Type.TIMESTAMP) pgTimestamp(sb.append('"'), (Long) v, 'T', "+00:00").append('"');
+                    else sb.append(v);
+                } else sb.append('"').append(escape(v.toString())).append('"');
+            }
+            sb.append('}');
+            if (sb.length() > 1 << 15) flush(out, sb);
+        }
+        flush(out, sb.append(']'));
+    }
+
+    private static void flush(OutputStream out, StringBuilder sb) throws IOException {
+        out.write(sb.toString().getBytes(StandardCharsets.UTF_8));
+        sb.setLength(0);
+    }
+
+    // keluaran timestamptz Postgres (session UTC): 2026-01-01 10:00:00[.123456]+00
+    private static StringBuilder pgTimestamp(StringBuilder sb, long micros, char sep, String zone) {
+        LocalDateTime ts = MoodHistory.toLocalDateTime(micros);
+        sb.append(ts.toLocalDate()).append(sep);
+        two(sb, ts.getHour()).append(':');
+        two(sb, ts.getMinute()).append(':');
+        two(sb, ts.getSecond());
+        int us = ts.getNano() / 1000;
+        if (us != 0) {
+            String frac = String.format("%06d", us);
+            int end = frac.length();
+            while (frac.charAt(end - 1) == '0') end--;
+            sb.append('.').append(frac, 0, end);
+        }
+        return sb.append(zone);
+    }
+
+    private static StringBuilder two(StringBuilder sb, int v) {
+        return sb.append((char) ('0' + v / 10)).append((char) ('0' + v % 10));
+    }
+
+    // -------------------- POST --------------------
+
+    private void insert(HttpExchange ex, Table t, Query q, byte[] body) throws IOException, ApiError {
+        Object parsed = Json.parse(body);
+        List<?> objects = parsed instanceof List<?> l ? l : List.of(parsed);
+        String prefer = preferences(ex);
+        String resolution = prefer.contains("resolution=ignore-duplicates") ? "ignore"
+                : prefer.contains("resolution=merge-duplicates") ? "merge" : null;
+
+        List<Object[]> rows = new ArrayList<>(objects.size());
+        List<Set<Integer>> given = new ArrayList<>(objects.size());
+        for (Object o : objects) {
+            if (!(o instanceof Map<?, ?> m)) throw new ApiError(400, "PGRST102", "All object keys must match");
+            Object[] row = new Object[t.columns.length];
+            Set<Integer> cols = new HashSet<>();
+            for (Map.Entry<?, ?> e : m.entrySet()) {
+                int c = t.column((String) e.getKey());
+                if (c < 0) {
+                    throw new ApiError(400, "PGRST204", "Could not find the '" + e.getKey() + "' column of '" + t.name + "' in the schema cache");
+                }
+                row[c] = fromJson(t, c, e.getValue());
+                cols.add(c);
+            }
+            rows.add(row);
+            given.add(cols);
+        }
+
+        int conflictKey = 0; // tanpa on_conflict: primary key
+        if (q.onConflict != null) {
+            int[] target = columns(t, q.onConflict);
+            conflictKey = -1;
+            for (int k = 0; k < t.uniqueKeys.length; k++) {
+                if (Arrays.equals(sortedCopy(t.uniqueKeys[k]), sortedCopy(target))) conflictKey = k;
+            }
+            if (conflictKey < 0) {
+                throw new ApiError(400, "42P10", "there is no unique or exclusion constraint matching the ON CONFLICT specification");
+            }
+        }
+
+        List<Object[]> written = new ArrayList<>();
+        lock.writeLock().lock();
+        try {
+            // periksa semua baris dulu: statement gagal seluruhnya atau berhasil seluruhnya
+            List<Object[]> pending = new ArrayList<>();
+            List<Integer> replaceAt = new ArrayList<>();
+            Map<List<Object>, Integer> batchKeys = new HashMap<>();
+            for (int r = 0; r < rows.size(); r++) {
+                Object[] row = rows.get(r);
+                defaults(t, row);
+                check(t, row);
+                Integer existing = null;
+                for (int k = 0; k < t.uniqueKeys.length; k++) {
+                    List<Object> key = t.key(k, row);
+                    if (key == null) continue;
+                    Integer idx = t.uniqueIndex.get(k).get(key);
+                    boolean dupInBatch = batchKeys.containsKey(tagged(k, key));
+                    if (idx == null && !dupInBatch) continue;
+                    if (k != conflictKey || resolution == null || dupInBatch) {
+                        if (k == conflictKey && "ignore".equals(resolution)) {
+                            existing = -1;
+                            break;
+                        }
+                        throw new ApiError(409, "23505", "duplicate key value violates unique constraint \"" + t.name + "_"
+                                + String.join("_", keyNames(t, k)) + "_key\"");
+                    }
+                    existing = "ignore".equals(resolution) ? -1 : idx;
+                }
+                if (existing != null && existing < 0) continue; // ignore-duplicates
+                for (int k = 0; k < t.uniqueKeys.length; k++) {
+                    List<Object> key = t.key(k, row);
+                    if (key != null) batchKeys.put(tagged(k, key), r);
+                }
+                if (existing != null) {
+                    // merge-duplicates: kolom yang dikirim menimpa baris lama
+                    Object[] merged = t.rows.get(existing).clone();
+                    for (int c : given.get(r)) merged[c] = row[c];
+                    pending.add(merged);
+                    replaceAt.add(existing);
+                } else {
+                    pending.add(row);
+                    replaceAt.add(-1);
+                }
+            }
+            for (int i = 0; i < pending.size(); i++) {
+                Object[] row = pending.get(i);
+                if (replaceAt.get(i) >= 0) {
+                    t.replace(replaceAt.get(i), row);
+                } else {
+                    if (t.name.equals("moods") || t.name.equals("users")) assignId(t, row);
+                    t.add(row);
+                    if (t.name.equals("moods")) rollup(row);
+                }
+                written.add(row);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        if (prefer.contains("return=representation")) respond(ex, 201, t, q.select, written);
+        else send(ex, 201, null, null);
+    }
+
+    private static List<Object> tagged(int k, List<Object> key) {
+        List<Object> out = new ArrayList<>(key.size() + 1);
+        out.add(k);
+        out.addAll(key);
+        return out;
+    }
+
+    private static int[] sortedCopy(int[] a) {
+        int[] b = a.clone();
+        Arrays.sort(b);
+        return b;
+    }
+
+    private static List<String> keyNames(Table t, int k) {
+        List<String> out = new ArrayList<>();
+        for (int c : t.uniqueKeys[k]) out.add(t.columns[c]);
+        return out;
+    }
+
+    // dipanggil dengan write lock
+    private static void check(Table t, Object[] row) throws ApiError {
+        for (Map.Entry<Integer, Predicate<Object>> e : t.checks.entrySet()) {
+            if (!e.getValue().test(row[e.getKey()])) {
+                throw new ApiError(400, "23514", "new row for relation \"" + t.name + "\" violates check constraint \""
+                        + t.name + "_" + t.columns[e.getKey()] + "_check\"");
+            }
+        }
+    }
+
+    private static void defaults(Table t, Object[] row) {
+        if (t.name.equals("users")) {
+            int created = t.column("timestamp");
+            if (row[created] == null) row[created] = MoodHistory.toEpochMicros(LocalDateTime.now(java.time.ZoneOffset.UTC));
+        }
+    }
+
+    private static void assignId(Table t, Object[] row) {
+        int id = t.column("id");
+        if (row[id] != null) return;
+        row[id] = t.types[id] == Type.BIGINT ? (Object) t.nextId++ : UUID.randomUUID().toString();
+    }
+
+    // sama dengan trigger mood_daily_on_insert; dipanggil dengan write lock
+    private void rollup(Object[] mood) {
+        Table t = tables.get("moods"), daily = tables.get("mood_daily");
+        Object user = mood[t.column("user_id")];
+        Object ts = mood[t.column("timestamp")];
+        Object score = mood[t.column("score")];
+        if (user == null || ts == null || score == null) return;
+        LocalDate date = LocalDate.ofEpochDay(Math.floorDiv((Long) ts, MICROS_PER_DAY));
+        long s = (Long) score;
+        Integer idx = daily.uniqueIndex.get(0).get(List.of(user, date));
+        if (idx == null) {
+            daily.add(new Object[] {user, date, 1L, s, s, s});
+        } else {
+            Object[] old = daily.rows.get(idx);
+            daily.replace(idx, new Object[] {user, date, (Long) old[2] + 1, (Long) old[3] + s,
+                    Math.min((Long) old[4], s), Math.max((Long) old[5], s)});
+        }
+    }
+
+    // seperti mood_daily_recompute: hari (user, tanggal UTC) baris ini dihitung ulang dari moods; tanpa mood = tanpa baris
+    private void recompute(Object[] mood) {
+        Table t = tables.get("moods"), daily = tables.get("mood_daily");
+        int uc = t.column("user_id"), tc = t.column("timestamp"), sc = t.column("score");
+        Object user = mood[uc];
+        if (user == null || mood[tc] == null) return;
+        long from = Math.floorDiv((Long) mood[tc], MICROS_PER_DAY) * MICROS_PER_DAY, to = from + MICROS_PER_DAY;
+        LocalDate date = LocalDate.ofEpochDay(from / MICROS_PER_DAY);
+        long count = 0, sum = 0, min = Long.MAX_VALUE, max = Long.MIN_VALUE;
+        for (Object[] row : t.rows) {
+            if (!user.equals(row[uc]) || row[tc] == null || row[sc] == null) continue;
+            long ts = (Long) row[tc];
+            if (ts < from || ts >= to) continue;
+            long s = (Long) row[sc];
+            count++;
+            sum += s;
+            min = Math.min(min, s);
+            max = Math.max(max, s);
+        }
+        Integer idx = daily.uniqueIndex.get(0).get(List.of(user, date));
+        if (count == 0) {
+            if (idx != null) daily.remove(Set.of(idx));
+        } else if (idx == null) {
+            daily.add(new Object[] {user, date, count, sum, min, max});
+        } else {
+            daily.replace(idx, new Object[] {user, date, count, sum, min, max});
+        }
+    }
+
+    // -------------------- PATCH --------------------
+
+    private void update(HttpExchange ex, Table t, Query q, byte[] body) throws IOException, ApiError {
+        if (!(Json.parse(body) instanceof Map<?, ?> m)) throw new ApiError(400, "PGRST102", "Expected a JSON object");
+        Map<Integer, Object> set = new LinkedHashMap<>();
+        for (Map.Entry<?, ?> e : m.entrySet()) {
+            int c = t.column((String) e.getKey());
+            if (c < 0) throw new ApiError(400, "PGRST204", "Could not find the '" + e.getKey() + "' column of '" + t.name + "' in the schema cache");
+            set.put(c, fromJson(t, c, e.getValue()));
+        }
+        List<Object[]> written = new ArrayList<>();
+        lock.writeLock().lock();
+        try {
+            List<Integer> hits = new ArrayList<>();
+            for (int i = 0; i < t.rows.size(); i++) if (matches(t.rows.get(i), q.filters)) hits.add(i);
+            List<Object[]> updated = new ArrayList<>(hits.size());
+            for (int i : hits) {
+                Object[] row = t.rows.get(i).clone();
+                set.forEach((c, v) -> row[c] = v);
+                check(t, row);
+                for (int k = 0; k < t.uniqueKeys.length; k++) {
+                    List<Object> key = t.key(k, row);
+                    Integer other = key == null ? null : t.uniqueIndex.get(k).get(key);
+                    if (other != null && other != i) {
+                        throw new ApiError(409, "23505", "duplicate key value violates unique constraint \"" + t.name + "_"
+                                + String.join("_", keyNames(t, k)) + "_key\"");
+                    }
+                }
+                updated.add(row);
+            }
+            List<Object[]> before = new ArrayList<>(hits.size());
+            for (int j = 0; j < hits.size(); j++) {
+                before.add(t.rows.get(hits.get(j)));
+                t.replace(hits.get(j), updated.get(j));
+            }
+            if (t.name.equals("moods")) {
+                for (Object[] row : before) recompute(row);
+                for (Object[] row : updated) recompute(row);
+            }
+            written.addAll(updated);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        if (preferences(ex).contains("return=representation")) respond(ex, 200, t, q.select, written);
+        else send(ex, 204, null, null);
+    }
+
+    // -------------------- DELETE --------------------
+
+    private void delete(HttpExchange ex, Table t, Query q) throws IOException {
+        List<Object[]> removed = new ArrayList<>();
+        lock.writeLock().lock();
+        try {
+            Set<Integer> hits = new HashSet<>();
+            for (int i = 0; i < t.rows.size(); i++) {
+                if (!matches(t.rows.get(i), q.filters)) continue;
+                hits.add(i);
+                removed.add(t.rows.get(i));
+            }
+            if (!hits.isEmpty()) t.remove(hits);
+            if (t.name.equals("moods")) for (Object[] row : removed) recompute(row);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        if (preferences(ex).contains("return=representation")) respond(ex, 200, t, q.select, removed);
+        else send(ex, 204, null, null);
+    }
+
+    private static String preferences(HttpExchange ex) {
+        List<String> prefer = ex.getRequestHeaders().get("Prefer");
+        return prefer == null ? "" : String.join(",", prefer);
+    }
+
+    // -------------------- RPC --------------------
+
+    private void rpc(HttpExchange ex, String function, byte[] body) throws IOException, ApiError {
+        if (!function.equals("mood_daily_stats")) {
+            throw new ApiError(404, "PGRST202", "Could not find the function public." + function + " in the schema cache");
+        }
+        Object parsed = body.length == 0 ? Map.of() : Json.parse(body);
+        if (!(parsed instanceof Map<?, ?> args)) throw new ApiError(400, "PGRST102", "Expected a JSON object");
+        Table moods = tables.get("moods");
+        Object user = args.get("p_user_id");
+        LocalDate start, end;
+        try {
+            start = LocalDate.parse((String) args.get("p_start"));
+            end = LocalDate.parse((String) args.get("p_end"));
+        } catch (RuntimeException e) {
+            throw new ApiError(400, "22007", "invalid input syntax for type date");
+        }
+        long from = start.toEpochDay() * MICROS_PER_DAY, to = (end.toEpochDay() + 1) * MICROS_PER_DAY;
+        int ts = moods.column("timestamp"), score = moods.column("score"), uid = moods.column("user_id");
+        TreeMap<Long, long[]> days = new TreeMap<>();
+        lock.readLock().lock();
+        try {
+            Object[][] rows = moods.sorted();
+            for (int i = bound(rows, ts, from, false); i < rows.length && (Long) rows[i][ts] < to; i++) {
+                Object[] r = rows[i];
+                if (user != null && !user.equals(r[uid])) continue;
+                if (r[score] == null) continue;
+                long s = (Long) r[score];
+                long[] d = days.computeIfAbsent(Math.floorDiv((Long) r[ts], MICROS_PER_DAY), k -> new long[] {0, 0, Long.MAX_VALUE, Long.MIN_VALUE});
+                d[0]++;
+                d[1] += s;
+                d[2] = Math.min(d[2], s);
+                d[3] = Math.max(d[3], s);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        Table result = new Table("mood_daily_stats", new String[] {"day", "count", "sum", "min", "max"},
+                new Type[] {Type.DATE, Type.BIGINT, Type.BIGINT, Type.INT, Type.INT}, new String[0][], null);
+        List<Object[]> rows = new ArrayList<>(days.size());
+        days.forEach((day, d) -> rows.add(new Object[] {LocalDate.ofEpochDay(day), d[0], d[1], d[2], d[3]}));
+        respond(ex, 200, result, null, rows);
+    }
+
+    private void inject() throws InterruptedException {
+        long min = latencyMinNanos, max = latencyMaxNanos;
+        if (max <= 0) return;
+        long nanos = min == max ? min : ThreadLocalRandom.current().nextLong(min, max + 1);
+        Thread.sleep(Duration.ofNanos(nanos));
+    }
+
+    private static void error(HttpExchange ex, ApiError e) throws IOException {
+        String json = "{\"code\":\"" + escape(e.code) + "\",\"details\":null,\"hint\":null,\"message\":\"" + escape(e.getMessage()) + "\"}";
+        send(ex, e.status, "application/json; charset=utf-8", json.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void send(HttpExchange ex, int status, String contentType, byte[] body) throws IOException {
+        if (contentType != null) ex.getResponseHeaders().set("Content-Type", contentType);
+        boolean empty = body == null || body.length == 0 || ex.getRequestMethod().equals("HEAD");
+        ex.sendResponseHeaders(status, empty ? -1 : body.length);
+        if (!empty) ex.getResponseBody().write(body);
+    }
+
+    static int compare(Object a, Object b) {
+        if (a == null || b == null) return a == null ? (b == null ? 0 : 1) : -1; // NULLS LAST
+        @SuppressWarnings("unchecked")
+        Comparable<Object> ca = (Comparable<Object>) a;
+        return ca.compareTo(b);
+    }
+
+    /** Minimal JSON reader for request bodies: objects, arrays, strings, numbers (Long/Double), booleans, null. */
+    static final class Json {
+        private final String s;
+        private int pos;
+
+        private Json(String s) {
+            this.s = s;
+        }
+
+        static Object parse(byte[] body) throws ApiError {
+            Json j = new Json(new String(body, StandardCharsets.UTF_8));
+            try {
+                Object v = j.value();
+                j.space();
+                if (j.pos != j.s.length()) throw j.error();
+                return v;
+            } catch (IndexOutOfBoundsException | NumberFormatException e) {
+                throw j.error();
+            }
+        }
+
+        private ApiError error() {
+            return new ApiError(400, "PGRST102", "Empty or invalid json (at " + pos + ")");
+        }
+
+        private void space() {
+            while (pos < s.length() && Character.isWhitespace(s.charAt(pos))) pos++;
+        }
+
+        private Object value() throws ApiError {
+            space();
+            char c = s.charAt(pos);
+            switch (c) {
+                case '{' -> {
+                    Map<String, Object> m = new LinkedHashMap<>();
+                    pos++;
+                    space();
+                    if (s.charAt(pos) == '}') {
+                        pos++;
+                        return m;
+                    }
+                    while (true) {
+                        space();
+                        if (s.charAt(pos) != '"') throw error();
+                        String k = string();
+                        space();
+                        if (s.charAt(pos++) != ':') throw error();
+                        m.put(k, value());
+                        space();
+                        char d = s.charAt(pos++);
+                        if (d == '}') return m;
+                        if (d != ',') throw error();
+                    }
+                }
+                case '[' -> {
+                    List<Object> l = new ArrayList<>();
+                    pos++;
+                    space();
+                    if (s.charAt(pos) == ']') {
+                        pos++;
+                        return l;
+                    }
+                    while (true) {
+                        l.add(value());
+                        space();
+                        char d = s.charAt(pos++);
+                        if (d == ']') return l;
+                        if (d != ',') throw error();
+                    }
+                }
+                case '"' -> {
+                    return string();
+                }
+                default -> {
+                    if (s.startsWith("null", pos)) {
+                        pos += 4;
+                        return null;
+                    }
+                    if (s.startsWith("true", pos)) {
+                        pos += 4;
+                        return Boolean.TRUE;
+                    }
+                    if (s.startsWith("false", pos)) {
+                        pos += 5;
+                        return Boolean.FALSE;
+                    }
+                    int start = pos;
+                    while (pos < s.length() && "+-0123456789.eE".indexOf(s.charAt(pos)) >= 0) pos++;
+                    String n = s.substring(start, pos);
+                    if (n.isEmpty()) throw error();
+                    return n.indexOf('.') >= 0 || n.indexOf('e') >= 0 || n.indexOf('E') >= 0 ? (Object) Double.parseDouble(n) : (Object) Long.parseLong(n);
+                }
+            }
+        }
+
+        private String string() throws ApiError {
+            pos++; // '"'
+            StringBuilder sb = new StringBuilder();
+            while (true) {
+                char c = s.charAt(pos++);
+                if (c == '"') return sb.toString();
+                if (c != '\\') {
+                    sb.append(c);
+                    continue;
+                }
+                char e = s.charAt(pos++);
+                switch (e) {
+                    case 'n' -> sb.append('\n');
+                    case 't' -> sb.append('\t');
+                    case 'r' -> sb.append('\r');
+                    case 'b' -> sb.append('\b');
+                    case 'f' -> sb.append('\f');
+                    case 'u' -> {
+                        sb.append((char) Integer.parseInt(s.substring(pos, pos + 4), 16));
+                        pos += 4;
+                    }
+                    case '"', '\\', '/' -> sb.append(e);
+                    default -> throw error();
+                }
+            }
+        }
+    }
+
+    static String escape(String s) {
+        StringBuilder sb = new StringBuilder(s.length() + 8);
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '"' -> sb.append("\\\"");
+                case '\\' -> sb.append("\\\\");
+                case '\n' -> sb.append("\\n");
+                case '\r' -> sb.append("\\r");
+                case '\t' -> sb.append("\\t");
+                default -> {
+                    if (c < 0x20) sb.append(String.format("\\u%04x", (int) c));
+                    else sb.append(c);
+                }
+            }
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,468 @@
+package org.example;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Jalur kirim tunggal untuk semua request {@link SupabaseClient} / {@link AsyncSupabaseClient}:
+ * - deadline per panggilan: semua percobaan + jeda retry harus selesai sebelum deadline, timeout tiap percobaan
+ *   dipotong ke sisa waktunya
+ * - retry dengan exponential backoff + full jitter untuk request yang aman diulang ({@link #idempotent}): GET/HEAD,
+ *   PATCH, dan POST upsert / ignore-duplicates (insert mood membawa idempotency_key per baris)
+ * - circuit breaker: setelah sejumlah kegagalan berturut-turut (error jaringan, timeout, 5xx) request langsung gagal
+ *   dengan {@link CircuitOpenException} selama masa cooldown, lalu satu request percobaan menentukan tutup/buka lagi
+ * - hedged read (opsional): GET yang belum dijawab setelah p95 latensi operasinya dikirim sekali lagi, jawaban
+ *   pertama dipakai dan yang lain dibatalkan
+ * Setiap panggilan dicatat di {@link SupabaseMetrics}, setiap percobaan sebagai event JFR {@link MoodifyEvents.HttpRequest}.
+ */
+final class Resilience {
+    /** Thrown (as the failure of the returned future) while the circuit breaker is open. */
+    static final class CircuitOpenException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        CircuitOpenException(String op, long retryInMillis) {
+            super(op + ": Supabase tidak merespons, request ditolak selama " + retryInMillis + " ms lagi");
+        }
+    }
+
+    // sampel latensi per operasi untuk p95; hedging baru aktif setelah cukup sampel
+    private static final int LATENCY_SAMPLES = 128;
+    private static final int MIN_SAMPLES = 20;
+    private static final long BASE_BACKOFF_MS = 200;
+    private static final long MAX_BACKOFF_MS = 5_000;
+
+    private final HttpClient http;
+    private final Executor executor;
+    private final SupabaseMetrics metrics;
+    private volatile int maxAttempts = 3;
+    private volatile long deadlineNanos = Duration.ofSeconds(60).toNanos();
+    private volatile int breakerThreshold = 5;
+    private volatile long breakerOpenNanos = Duration.ofSeconds(30).toNanos();
+    private volatile boolean hedging = false;
+
+    // circuit breaker, dijaga oleh 'this'
+    private int consecutiveFailures;
+    private long openUntilNanos;
+    // percobaan yang sedang menguji breaker setengah-terbuka, atau null
+    private CompletableFuture<?> probe;
+
+    private final Map<String, LatencyWindow> latencies = new ConcurrentHashMap<>();
+
+    Resilience(HttpClient http, Executor executor, SupabaseMetrics metrics) {
+        this.http = http;
+        this.executor = executor;
+        this.metrics = metrics;
+    }
+
+    void setRetry(int maxAttempts, Duration deadline) {
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.deadlineNanos = deadline.toNanos();
+    }
+
+    /** {@code failures} <= 0 disables the breaker. */
+    void setCircuitBreaker(int failures, Duration openFor) {
+        synchronized (this) {
+            this.breakerThreshold = failures;
+            this.breakerOpenNanos = openFor.toNanos();
+            this.consecutiveFailures = 0;
+            this.openUntilNanos = 0;
+            this.probe = null;
+        }
+    }
+
+    void setHedging(boolean enabled) {
+        this.hedging = enabled;
+    }
+
+    /**
+     * Send {@code req} under the policy above. Non-2xx responses complete normally (the caller decides); the future
+     * fails with an IOException for network errors, an exhausted deadline or an open breaker. Cancelling the future
+     * cancels the attempt in flight and no retry is scheduled after it.
+     */
+    <T> CompletableFuture<HttpResponse<T>> send(String op, HttpRequest req, HttpResponse.BodyHandler<T> handler) {
+        long start = System.nanoTime();
+        // retry dan hedge berjalan di thread lain; id aksi diambil sekarang, di thread pemanggil
+        Call<T> call = new Call<>(op, req, handler, idempotent(req) ? maxAttempts : 1, start + deadlineNanos,
+                MoodifyEvents.currentActionId());
+        call.result.whenComplete((resp, ex) -> {
+            Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+            metrics.call(op, System.nanoTime() - start, resp == null ? 0 : resp.statusCode(), cause);
+        });
+        call.attempt(1);
+        return call.result;
+    }
+
+    /** Wait for {@code f} (e.g. from {@link #send}), rethrowing the IOException it failed with. */
+    static <T> T await(String op, CompletableFuture<T> f) throws IOException, InterruptedException {
+        try {
+            return f.get();
+        } catch (InterruptedException ex) {
+            f.cancel(true);
+            throw ex;
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof IOException io) throw io;
+            if (cause instanceof RuntimeException re) throw re;
+            throw new IOException(op + " failed", cause);
+        }
+    }
+
+    /**
+     * Safe to send more than once: GET/HEAD/PUT/PATCH/DELETE, and POSTs that the server deduplicates
+     * ({@code Prefer: resolution=...}, i.e. upserts and idempotency-keyed inserts) or that only read (rpc/).
+     */
+    static boolean idempotent(HttpRequest req) {
+        if (!req.method().equals("POST")) return true;
+        if (req.uri().getPath().contains("/rpc/")) return true; // satu-satunya RPC (mood_daily_stats) hanya membaca
+        return req.headers().firstValue("Prefer").orElse("").contains("resolution=");
+    }
+
+    /** One {@link #send}: the caller's future and the attempt in flight, which is cancelled along with it. */
+    private final class Call<T> {
+        final CompletableFuture<HttpResponse<T>> result = new CompletableFuture<>();
+        private final String op;
+        private final HttpRequest req;
+        private final HttpResponse.BodyHandler<T> handler;
+        private final int attempts;
+        private final long deadline;
+        private final long actionId;
+        private volatile CompletableFuture<HttpResponse<T>> current;
+
+        Call(String op, HttpRequest req, HttpResponse.BodyHandler<T> handler, int attempts, long deadline, long actionId) {
+            this.op = op;
+            this.req = req;
+            this.handler = handler;
+            this.attempts = attempts;
+            this.deadline = deadline;
+            this.actionId = actionId;
+            result.whenComplete((resp, ex) -> {
+                CompletableFuture<HttpResponse<T>> f = current;
+                if (result.isCancelled() && f != null) f.cancel(true);
+            });
+        }
+
+        void attempt(int n) {
+            // sudah dibatalkan (atau selesai) selagi menunggu jeda retry: tidak ada yang dikirim lagi
+            if (result.isDone()) return;
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                result.completeExceptionally(new HttpTimeoutException(op + ": deadline terlewati"));
+                return;
+            }
+            CompletableFuture<HttpResponse<T>> f = new CompletableFuture<>();
+            long retryIn = acquire(f);
+            if (retryIn > 0) {
+                metrics.rejected();
+                result.completeExceptionally(new CircuitOpenException(op, retryIn));
+                return;
+            }
+            metrics.sent(op, req.bodyPublisher().map(HttpRequest.BodyPublisher::contentLength).orElse(0L));
+            long start = System.nanoTime();
+            boolean read = req.method().equals("GET");
+            current = f;
+            f.whenComplete((resp, ex) -> finished(f, n, start, read, resp, ex));
+            try {
+                HttpRequest r = req;
+                Duration timeout = req.timeout().orElse(null);
+                if (timeout == null || timeout.toNanos() > remaining) {
+                    r = HttpRequest.newBuilder(req, (name, value) -> true).timeout(Duration.ofNanos(remaining)).build();
+                }
+                CompletableFuture<HttpResponse<T>> sent = hedging && read ? hedged(op, r, handler, n, actionId) : trace(op, r, handler, n, actionId);
+                sent.whenComplete((resp, ex) -> {
+                    if (ex != null) f.completeExceptionally(ex);
+                    else if (!f.complete(resp)) discard(resp);
+                });
+                f.whenComplete((resp, ex) -> {
+                    if (f.isCancelled()) sent.cancel(true);
+                });
+            } catch (RuntimeException ex) {
+                f.completeExceptionally(ex);
+            }
+            // dibatalkan di antara pemeriksaan di atas dan 'current' terisi
+            if (result.isCancelled()) f.cancel(true);
+        }
+
+        private void finished(CompletableFuture<HttpResponse<T>> f, int n, long start, boolean read, HttpResponse<T> resp, Throwable ex) {
+            Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+            if (cause instanceof CancellationException) {
+                // pembatalan tidak mengatakan apa pun tentang server: breaker tidak dihitung, slot percobaan dilepas
+                release(f);
+                result.completeExceptionally(cause);
+                return;
+            }
+            boolean failed = cause != null || resp.statusCode() >= 500;
+            record(f, failed);
+            if (!failed && read) latency(op).add(System.nanoTime() - start);
+
+            boolean retry = n < attempts && (cause instanceof IOException || cause == null && retryable(resp.statusCode()));
+            long delay = retry ? backoffNanos(n, resp) : 0;
+            if (!retry || System.nanoTime() + delay >= deadline) {
+                if (cause != null) result.completeExceptionally(cause);
+                else if (!result.complete(resp)) discard(resp);
+                return;
+            }
+            if (resp != null) discard(resp);
+            if (result.isDone()) return;
+            metrics.retried();
+            CompletableFuture.delayedExecutor(delay, TimeUnit.NANOSECONDS, executor).execute(() -> {
+                try {
+                    attempt(n + 1);
+                } catch (RuntimeException e) {
+                    result.completeExceptionally(e);
+                }
+            });
+        }
+    }
+
+    // 429 dan gateway/overload 5xx bersifat sementara; 500 biasanya error query yang akan terulang
+    private static boolean retryable(int status) {
+        return status == 429 || status == 502 || status == 503 || status == 504;
+    }
+
+    // full jitter: acak di [0, min(max, base * 2^(n-1))]; Retry-After (detik) dari server dihormati
+    private static long backoffNanos(int n, HttpResponse<?> resp) {
+        long cap = Math.min(MAX_BACKOFF_MS, BASE_BACKOFF_MS << Math.min(n - 1, 20));
+        long ms = ThreadLocalRandom.current().nextLong(cap + 1);
+        if (resp != null) {
+            String after = resp.headers().firstValue("Retry-After").orElse(null);
+            if (after != null) {
+                try {
+                    ms = Math.max(ms, Long.parseLong(after.trim()) * 1000);
+                } catch (NumberFormatException ignored) {
+                    // format tanggal HTTP tidak didukung
+                }
+            }
+        }
+        return TimeUnit.MILLISECONDS.toNanos(ms);
+    }
+
+    // -------------------- Circuit breaker --------------------
+
+    // 0 = boleh kirim, selain itu sisa waktu (ms) sampai breaker mencoba lagi
+    private synchronized long acquire(CompletableFuture<?> attempt) {
+        if (breakerThreshold <= 0 || consecutiveFailures < breakerThreshold) return 0;
+        long now = System.nanoTime();
+        if (now < openUntilNanos) return Math.max(1, TimeUnit.NANOSECONDS.toMillis(openUntilNanos - now));
+        // half-open: satu request percobaan, sisanya tetap ditolak sampai hasilnya diketahui
+        if (probe != null) return Math.max(1, TimeUnit.NANOSECONDS.toMillis(breakerOpenNanos));
+        probe = attempt;
+        return 0;
+    }
+
+    // hanya hasil percobaan itu sendiri yang melepas slotnya; request lama yang selesai belakangan tidak
+    private synchronized void release(CompletableFuture<?> attempt) {
+        if (probe == attempt) probe = null;
+    }
+
+    private synchronized void record(CompletableFuture<?> attempt, boolean failed) {
+        release(attempt);
+        if (!failed) {
+            consecutiveFailures = 0;
+            return;
+        }
+        if (++consecutiveFailures >= breakerThreshold && breakerThreshold > 0) {
+            if (consecutiveFailures == breakerThreshold) {
+                System.err.println("[SupabaseClient] " + consecutiveFailures + " kegagalan berturut-turut, request ditahan "
+                        + TimeUnit.NANOSECONDS.toMillis(breakerOpenNanos) + " ms");
+            }
+            // juga setelah request percobaan (half-open) gagal: buka lagi untuk satu periode penuh
+            openUntilNanos = System.nanoTime() + breakerOpenNanos;
+        }
+    }
+
+    /** True while requests are being rejected without being sent. */
+    synchronized boolean isOpen() {
+        return breakerThreshold > 0 && consecutiveFailures >= breakerThreshold && System.nanoTime() < openUntilNanos;
+    }
+
+    // -------------------- Hedged reads --------------------
+
+    private <T> CompletableFuture<HttpResponse<T>> hedged(String op, HttpRequest req, HttpResponse.BodyHandler<T> handler, int n,
+                                                          long actionId) {
+        long p95 = latency(op).p95();
+        if (p95 <= 0) return trace(op, req, handler, n, actionId);
+        CompletableFuture<HttpResponse<T>> winner = new CompletableFuture<>();
+        List<CompletableFuture<HttpResponse<T>>> racers = new CopyOnWriteArrayList<>();
+        AtomicInteger running = new AtomicInteger(1);
+        race(trace(op, req, handler, n, actionId), winner, racers, running);
+        CompletableFuture.delayedExecutor(p95, TimeUnit.NANOSECONDS, executor).execute(() -> {
+            if (winner.isDone()) return;
+            running.incrementAndGet();
+            metrics.hedged();
+            race(trace(op, req, handler, n, actionId), winner, racers, running);
+        });
+        // yang kalah (atau semuanya, jika pemanggil membatalkan) dihentikan
+        winner.whenComplete((resp, ex) -> racers.forEach(f -> f.cancel(true)));
+        return winner;
+    }
+
+    private static <T> void race(CompletableFuture<HttpResponse<T>> f, CompletableFuture<HttpResponse<T>> winner,
+                                 List<CompletableFuture<HttpResponse<T>>> racers, AtomicInteger running) {
+        racers.add(f);
+        f.whenComplete((resp, ex) -> {
+            if (ex == null) {
+                if (!winner.complete(resp)) discard(resp);
+            } else if (running.decrementAndGet() == 0) {
+                winner.completeExceptionally(ex);
+            }
+        });
+        if (winner.isDone()) f.cancel(true);
+    }
+
+    // body stream yang tidak dipakai harus ditutup supaya koneksinya dilepas
+    private static void discard(HttpResponse<?> resp) {
+        if (resp.body() instanceof InputStream in) {
+            try {
+                in.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    // satu percobaan HTTP: byte body dihitung saat tiba dari jaringan (sebelum decoding gzip) untuk metrik,
+    // dan event JFR ditutup saat body selesai dibaca, gagal, atau ditutup lebih awal
+    private <T> CompletableFuture<HttpResponse<T>> trace(String op, HttpRequest req, HttpResponse.BodyHandler<T> handler, int attempt,
+                                                         long actionId) {
+        RequestTrace t = new RequestTrace(op, req, attempt, actionId);
+        return http.sendAsync(req, t.wrap(handler)).whenComplete((resp, ex) -> {
+            if (ex != null) t.finish(ex);
+        });
+    }
+
+    private final class RequestTrace {
+        private final MoodifyEvents.HttpRequest event = new MoodifyEvents.HttpRequest();
+        private final String op;
+        private final HttpRequest req;
+        private final int attempt;
+        private final long actionId;
+        private final LongAdder received;
+        private final AtomicBoolean done = new AtomicBoolean();
+        private volatile int status;
+        private long bytes;
+
+        RequestTrace(String op, HttpRequest req, int attempt, long actionId) {
+            this.op = op;
+            this.req = req;
+            this.attempt = attempt;
+            this.actionId = actionId;
+            this.received = metrics.received(op);
+            event.begin();
+        }
+
+        void finish(Throwable failure) {
+            if (!done.compareAndSet(false, true)) return;
+            event.end();
+            if (event.shouldCommit()) {
+                Throwable cause = failure instanceof CompletionException && failure.getCause() != null ? failure.getCause() : failure;
+                event.actionId = actionId;
+                event.operation = op;
+                event.method = req.method();
+                event.path = req.uri().getPath();
+                event.attempt = attempt;
+                event.status = status;
+                event.requestBytes = Math.max(0, req.bodyPublisher().map(HttpRequest.BodyPublisher::contentLength).orElse(0L));
+                event.responseBytes = bytes;
+                event.error = cause == null ? null : cause.getClass().getSimpleName() + ": " + cause.getMessage();
+                event.commit();
+            }
+        }
+
+        <T> HttpResponse.BodyHandler<T> wrap(HttpResponse.BodyHandler<T> handler) {
+            return info -> {
+                status = info.statusCode();
+                HttpResponse.BodySubscriber<T> body = handler.apply(info);
+                return new HttpResponse.BodySubscriber<T>() {
+                    @Override
+                    public CompletionStage<T> getBody() {
+                        return body.getBody();
+                    }
+
+                    @Override
+                    public void onSubscribe(Flow.Subscription subscription) {
+                        body.onSubscribe(new Flow.Subscription() {
+                            @Override
+                            public void request(long n) {
+                                subscription.request(n);
+                            }
+
+                            @Override
+                            public void cancel() {
+                                subscription.cancel();
+                                finish(null); // stream ditutup sebelum habis (mis. hedged read yang kalah)
+                            }
+                        });
+                    }
+
+                    @Override
+                    public void onNext(List<ByteBuffer> items) {
+                        long n = 0;
+                        for (ByteBuffer b : items) n += b.remaining();
+                        received.add(n);
+                        bytes += n;
+                        body.onNext(items);
+                    }
+
+                    @Override
+                    public void onError(Throwable throwable) {
+                        body.onError(throwable);
+                        finish(throwable);
+                    }
+
+                    @Override
+                    public void onComplete() {
+                        body.onComplete();
+                        finish(null);
+                    }
+                };
+            };
+        }
+    }
+
+    private LatencyWindow latency(String op) {
+        return latencies.computeIfAbsent(op, k -> new LatencyWindow());
+    }
+
+    /** Last {@value #LATENCY_SAMPLES} response times of one operation. */
+    private static final class LatencyWindow {
+        private final long[] samples = new long[LATENCY_SAMPLES];
+        private int count;
+        private int next;
+
+        synchronized void add(long nanos) {
+            samples[next] = nanos;
+            next = (next + 1) % samples.length;
+            if (count < samples.length) count++;
+        }
+
+        /** 95th percentile in nanoseconds, or 0 while there are too few samples. */
+        synchronized long p95() {
+            if (count < MIN_SAMPLES) return 0;
+            long[] sorted = Arrays.copyOf(samples, count);
+            Arrays.sort(sorted);
+            return sorted[(int) Math.ceil(count * 0.95) - 1];
+        }
+    }
+}
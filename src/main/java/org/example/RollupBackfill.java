@@ -0,0 +1,113 @@
+package org.example;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Membangun ulang tabel rollup {@code mood_daily} dari seluruh isi 'moods'.
+ * - membaca semua baris lewat {@link MoodCursor} (urut timestamp, per halaman)
+ * - begitu cursor melewati sebuah hari, rollup hari itu untuk semua user sudah lengkap dan langsung
+ *   di-upsert, jadi memori hanya menampung satu hari
+ * - setiap kali batch dikirim, baris mood_daily di rentang tanggal batch itu yang tidak lagi punya mood
+ *   (user/hari yang semua mood-nya sudah dihapus atau dipindah) ikut dihapus; batch terakhir juga
+ *   mencakup semua tanggal sesudahnya
+ *
+ * Insert yang terjadi selama backfill tetap dijumlahkan oleh trigger; hari yang sedang berjalan bisa
+ * tertimpa nilai backfill, jadi jalankan saat sepi.
+ */
+public class RollupBackfill {
+    private final SupabaseClient supabase;
+    private final int batchSize;
+    private long rowsWritten = 0;
+    private long rowsDeleted = 0;
+    // tanggal terakhir yang sudah dibersihkan; null = belum ada (rentang pertama terbuka ke bawah)
+    private LocalDate cleanedUpTo = null;
+
+    public RollupBackfill(SupabaseClient supabase, int batchSize) {
+        this.supabase = supabase;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Returns the number of rollup rows written, or -1 if reading or writing failed.
+     */
+    public long run() {
+        rowsWritten = 0;
+        rowsDeleted = 0;
+        cleanedUpTo = null;
+        LocalDate currentDay = null;
+        // user_id -> {count, sum, min, max} untuk currentDay
+        Map<String, long[]> day = new HashMap<>();
+        List<SupabaseClient.DailyAggregate> out = new ArrayList<>(batchSize);
+        try (MoodCursor cursor = supabase.cursorAllEntries(SupabaseClient.DEFAULT_PAGE_SIZE)) {
+            while (cursor.hasNext()) {
+                SupabaseClient.MoodEntry e = cursor.next();
+                if (e.userId == null || e.userId.isEmpty()) continue;
+                LocalDate d = e.timestamp.toLocalDate();
+                if (!d.equals(currentDay)) {
+                    if (!drain(currentDay, day, out, false)) return -1;
+                    currentDay = d;
+                }
+                long[] acc = day.computeIfAbsent(e.userId, k -> new long[] {0, 0, Long.MAX_VALUE, Long.MIN_VALUE});
+                acc[0]++;
+                acc[1] += e.score;
+                acc[2] = Math.min(acc[2], e.score);
+                acc[3] = Math.max(acc[3], e.score);
+            }
+            if (cursor.failed()) {
+                System.err.println("[RollupBackfill] gagal membaca tabel moods.");
+                return -1;
+            }
+        }
+        if (!drain(currentDay, day, out, true)) return -1;
+        return rowsWritten;
+    }
+
+    /** Rollup rows removed by the last {@link #run()} because their day has no moods left. */
+    public long getRowsDeleted() {
+        return rowsDeleted;
+    }
+
+    // pindahkan rollup hari yang sudah lengkap ke batch, kirim jika batch penuh (atau force)
+    private boolean drain(LocalDate d, Map<String, long[]> day, List<SupabaseClient.DailyAggregate> out, boolean force) {
+        if (d != null) {
+            for (Map.Entry<String, long[]> me : day.entrySet()) {
+                long[] acc = me.getValue();
+                out.add(new SupabaseClient.DailyAggregate(me.getKey(), d, (int) acc[0], acc[1], (int) acc[2], (int) acc[3]));
+            }
+            day.clear();
+        }
+        if (!force && out.size() < batchSize) return true;
+        if (!supabase.upsertDailyRollups(out)) return false;
+        // batch selalu berisi hari yang lengkap, jadi (cleanedUpTo, d] bisa dibersihkan; batch terakhir tanpa batas atas
+        if (!deleteStale(out, force ? null : d)) return false;
+        rowsWritten += out.size();
+        out.clear();
+        return true;
+    }
+
+    // hapus baris mood_daily di (cleanedUpTo, upTo] yang tidak ada di batch yang baru ditulis
+    private boolean deleteStale(List<SupabaseClient.DailyAggregate> written, LocalDate upTo) {
+        List<SupabaseClient.DailyAggregate> existing = supabase.fetchDailyRollupsAfter(cleanedUpTo, upTo);
+        if (existing == null) return false;
+        Set<String> keep = new HashSet<>();
+        for (SupabaseClient.DailyAggregate a : written) keep.add(a.userId + "|" + a.date);
+        Map<String, List<LocalDate>> stale = new HashMap<>();
+        for (SupabaseClient.DailyAggregate a : existing) {
+            if (a.userId != null && !keep.contains(a.userId + "|" + a.date)) {
+                stale.computeIfAbsent(a.userId, k -> new ArrayList<>()).add(a.date);
+            }
+        }
+        for (Map.Entry<String, List<LocalDate>> me : stale.entrySet()) {
+            if (!supabase.deleteDailyRollups(me.getKey(), me.getValue())) return false;
+            rowsDeleted += me.getValue().size();
+        }
+        cleanedUpTo = upTo;
+        return true;
+    }
+}
@@ -0,0 +1,147 @@
+package org.example;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+
+/**
+ * Kernel agregasi skor di atas kolom primitif (timestamp + skor), dipakai oleh {@link MoodAggregator}.
+ * - baris harus urut timestamp (hasil query dan {@link MoodHistory} yang urut); batas bucket
+ *   (hari/minggu/bulan, UTC) dihitung dengan aritmetika epoch-day lalu dicari dengan galloping search,
+ *   jadi tidak ada LocalDate/Duration per baris
+ * - count/sum/min/max tiap bucket dihitung atas potongan array yang berurutan; reduksinya memakai
+ *   jdk.incubator.vector jika modul itu di-load JVM ({@code --add-modules jdk.incubator.vector}),
+ *   jika tidak memakai loop scalar. {@code -Dmoodify.vector=false} memaksa jalur scalar.
+ */
+final class ScoreKernel {
+    enum Width { DAY, WEEK, MONTH }
+
+    /** True when bucket reductions run on the Vector API. */
+    static final boolean VECTORIZED = vectorAvailable();
+
+    private ScoreKernel() {}
+
+    /** Non-empty buckets in time order; {@code startDay[i]} is the epoch day the bucket begins on. */
+    static final class Buckets {
+        int size;
+        long[] startDay = new long[16];
+        int[] count = new int[16];
+        long[] sum = new long[16];
+        int[] min = new int[16];
+        int[] max = new int[16];
+
+        private void add(long day, int n, long s, int mn, int mx) {
+            if (size == startDay.length) {
+                int cap = size * 2;
+                startDay = Arrays.copyOf(startDay, cap);
+                count = Arrays.copyOf(count, cap);
+                sum = Arrays.copyOf(sum, cap);
+                min = Arrays.copyOf(min, cap);
+                max = Arrays.copyOf(max, cap);
+            }
+            startDay[size] = day;
+            count[size] = n;
+            sum[size] = s;
+            min[size] = mn;
+            max[size] = mx;
+            size++;
+        }
+    }
+
+    /**
+     * Aggregate rows [from, to) into buckets of {@code width}. {@code timestamps} are in units of
+     * {@code unitsPerDay} per day since the epoch (86 400 for seconds, 86 400 000 000 for microseconds)
+     * and must be ascending.
+     */
+    static Buckets aggregate(long[] timestamps, byte[] scores, int from, int to, long unitsPerDay, Width width) {
+        Buckets out = new Buckets();
+        long[] run = new long[3];
+        int i = from;
+        while (i < to) {
+            long start = bucketStart(Math.floorDiv(timestamps[i], unitsPerDay), width);
+            long next = nextBucketStart(start, width);
+            int end = next > Long.MAX_VALUE / unitsPerDay ? to : gallop(timestamps, i + 1, to, next * unitsPerDay);
+            reduce(scores, i, end, run);
+            out.add(start, end - i, run[0], (int) run[1], (int) run[2]);
+            i = end;
+        }
+        return out;
+    }
+
+    /** First epoch day of the bucket containing {@code day}. Weeks start on Monday (ISO). */
+    static long bucketStart(long day, Width width) {
+        return switch (width) {
+            case DAY -> day;
+            // 1970-01-01 adalah hari Kamis -> +3 menggeser Senin ke sisa 0
+            case WEEK -> day - Math.floorMod(day + 3, 7);
+            case MONTH -> LocalDate.ofEpochDay(day).withDayOfMonth(1).toEpochDay();
+        };
+    }
+
+    static long nextBucketStart(long start, Width width) {
+        return switch (width) {
+            case DAY -> start + 1;
+            case WEEK -> start + 7;
+            case MONTH -> LocalDate.ofEpochDay(start).plusMonths(1).toEpochDay();
+        };
+    }
+
+    /**
+     * {sum, min, max} of scores[from, to) into {@code out}.
+     */
+    static void reduce(byte[] scores, int from, int to, long[] out) {
+        if (VECTORIZED && to - from >= ScoreKernelVector.MIN_LENGTH) {
+            ScoreKernelVector.reduce(scores, from, to, out);
+        } else {
+            reduceScalar(scores, from, to, out);
+        }
+    }
+
+    static void reduceScalar(byte[] scores, int from, int to, long[] out) {
+        long sum = 0;
+        int min = Integer.MAX_VALUE, max = Integer.MIN_VALUE;
+        for (int i = from; i < to; i++) {
+            int s = scores[i];
+            sum += s;
+            if (s < min) min = s;
+            if (s > max) max = s;
+        }
+        out[0] = sum;
+        out[1] = min;
+        out[2] = max;
+    }
+
+    // index pertama di [from, to) dengan a[i] >= key; bucket biasanya pendek, jadi cari dari depan dengan langkah 1, 2, 4, ...
+    private static int gallop(long[] a, int from, int to, long key) {
+        int lo = from, step = 1;
+        while (lo < to && a[lo] < key) {
+            int probe = lo + step;
+            if (probe >= to || a[probe] >= key) {
+                int hi = Math.min(probe, to);
+                lo++;
+                while (lo < hi) {
+                    int mid = (lo + hi) >>> 1;
+                    if (a[mid] < key) lo = mid + 1;
+                    else hi = mid;
+                }
+                return lo;
+            }
+            lo = probe;
+            step <<= 1;
+        }
+        return lo;
+    }
+
+    private static boolean vectorAvailable() {
+        if (!Boolean.parseBoolean(System.getProperty("moodify.vector", "true"))) return false;
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) return false;
+        try {
+            // ScoreKernelVector hanya di-load di sini, jadi tanpa modul vector tidak ada NoClassDefFoundError
+            if (!ScoreKernelVector.SUPPORTED) return false;
+            long[] probe = new long[3];
+            ScoreKernelVector.reduce(new byte[ScoreKernelVector.MIN_LENGTH], 0, ScoreKernelVector.MIN_LENGTH, probe);
+            return true;
+        } catch (LinkageError | RuntimeException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package org.example;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Reduksi sum/min/max skor dengan Vector API. Hanya dipanggil oleh {@link ScoreKernel} setelah memastikan
+ * modul jdk.incubator.vector tersedia.
+ *
+ * Skor disimpan 1 byte; sebanyak lane int {@code IntVector.SPECIES_PREFERRED} byte dimuat sekaligus (species byte
+ * dengan jumlah lane yang sama, mis. 64 bit untuk AVX2, 128 bit untuk AVX-512) lalu diperlebar ke int supaya jumlah
+ * tidak overflow. Di bawah 8 lane int (mis. NEON 128 bit) tidak ada species byte yang cocok dan keuntungannya kecil;
+ * {@link #SUPPORTED} false dan {@link ScoreKernel} memakai loop skalar.
+ */
+final class ScoreKernelVector {
+    private static final VectorSpecies<Integer> INTS = IntVector.SPECIES_PREFERRED;
+
+    /** False when the preferred int shape has fewer than 8 lanes; {@link #reduce} must not be called then. */
+    static final boolean SUPPORTED = INTS.length() >= 8;
+
+    private static final VectorSpecies<Byte> BYTES =
+            SUPPORTED ? VectorSpecies.of(byte.class, VectorShape.forBitSize(INTS.length() * Byte.SIZE)) : null;
+    // satu lane int hanya menampung ~16,9 juta skor bernilai 127 (2^31 / 127) sebelum overflow;
+    // chunk 2^27 dibagi ke >= 8 lane = <= 2^24 skor per lane, jadi |jumlah| <= 2^24 * 128 = 2^31 tetap muat
+    private static final int MAX_CHUNK = 1 << 27;
+
+    /** Runs shorter than this are cheaper in the scalar loop. */
+    static final int MIN_LENGTH = 2 * INTS.length();
+
+    private ScoreKernelVector() {}
+
+    static void reduce(byte[] scores, int from, int to, long[] out) {
+        long sum = 0;
+        int min = Integer.MAX_VALUE, max = Integer.MIN_VALUE;
+        int i = from;
+        while (to - i >= BYTES.length()) {
+            int upper = i + BYTES.loopBound(Math.min(to - i, MAX_CHUNK));
+            IntVector vsum = IntVector.zero(INTS);
+            IntVector vmin = IntVector.broadcast(INTS, Integer.MAX_VALUE);
+            IntVector vmax = IntVector.broadcast(INTS, Integer.MIN_VALUE);
+            for (; i < upper; i += BYTES.length()) {
+                IntVector v = (IntVector) ByteVector.fromArray(BYTES, scores, i).convertShape(VectorOperators.B2I, INTS, 0);
+                vsum = vsum.add(v);
+                vmin = vmin.min(v);
+                vmax = vmax.max(v);
+            }
+            // reduceLanesToLong menjumlah dalam int lalu baru melebar; jumlah semua lane bisa lewat 2^31
+            for (int lane = 0; lane < INTS.length(); lane++) sum += vsum.lane(lane);
+            min = Math.min(min, vmin.reduceLanes(VectorOperators.MIN));
+            max = Math.max(max, vmax.reduceLanes(VectorOperators.MAX));
+        }
+        for (; i < to; i++) {
+            int s = scores[i];
+            sum += s;
+            if (s < min) min = s;
+            if (s > max) max = s;
+        }
+        out[0] = sum;
+        out[1] = min;
+        out[2] = max;
+    }
+}
@@ -1,246 +1,1126 @@
 package org.example;
 
+import java.io.BufferedInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URI;
 import java.net.URLEncoder;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.ZoneOffset;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
 
 /**
  * Klien minimal untuk Supabase REST (tabel 'moods').
- * - insertMood(...) melakukan POST
+ * - insertMood(...) melakukan POST, insertMoods(...) POST banyak baris sekaligus
  * - fetchEntriesBetween(...) melakukan GET dan mengembalikan list MoodEntry
  *
+ * Kegagalan HTTP/jaringan: method fetch* mengembalikan null (bukan list kosong, yang berarti memang tidak ada baris),
+ * stream* dan insert* mengembalikan false.
+ *
  * Catatan: untuk parsing GET kita minta CSV (Accept: text/csv) sehingga tidak perlu dependency JSON.
+ * Body dibaca langsung dari stream (BodyHandlers.ofInputStream) dan di-decode baris per baris oleh
+ * {@link CsvReader}; varian stream*(..., Consumer) tidak menyimpan seluruh respons di memori.
+ * Pembuatan request (URI/header/body) ada di method *Request/*Uri package-private supaya dipakai
+ * bersama oleh {@link AsyncSupabaseClient}.
+ *
+ * Satu HttpClient dipakai bersama (HTTP/2 jika server mendukung, koneksi di-reuse), dan GET/RPC meminta
+ * respons terkompresi (Accept-Encoding: gzip, deflate) yang di-decode otomatis oleh {@link #decodedBody()}.
+ * Semua request lewat {@link Resilience} (deadline, retry, circuit breaker, hedged read), lihat {@link #setRetryPolicy}.
  */
 public class SupabaseClient {
+    private static final String MOOD_COLUMNS = "mood,score,timestamp,user_id";
+
     private final String baseUrl; // mis. https://<project>.supabase.co
     private final String apiKey;
-    private final HttpClient http;
+    private final Duration requestTimeout;
+    // virtual threads: banyak request (mis. fetch per-user) bisa berjalan bersamaan tanpa banyak platform thread
+    final ExecutorService executor;
+    final HttpClient http;
+    private final Resilience resilience;
+    private final SupabaseMetrics metrics = new SupabaseMetrics();
+    private AsyncSupabaseClient async;
+    // optional read-through cache for per-user range queries (null = disabled)
+    private volatile EntryCache cache;
+    // false once the server answered 404 for rpc/mood_daily_stats (migration not applied)
+    private volatile boolean aggregateRpcAvailable = true;
+    // false once the server answered 404 for the mood_daily table
+    private volatile boolean rollupTableAvailable = true;
+    // true = GET 'moods' juga menerima MoodCodec.MEDIA_TYPE (server yang tidak mendukungnya tetap menjawab CSV)
+    private volatile boolean seriesTransfer = false;
+    // false once the server rejected moods.idempotency_key (migration not applied): inserts go out without keys
+    private volatile boolean idempotencyKeys = true;
+    private final List<Consumer<List<MoodEntry>>> insertListeners = new java.util.concurrent.CopyOnWriteArrayList<>();
 
     public SupabaseClient(String baseUrl, String apiKey) {
+        this(baseUrl, apiKey, Duration.ofSeconds(10), Duration.ofSeconds(30));
+    }
+
+    /**
+     * @param connectTimeout limit for opening a connection (TCP + TLS)
+     * @param requestTimeout limit per request until the response headers arrive; bodies are then streamed
+     */
+    public SupabaseClient(String baseUrl, String apiKey, Duration connectTimeout, Duration requestTimeout) {
         this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length()-1) : baseUrl;
         this.apiKey = apiKey;
-        this.http = HttpClient.newHttpClient();
+        this.requestTimeout = requestTimeout;
+        this.executor = Executors.newVirtualThreadPerTaskExecutor();
+        // HTTP/2 dinegosiasikan lewat ALPN (https) dan turun ke HTTP/1.1 jika server tidak mendukung;
+        // semua request berbagi pool koneksi klien ini
+        this.http = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(connectTimeout)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .executor(executor)
+                .build();
+        this.resilience = new Resilience(http, executor, metrics);
+    }
+
+    /**
+     * Requests that are safe to repeat (reads, upserts, keyed inserts) are tried up to {@code maxAttempts} times with
+     * jittered exponential backoff; every call, retries included, gives up after {@code deadline}. Defaults: 3, 60 s.
+     */
+    public void setRetryPolicy(int maxAttempts, Duration deadline) {
+        resilience.setRetry(maxAttempts, deadline);
+    }
+
+    /**
+     * After {@code failures} consecutive network errors/timeouts/5xx, calls fail immediately for {@code openFor}
+     * before one trial request is let through. {@code failures} <= 0 disables it. Defaults: 5, 30 s.
+     */
+    public void setCircuitBreaker(int failures, Duration openFor) {
+        resilience.setCircuitBreaker(failures, openFor);
+    }
+
+    /**
+     * Send a second copy of a GET that has not been answered within the p95 latency of its operation and use
+     * whichever answers first. Costs a few percent extra reads in exchange for a shorter tail.
+     */
+    public void enableHedgedReads(boolean enabled) {
+        resilience.setHedging(enabled);
+    }
+
+    /** Per-operation latency/bytes/rows/status counters of this client (and its async twin). */
+    public SupabaseMetrics metrics() {
+        return metrics;
+    }
+
+    /**
+     * Open a connection in the background (TCP, TLS and HTTP/2 negotiation) so the first real request does not
+     * pay for the handshake. Completes normally even if the server cannot be reached.
+     */
+    public CompletableFuture<Void> warmUp() {
+        HttpRequest req = request(baseUrl + "/rest/v1/")
+                .method("HEAD", HttpRequest.BodyPublishers.noBody())
+                .build();
+        return http.sendAsync(req, HttpResponse.BodyHandlers.discarding()).handle((resp, ex) -> null);
+    }
+
+    /**
+     * Ask for mood rows in the compact {@link MoodCodec} encoding ({@value MoodCodec#MEDIA_TYPE}) with CSV as the
+     * fallback. Servers that do not know the type (PostgREST) keep answering CSV, so this is safe to leave on.
+     */
+    public void enableSeriesTransfer(boolean enabled) {
+        this.seriesTransfer = enabled;
+    }
+
+    /**
+     * Put a bounded LRU+TTL cache in front of {@link #fetchEntriesBetweenForUser} and
+     * {@link #fetchAllEntriesForUser}. Successful inserts patch cached ranges in place.
+     */
+    public void enableCache(int maxEntries, java.time.Duration ttl) {
+        this.cache = new EntryCache(maxEntries, ttl);
+    }
+
+    public boolean isCacheEnabled() {
+        return cache != null;
+    }
+
+    /**
+     * Drop cached rows that may contain {@code userId}'s entries (e.g. after writes from another client).
+     */
+    public void invalidateCache(String userId) {
+        EntryCache c = cache;
+        if (c != null) c.invalidateUser(userId);
+    }
+
+    /** Cached rows for the range without touching the network, or null. */
+    MoodHistory peekCache(String userId, LocalDate startDate, LocalDate endDate) {
+        EntryCache c = cache;
+        return c == null ? null : c.get(userId, startDate, endDate);
+    }
+
+    /** Called after rows were written successfully, by this client or its async twin. */
+    void onInserted(List<MoodEntry> entries) {
+        EntryCache c = cache;
+        if (c != null) c.patch(entries);
+        for (Consumer<List<MoodEntry>> l : insertListeners) l.accept(entries);
+    }
+
+    /**
+     * Register a callback invoked with the rows of every successful insert.
+     */
+    public void addInsertListener(Consumer<List<MoodEntry>> listener) {
+        insertListeners.add(listener);
+    }
+
+    public void removeInsertListener(Consumer<List<MoodEntry>> listener) {
+        insertListeners.remove(listener);
+    }
+
+    /**
+     * Asynchronous twin of this client, sharing its HttpClient and connection pool.
+     */
+    public synchronized AsyncSupabaseClient async() {
+        if (async == null) async = new AsyncSupabaseClient(this);
+        return async;
     }
 
     public boolean insertMood(String mood, int score, LocalDateTime ts, String userId) {
+        return insertMood(MoodEntry.create(mood, score, ts, userId));
+    }
+
+    /**
+     * Insert one row. The row's idempotency key (one is assigned if missing) is sent on every retry, so calling
+     * this again with the same entry after a failure cannot create a second row.
+     */
+    public boolean insertMood(MoodEntry entry) {
+        MoodEntry row = entry.keyed();
         try {
-            String iso = ts.atOffset(ZoneOffset.UTC).toString(); // termasuk Z offset
-        String json;
-        if (userId == null) {
-        json = String.format("{\"mood\":\"%s\",\"score\":%d,\"timestamp\":\"%s\"}",
-            escapeJson(mood), score, iso);
-        } else {
-        json = String.format("{\"mood\":\"%s\",\"score\":%d,\"timestamp\":\"%s\",\"user_id\":\"%s\"}",
-            escapeJson(mood), score, iso, escapeJson(userId));
-        }
-            HttpRequest req = HttpRequest.newBuilder()
-                    .uri(URI.create(baseUrl + "/rest/v1/moods"))
-                    .header("apikey", apiKey)
-                    .header("Authorization", "Bearer " + apiKey)
-                    .header("Content-Type", "application/json")
-                    .header("Prefer", "return=representation")
-                    .POST(HttpRequest.BodyPublishers.ofString(json))
-                    .build();
-            HttpResponse<String> resp = http.send(req, HttpResponse.BodyHandlers.ofString());
+            HttpResponse<String> resp = Resilience.await("insertMood", postMoods("insertMood", () -> insertMoodRequest(row)));
             if (resp.statusCode() < 200 || resp.statusCode() >= 300) {
                 System.err.println("[SupabaseClient] insertMood failed: status=" + resp.statusCode());
                 System.err.println("[SupabaseClient] response body: " + resp.body());
                 return false;
             }
+            onInserted(List.of(row));
             return true;
         } catch (IOException | InterruptedException ex) {
-            ex.printStackTrace();
+            logFailure("insertMood", ex);
             return false;
         }
     }
 
-    public List<MoodEntry> fetchEntriesBetween(LocalDate startDate, LocalDate endDate) {
+    /**
+     * Insert many rows in one POST (JSON array, {@code Prefer: return=minimal}). Returns true on success.
+     * Rows carry idempotency keys (see {@link #postMoods}), so the POST is retried like a read. Keys belong to
+     * the entries ({@link MoodEntry#idempotencyKey}); pass the same entries again to resend a failed batch safely.
+     * Every object carries the same keys (user_id may be null) as PostgREST requires for bulk inserts.
+     */
+    public boolean insertMoods(List<MoodEntry> entries) {
+        int status = insertMoodsStatus(entries);
+        return status >= 200 && status < 300;
+    }
+
+    /**
+     * Same as {@link #insertMoods} but returns the final HTTP status (2xx on success), or -1 if no response
+     * arrived (network failure, deadline, open circuit breaker). See {@link #isRejected}.
+     */
+    public int insertMoodsStatus(List<MoodEntry> entries) {
+        if (entries.isEmpty()) return 201;
+        List<MoodEntry> rows = keyed(entries);
         try {
-            // minta hanya kolom mood,score,timestamp sebagai CSV
-            String startIso = startDate.atStartOfDay().atOffset(ZoneOffset.UTC).toString();
-            String endIso = endDate.atTime(23,59,59).atOffset(ZoneOffset.UTC).toString();
-            String select = URLEncoder.encode("mood,score,timestamp,user_id", StandardCharsets.UTF_8);
-            String filter = String.format("timestamp=gte.%s&timestamp=lte.%s&order=timestamp.asc",
-                    URLEncoder.encode(startIso, StandardCharsets.UTF_8),
-                    URLEncoder.encode(endIso, StandardCharsets.UTF_8));
-            String uri = String.format("%s/rest/v1/moods?select=%s&%s", baseUrl, select, filter);
-
-            // request sent (URI hidden in release)
-
-            HttpRequest req = HttpRequest.newBuilder()
-                    .uri(URI.create(uri))
-                    .header("apikey", apiKey)
-                    .header("Authorization", "Bearer " + apiKey)
-                    .header("Accept", "text/csv")
-                    .GET()
-                    .build();
-            HttpResponse<String> resp = http.send(req, HttpResponse.BodyHandlers.ofString());
+            HttpResponse<String> resp = Resilience.await("insertMoods", postMoods("insertMoods", () -> insertMoodsRequest(rows)));
+            if (resp.statusCode() < 200 || resp.statusCode() >= 300) {
+                System.err.println("[SupabaseClient] insertMoods failed: status=" + resp.statusCode() + " rows=" + entries.size());
+                System.err.println("[SupabaseClient] response body: " + resp.body());
+                return resp.statusCode();
+            }
+            onInserted(rows);
+            return resp.statusCode();
+        } catch (IOException | InterruptedException ex) {
+            logFailure("insertMoods", ex);
+            return -1;
+        }
+    }
 
-            // response received
+    /**
+     * True if the server refused the rows themselves (4xx such as a constraint or type error): sending them
+     * again will fail the same way. Timeouts, rate limits and auth errors (401/403) are not about the rows.
+     */
+    public static boolean isRejected(int status) {
+        return status >= 400 && status < 500 && status != 401 && status != 403 && status != 408 && status != 429;
+    }
 
+    // baris tanpa kunci diberi kunci di sini, sebelum request dibangun, jadi retry dalam satu panggilan memakai kunci yang sama
+    static List<MoodEntry> keyed(List<MoodEntry> entries) {
+        for (MoodEntry e : entries) {
+            if (e.idempotencyKey != null) continue;
+            List<MoodEntry> out = new ArrayList<>(entries.size());
+            for (MoodEntry x : entries) out.add(x.keyed());
+            return out;
+        }
+        return entries;
+    }
+
+    /**
+     * Rows of every user in [startDate, endDate]. Returns null on HTTP/network failure.
+     */
+    public List<MoodEntry> fetchEntriesBetween(LocalDate startDate, LocalDate endDate) {
+        List<MoodEntry> out = new ArrayList<>();
+        return streamEntriesBetween(startDate, endDate, out::add) ? out : null;
+    }
+
+    /**
+     * Same as {@link #fetchEntriesBetween(LocalDate, LocalDate)} but hands rows to {@code sink}
+     * as they are decoded instead of collecting them. Returns false on HTTP/network failure.
+     */
+    public boolean streamEntriesBetween(LocalDate startDate, LocalDate endDate, Consumer<MoodEntry> sink) {
+        return streamEntries("fetchEntriesBetween", entriesUri(null, startDate, endDate), null, sink);
+    }
+
+    /**
+     * Every row of 'moods'. Returns null on HTTP/network failure.
+     */
+    public List<MoodEntry> fetchAllEntries() {
+        List<MoodEntry> out = new ArrayList<>();
+        return streamAllEntries(out::add) ? out : null;
+    }
+
+    /**
+     * Stream every row of 'moods' to {@code sink} without buffering the response.
+     */
+    public boolean streamAllEntries(Consumer<MoodEntry> sink) {
+        return streamEntries("fetchAllEntries", entriesUri(null, null, null), null, sink);
+    }
+
+    /**
+     * Fetch all entries for a specific user id. Returns null on HTTP/network failure.
+     */
+    public List<MoodEntry> fetchAllEntriesForUser(String userId) {
+        MoodHistory h = cachedHistory(userId, null, null);
+        return h == null ? null : h.asList();
+    }
+
+    /**
+     * A user's whole history in columnar form ({@link MoodHistory}, ~9 bytes per row), decoded straight from
+     * the response without per-row objects. Goes through the cache like {@link #fetchAllEntriesForUser}.
+     * The result is read-only; it is null on failure.
+     */
+    public MoodHistory fetchHistoryForUser(String userId) {
+        return cachedHistory(userId, null, null);
+    }
+
+    /**
+     * Store a full history fetched elsewhere (e.g. paged through a cursor) as the cached result of
+     * {@link #fetchHistoryForUser}; same rules as {@link #cacheRange}.
+     */
+    void cacheHistory(String userId, MoodHistory history, long seenVersion) {
+        cacheRange(userId, null, null, history, seenVersion);
+    }
+
+    /**
+     * Store a successful per-user range result (frozen); no-op when the cache is disabled. Skipped if the cache was
+     * patched or invalidated after {@link #cacheVersion()} returned {@code seenVersion}, so read that before the
+     * request starts: a write confirmed while the response was in flight may be missing from it.
+     */
+    void cacheRange(String userId, LocalDate startDate, LocalDate endDate, MoodHistory history, long seenVersion) {
+        EntryCache c = cache;
+        if (c != null) c.put(userId, startDate, endDate, history, seenVersion);
+    }
+
+    long cacheVersion() {
+        EntryCache c = cache;
+        return c == null ? 0 : c.version();
+    }
+
+    /**
+     * Stream all entries for a specific user id to {@code sink}.
+     */
+    public boolean streamAllEntriesForUser(String userId, Consumer<MoodEntry> sink) {
+        return streamEntries("fetchAllEntriesForUser", entriesUri(userId, null, null), userId, sink);
+    }
+
+    /** Default page size for {@link MoodCursor}-based reads. */
+    public static final int DEFAULT_PAGE_SIZE = 1000;
+
+    /**
+     * Page through every row of 'moods' in timestamp order. Close the cursor (or its stream) when done.
+     */
+    public MoodCursor cursorAllEntries(int pageSize) {
+        return new MoodCursor((after, afterId, limit) -> fetchPage(null, after, afterId, limit), pageSize, null, null);
+    }
+
+    /**
+     * Page through a user's rows in timestamp order, prefetching the next page while the current one is read.
+     */
+    public MoodCursor cursorAllEntriesForUser(String userId, int pageSize) {
+        return new MoodCursor((after, afterId, limit) -> fetchPage(userId, after, afterId, limit), pageSize, null, null);
+    }
+
+    /**
+     * Page through a user's rows that come after the keyset position ({@code after}, {@code afterId}) in
+     * (timestamp, id) order: rows with a later timestamp, plus rows at {@code after} with a greater id.
+     * Without {@code afterId} only rows with a later timestamp are returned.
+     */
+    public MoodCursor cursorEntriesForUserSince(String userId, LocalDateTime after, String afterId, int pageSize) {
+        return new MoodCursor((a, id, limit) -> fetchPage(userId, a, id, limit), pageSize, after, afterId);
+    }
+
+    /**
+     * Fetch one keyset page: rows after ({@code after}, {@code afterId}) in (timestamp, id) order (all rows if
+     * {@code after} is null). Always CSV, since the series encoding carries no row ids. Returns null on failure.
+     */
+    List<MoodEntry> fetchPage(String userId, LocalDateTime after, String afterId, int limit) {
+        List<MoodEntry> out = new ArrayList<>(limit);
+        boolean ok = fetchMoods("fetchPage", pageUri(userId, after, afterId, limit),
+                body -> parseCsvToEntries(body, userId, out::add), null);
+        return ok ? out : null;
+    }
+
+    /**
+     * Number of rows of {@code userId} on the server, from a HEAD request with {@code Prefer: count=exact} (no rows
+     * are transferred). Returns -1 on failure or if the server did not report a total.
+     */
+    public long countEntriesForUser(String userId) {
+        HttpRequest req = request(baseUrl + "/rest/v1/moods?select=id&user_id=eq." + URLEncoder.encode(userId, StandardCharsets.UTF_8))
+                .header("Prefer", "count=exact")
+                .method("HEAD", HttpRequest.BodyPublishers.noBody())
+                .build();
+        try {
+            HttpResponse<Void> resp = send("countEntriesForUser", req, HttpResponse.BodyHandlers.discarding());
             if (resp.statusCode() < 200 || resp.statusCode() >= 300) {
-                System.err.println("[SupabaseClient] fetchEntriesBetween failed: status=" + resp.statusCode());
-                System.err.println("[SupabaseClient] response body: " + resp.body());
-                return List.of();
+                System.err.println("[SupabaseClient] countEntriesForUser failed: status=" + resp.statusCode());
+                return -1;
+            }
+            // Content-Range: 0-24/3573 atau */0
+            String range = resp.headers().firstValue("Content-Range").orElse("");
+            int slash = range.lastIndexOf('/');
+            return slash < 0 ? -1 : Long.parseLong(range.substring(slash + 1).trim());
+        } catch (NumberFormatException ex) {
+            return -1;
+        } catch (IOException | InterruptedException ex) {
+            logFailure("countEntriesForUser", ex);
+            return -1;
+        }
+    }
+
+    /**
+     * A user's rows in [startDate, endDate]. Returns null on HTTP/network failure.
+     */
+    public List<MoodEntry> fetchEntriesBetweenForUser(LocalDate startDate, LocalDate endDate, String userId) {
+        MoodHistory h = cachedHistory(userId, startDate, endDate);
+        return h == null ? null : h.asList();
+    }
+
+    /**
+     * Serve a per-user range from the cache when possible; only successful responses are cached.
+     * The returned history is frozen (read-only); null on failure.
+     */
+    private MoodHistory cachedHistory(String userId, LocalDate startDate, LocalDate endDate) {
+        EntryCache c = cache;
+        if (c != null) {
+            MoodHistory hit = c.get(userId, startDate, endDate);
+            if (hit != null) return hit;
+        }
+        long version = c == null ? 0 : c.version();
+        MoodHistory out = new MoodHistory();
+        String op = startDate == null ? "fetchAllEntriesForUser" : "fetchEntriesBetweenForUser";
+        boolean ok = fetchMoods(op, entriesUri(userId, startDate, endDate),
+                body -> parseCsvToHistory(body, userId, out),
+                body -> MoodCodec.read(body, userId, out));
+        if (!ok) return null;
+        out.freeze();
+        if (c != null) c.put(userId, startDate, endDate, out, version);
+        return out;
+    }
+
+    public boolean streamEntriesBetweenForUser(LocalDate startDate, LocalDate endDate, String userId, Consumer<MoodEntry> sink) {
+        return streamEntries("fetchEntriesBetweenForUser", entriesUri(userId, startDate, endDate), userId, sink);
+    }
+
+    private boolean streamEntries(String op, String uri, String userId, Consumer<MoodEntry> sink) {
+        return fetchMoods(op, uri, body -> parseCsvToEntries(body, userId, sink), body -> readSeries(body, userId, sink));
+    }
+
+    // decode per blok supaya memori tetap kecil untuk respons besar
+    static int readSeries(InputStream body, String userId, Consumer<MoodEntry> sink) throws IOException {
+        MoodCodec.readHeader(body);
+        MoodHistory block = new MoodHistory(MoodCodec.BLOCK_ROWS);
+        int n, rows = 0;
+        while ((n = MoodCodec.readBlock(body, userId, block)) > 0) {
+            for (int i = 0; i < n; i++) sink.accept(block.entry(i));
+            block.clear();
+            rows += n;
+        }
+        return rows;
+    }
+
+    /** Decodes a successful response body; returns the number of rows. */
+    private interface BodyDecoder {
+        int decode(InputStream body) throws IOException;
+    }
+
+    /**
+     * GET {@code uri} and decode the body straight from the socket stream: with {@code series} when the server
+     * answered in {@link MoodCodec#MEDIA_TYPE} (only requested if {@link #enableSeriesTransfer} is on and
+     * {@code series} is not null), otherwise as CSV with {@code csv}.
+     */
+    private boolean fetchMoods(String op, String uri, BodyDecoder csv, BodyDecoder series) {
+        try {
+            HttpRequest req = series != null ? moodsGet(uri) : csvGet(uri);
+            HttpResponse<InputStream> resp = send(op, req, decodedBody());
+            try (InputStream body = resp.body()) {
+                if (resp.statusCode() < 200 || resp.statusCode() >= 300) {
+                    System.err.println("[SupabaseClient] " + op + " failed: status=" + resp.statusCode());
+                    System.err.println("[SupabaseClient] response body: " + readBody(body));
+                    return false;
+                }
+                long t0 = System.nanoTime();
+                int rows = series != null && isSeries(resp) ? series.decode(body) : csv.decode(body);
+                metrics.parsed(op, rows, System.nanoTime() - t0);
+                return true;
             }
-            return parseCsvToEntries(resp.body());
         } catch (Exception ex) {
-            ex.printStackTrace();
-            return List.of();
+            logFailure(op, ex);
+            return false;
         }
     }
 
-    public List<MoodEntry> fetchAllEntries() {
+    // -------------------- Aggregates --------------------
+
+    /**
+     * Per-day count/sum/min/max of scores for [startDate, endDate] (all users if {@code userId} is null),
+     * computed by the server through the {@code mood_daily_stats} RPC
+     * (supabase/migrations/20261017000000_mood_daily_stats.sql). If the function is not installed,
+     * falls back to downloading only score+timestamp and aggregating locally with {@link MoodAggregator}.
+     * Returns null on failure.
+     */
+    public List<DailyAggregate> fetchDailyAggregates(LocalDate startDate, LocalDate endDate, String userId) {
+        if (aggregateRpcAvailable) {
+            try {
+                HttpResponse<InputStream> resp = send("fetchDailyAggregates", dailyStatsRequest(startDate, endDate, userId), decodedBody());
+                try (InputStream body = resp.body()) {
+                    if (resp.statusCode() >= 200 && resp.statusCode() < 300) return parseAggregates("fetchDailyAggregates", body);
+                    if (resp.statusCode() != 404) {
+                        System.err.println("[SupabaseClient] fetchDailyAggregates failed: status=" + resp.statusCode());
+                        System.err.println("[SupabaseClient] response body: " + readBody(body));
+                        return null;
+                    }
+                    // 404: fungsi RPC belum dibuat di database -> pakai agregasi lokal seterusnya
+                    aggregateRpcAvailable = false;
+                }
+            } catch (Exception ex) {
+                logFailure("fetchDailyAggregates", ex);
+                return null;
+            }
+        }
+        MoodAggregator.Daily daily = new MoodAggregator.Daily();
+        boolean ok = streamEntries("fetchDailyAggregates", entriesUri("score,timestamp", userId, startDate, endDate), userId, daily);
+        return ok ? daily.result() : null;
+    }
+
+    /**
+     * Per-day rows of {@code userId} from the {@code mood_daily} rollup table (maintained by a trigger on
+     * 'moods', see supabase/migrations/20261017000100_mood_daily_rollup.sql): at most one small row per day,
+     * however many entries the user logged. Falls back to {@link #fetchDailyAggregates} when the table is
+     * missing or {@code userId} is null. Returns null on failure.
+     */
+    public List<DailyAggregate> fetchDailyRollups(LocalDate startDate, LocalDate endDate, String userId) {
+        if (userId == null || !rollupTableAvailable) return fetchDailyAggregates(startDate, endDate, userId);
+        String uri = String.format("%s/rest/v1/mood_daily?select=date,count,sum,min,max&user_id=eq.%s&date=gte.%s&date=lte.%s&order=date.asc",
+                baseUrl, URLEncoder.encode(userId, StandardCharsets.UTF_8), startDate, endDate);
         try {
-            String select = URLEncoder.encode("mood,score,timestamp,user_id", StandardCharsets.UTF_8);
-            String uri = String.format("%s/rest/v1/moods?select=%s&order=timestamp.asc", baseUrl, select);
-            HttpRequest req = HttpRequest.newBuilder()
-                    .uri(URI.create(uri))
-                    .header("apikey", apiKey)
-                    .header("Authorization", "Bearer " + apiKey)
-                    .header("Accept", "text/csv")
-                    .GET()
+            HttpResponse<InputStream> resp = send("fetchDailyRollups", csvGet(uri), decodedBody());
+            try (InputStream body = resp.body()) {
+                if (resp.statusCode() >= 200 && resp.statusCode() < 300) return parseAggregates("fetchDailyRollups", body);
+                if (resp.statusCode() != 404) {
+                    System.err.println("[SupabaseClient] fetchDailyRollups failed: status=" + resp.statusCode());
+                    System.err.println("[SupabaseClient] response body: " + readBody(body));
+                    return null;
+                }
+                // tabel mood_daily belum dibuat -> pakai RPC/agregasi lokal
+                rollupTableAvailable = false;
+            }
+        } catch (Exception ex) {
+            logFailure("fetchDailyRollups", ex);
+            return null;
+        }
+        return fetchDailyAggregates(startDate, endDate, userId);
+    }
+
+    /**
+     * Overwrite rows of mood_daily (upsert on user_id,date). Used by {@link RollupBackfill}; normal inserts
+     * are rolled up by the database trigger. Rows without userId are skipped.
+     */
+    public boolean upsertDailyRollups(List<DailyAggregate> rows) {
+        StringBuilder json = new StringBuilder(rows.size() * 96).append('[');
+        int n = 0;
+        for (DailyAggregate d : rows) {
+            if (d.userId == null) continue;
+            if (n++ > 0) json.append(',');
+            json.append("{\"user_id\":\"").append(escapeJson(d.userId))
+                    .append("\",\"date\":\"").append(d.date)
+                    .append("\",\"count\":").append(d.count)
+                    .append(",\"sum\":").append(d.sum)
+                    .append(",\"min\":").append(d.min)
+                    .append(",\"max\":").append(d.max).append('}');
+        }
+        if (n == 0) return true;
+        json.append(']');
+        try {
+            HttpRequest req = request(baseUrl + "/rest/v1/mood_daily?on_conflict=user_id,date")
+                    .header("Content-Type", "application/json")
+                    .header("Prefer", "resolution=merge-duplicates,return=minimal")
+                    .POST(HttpRequest.BodyPublishers.ofString(json.toString()))
                     .build();
-            HttpResponse<String> resp = http.send(req, HttpResponse.BodyHandlers.ofString());
+            HttpResponse<String> resp = send("upsertDailyRollups", req, HttpResponse.BodyHandlers.ofString());
             if (resp.statusCode() < 200 || resp.statusCode() >= 300) {
-                System.err.println("[SupabaseClient] fetchAllEntries failed: status=" + resp.statusCode());
+                System.err.println("[SupabaseClient] upsertDailyRollups failed: status=" + resp.statusCode() + " rows=" + n);
                 System.err.println("[SupabaseClient] response body: " + resp.body());
-                return List.of();
+                return false;
             }
-            return parseCsvToEntries(resp.body());
-        } catch (Exception ex) {
-            ex.printStackTrace();
-            return List.of();
+            return true;
+        } catch (IOException | InterruptedException ex) {
+            logFailure("upsertDailyRollups", ex);
+            return false;
         }
     }
 
     /**
-     * Fetch all entries for a specific user id.
+     * All users' mood_daily rows with date in (after, upTo] (a null bound is open), ordered by date. Used by
+     * {@link RollupBackfill} to find days that no longer have any moods. Returns null on failure.
      */
-    public List<MoodEntry> fetchAllEntriesForUser(String userId) {
+    public List<DailyAggregate> fetchDailyRollupsAfter(LocalDate after, LocalDate upTo) {
+        StringBuilder uri = new StringBuilder(baseUrl).append("/rest/v1/mood_daily?select=user_id,date,count,sum,min,max");
+        if (after != null) uri.append("&date=gt.").append(after);
+        if (upTo != null) uri.append("&date=lte.").append(upTo);
+        uri.append("&order=date.asc,user_id.asc");
         try {
-            String select = URLEncoder.encode("mood,score,timestamp,user_id", StandardCharsets.UTF_8);
-            String uri = String.format("%s/rest/v1/moods?select=%s&user_id=eq.%s&order=timestamp.asc",
-                    baseUrl, select, URLEncoder.encode(userId, StandardCharsets.UTF_8));
-            HttpRequest req = HttpRequest.newBuilder()
-                    .uri(URI.create(uri))
-                    .header("apikey", apiKey)
-                    .header("Authorization", "Bearer " + apiKey)
-                    .header("Accept", "text/csv")
-                    .GET()
-                    .build();
-            HttpResponse<String> resp = http.send(req, HttpResponse.BodyHandlers.ofString());
-            if (resp.statusCode() < 200 || resp.statusCode() >= 300) return List.of();
-            return parseCsvToEntries(resp.body());
+            HttpResponse<InputStream> resp = send("fetchDailyRollupsAfter", csvGet(uri.toString()), decodedBody());
+            try (InputStream body = resp.body()) {
+                if (resp.statusCode() >= 200 && resp.statusCode() < 300) return parseAggregates("fetchDailyRollupsAfter", body);
+                System.err.println("[SupabaseClient] fetchDailyRollupsAfter failed: status=" + resp.statusCode());
+                System.err.println("[SupabaseClient] response body: " + readBody(body));
+                return null;
+            }
         } catch (Exception ex) {
-            ex.printStackTrace();
-            return List.of();
+            logFailure("fetchDailyRollupsAfter", ex);
+            return null;
         }
     }
 
-    public List<MoodEntry> fetchEntriesBetweenForUser(LocalDate startDate, LocalDate endDate, String userId) {
-        try {
+    /**
+     * Delete the mood_daily rows of {@code userId} for {@code dates}. Used by {@link RollupBackfill}; normal
+     * deletes from moods are rolled up by the database trigger.
+     */
+    public boolean deleteDailyRollups(String userId, List<LocalDate> dates) {
+        // potong per 100 tanggal supaya URL tetap pendek
+        for (int from = 0; from < dates.size(); from += 100) {
+            StringBuilder in = new StringBuilder();
+            for (LocalDate d : dates.subList(from, Math.min(dates.size(), from + 100))) {
+                if (in.length() > 0) in.append(',');
+                in.append(d);
+            }
+            String uri = baseUrl + "/rest/v1/mood_daily?user_id=eq." + URLEncoder.encode(userId, StandardCharsets.UTF_8)
+                    + "&date=in." + URLEncoder.encode("(" + in + ")", StandardCharsets.UTF_8);
+            try {
+                HttpRequest req = request(uri).header("Prefer", "return=minimal").DELETE().build();
+                HttpResponse<String> resp = send("deleteDailyRollups", req, HttpResponse.BodyHandlers.ofString());
+                if (resp.statusCode() < 200 || resp.statusCode() >= 300) {
+                    System.err.println("[SupabaseClient] deleteDailyRollups failed: status=" + resp.statusCode());
+                    System.err.println("[SupabaseClient] response body: " + resp.body());
+                    return false;
+                }
+            } catch (IOException | InterruptedException ex) {
+                logFailure("deleteDailyRollups", ex);
+                return false;
+            }
+        }
+        return true;
+    }
+
+    HttpRequest dailyStatsRequest(LocalDate startDate, LocalDate endDate, String userId) {
+        String json = String.format("{\"p_user_id\":%s,\"p_start\":\"%s\",\"p_end\":\"%s\"}",
+                userId == null ? "null" : "\"" + escapeJson(userId) + "\"", startDate, endDate);
+        return request(baseUrl + "/rest/v1/rpc/mood_daily_stats")
+                .header("Content-Type", "application/json")
+                .header("Accept", "text/csv")
+                .header("Accept-Encoding", ACCEPT_ENCODING)
+                .POST(HttpRequest.BodyPublishers.ofString(json))
+                .build();
+    }
+
+    private List<DailyAggregate> parseAggregates(String op, InputStream body) throws IOException {
+        long t0 = System.nanoTime();
+        List<DailyAggregate> out = parseCsvToAggregates(body);
+        metrics.parsed(op, out.size(), System.nanoTime() - t0);
+        return out;
+    }
+
+    /**
+     * Decode {@code day,count,sum,min,max} rows (plus {@code user_id} when the response has it).
+     */
+    static List<DailyAggregate> parseCsvToAggregates(InputStream csv) throws IOException {
+        MoodifyEvents.CsvParse event = new MoodifyEvents.CsvParse();
+        event.begin();
+        List<DailyAggregate> out = new ArrayList<>();
+        CsvReader r = new CsvReader(csv);
+        if (!r.next() || r.isBlank()) {
+            commit(event, "aggregates", 0, 0);
+            return out;
+        }
+        int idxDay = -1, idxCount = -1, idxSum = -1, idxMin = -1, idxMax = -1, idxUser = -1;
+        for (int h = 0; h < r.size(); h++) {
+            String hn = r.field(h).trim().toLowerCase();
+            if (hn.equals("day") || hn.equals("date")) idxDay = h;
+            else if (hn.equals("user_id")) idxUser = h;
+            else if (hn.equals("count")) idxCount = h;
+            else if (hn.equals("sum")) idxSum = h;
+            else if (hn.equals("min")) idxMin = h;
+            else if (hn.equals("max")) idxMax = h;
+        }
+        if (idxDay == -1 || idxCount == -1 || idxSum == -1) {
+            commit(event, "aggregates", 0, 0);
+            return out;
+        }
+        int skipped = 0;
+        while (r.next()) {
+            if (r.isBlank()) continue;
+            if (r.size() <= Math.max(idxDay, Math.max(idxCount, idxSum))) { skipped++; continue; }
+            try {
+                LocalDate day = LocalDate.parse(r.field(idxDay).trim());
+                int count = Integer.parseInt(r.field(idxCount).trim());
+                long sum = Long.parseLong(r.field(idxSum).trim());
+                int min = idxMin >= 0 && r.size() > idxMin ? Integer.parseInt(r.field(idxMin).trim()) : 0;
+                int max = idxMax >= 0 && r.size() > idxMax ? Integer.parseInt(r.field(idxMax).trim()) : 0;
+                String user = idxUser >= 0 && r.size() > idxUser && !r.field(idxUser).isBlank() ? r.field(idxUser).trim() : null;
+                out.add(new DailyAggregate(user, day, count, sum, min, max));
+            } catch (RuntimeException e) {
+                // baris rusak dilewati
+                skipped++;
+            }
+        }
+        commit(event, "aggregates", out.size(), skipped);
+        return out;
+    }
+
+    // -------------------- Request building (shared with AsyncSupabaseClient) --------------------
+
+    /**
+     * URI for rows of 'moods' in timestamp order; {@code userId}, {@code startDate} and {@code endDate}
+     * are optional filters (null = no filter).
+     */
+    String entriesUri(String userId, LocalDate startDate, LocalDate endDate) {
+        // query per-user tidak perlu kolom user_id (nilainya sudah diketahui dari filter)
+        return entriesUri(userId == null ? MOOD_COLUMNS : "mood,score,timestamp", userId, startDate, endDate);
+    }
+
+    String entriesUri(String columns, String userId, LocalDate startDate, LocalDate endDate) {
+        StringBuilder uri = new StringBuilder(baseUrl).append("/rest/v1/moods?select=")
+                .append(URLEncoder.encode(columns, StandardCharsets.UTF_8));
+        if (startDate != null) {
             String startIso = startDate.atStartOfDay().atOffset(ZoneOffset.UTC).toString();
+            uri.append("&timestamp=gte.").append(URLEncoder.encode(startIso, StandardCharsets.UTF_8));
+        }
+        if (endDate != null) {
             String endIso = endDate.atTime(23,59,59).atOffset(ZoneOffset.UTC).toString();
-            String select = URLEncoder.encode("mood,score,timestamp,user_id", StandardCharsets.UTF_8);
-            String filter = String.format("timestamp=gte.%s&timestamp=lte.%s&user_id=eq.%s&order=timestamp.asc",
-                    URLEncoder.encode(startIso, StandardCharsets.UTF_8),
-                    URLEncoder.encode(endIso, StandardCharsets.UTF_8),
-                    URLEncoder.encode(userId, StandardCharsets.UTF_8));
-            String uri = String.format("%s/rest/v1/moods?select=%s&%s", baseUrl, select, filter);
-            HttpRequest req = HttpRequest.newBuilder()
-                    .uri(URI.create(uri))
-                    .header("apikey", apiKey)
-                    .header("Authorization", "Bearer " + apiKey)
-                    .header("Accept", "text/csv")
-                    .GET()
-                    .build();
-            HttpResponse<String> resp = http.send(req, HttpResponse.BodyHandlers.ofString());
-            if (resp.statusCode() < 200 || resp.statusCode() >= 300) return List.of();
-            return parseCsvToEntries(resp.body());
-        } catch (Exception ex) {
-            ex.printStackTrace();
-            return List.of();
+            uri.append("&timestamp=lte.").append(URLEncoder.encode(endIso, StandardCharsets.UTF_8));
         }
+        if (userId != null) uri.append("&user_id=eq.").append(URLEncoder.encode(userId, StandardCharsets.UTF_8));
+        return uri.append("&order=timestamp.asc").toString();
     }
 
-    private List<MoodEntry> parseCsvToEntries(String csv) {
-        List<MoodEntry> out = new ArrayList<>();
-        if (csv == null || csv.isBlank()) return out;
-        String[] lines = csv.split("\\r?\\n");
-        if (lines.length <= 1) return out; // tidak ada data (header saja)
-
-        // Log header CSV
-        String headerLine = lines[0].trim();
-
-        if (headerLine.isEmpty()) return out;
-        String[] headers = headerLine.split(",", -1);
-        int idxMood = -1, idxScore = -1, idxTs = -1, idxUser = -1;
-        for (int h = 0; h < headers.length; h++) {
-            String hn = unquote(headers[h]).trim().toLowerCase();
+    /**
+     * One keyset page in (timestamp, id) order. Many rows share a timestamp (entries are rounded to the hour), and
+     * Postgres orders such ties arbitrarily, so id breaks them and the position is the last (timestamp, id) seen:
+     * {@code or=(timestamp.gt.X,and(timestamp.eq.X,id.gt.Y))} instead of an offset into the ties.
+     */
+    String pageUri(String userId, LocalDateTime after, String afterId, int limit) {
+        String columns = userId == null ? "id," + MOOD_COLUMNS : "id,mood,score,timestamp";
+        StringBuilder uri = new StringBuilder(baseUrl).append("/rest/v1/moods?select=")
+                .append(URLEncoder.encode(columns, StandardCharsets.UTF_8));
+        if (userId != null) uri.append("&user_id=eq.").append(URLEncoder.encode(userId, StandardCharsets.UTF_8));
+        if (after != null) {
+            String afterIso = after.atOffset(ZoneOffset.UTC).toString();
+            if (afterId == null) {
+                uri.append("&timestamp=gt.").append(URLEncoder.encode(afterIso, StandardCharsets.UTF_8));
+            } else {
+                // nilai dengan ':' atau '.' harus dikutip di dalam or=(...)
+                String ts = "\"" + afterIso + "\"";
+                String position = "(timestamp.gt." + ts + ",and(timestamp.eq." + ts + ",id.gt.\"" + afterId + "\"))";
+                uri.append("&or=").append(URLEncoder.encode(position, StandardCharsets.UTF_8));
+            }
+        }
+        return uri.append("&order=timestamp.asc,id.asc&limit=").append(limit).toString();
+    }
+
+    String userByUsernameUri(String username) {
+        // request the user's 'timestamp' column (canonical column name used: 'timestamp')
+        String select = URLEncoder.encode("id,username,password_hash,last_login,timestamp", StandardCharsets.UTF_8);
+        String filter = String.format("username=eq.%s&limit=1", URLEncoder.encode(username, StandardCharsets.UTF_8));
+        return String.format("%s/rest/v1/users?select=%s&%s", baseUrl, select, filter);
+    }
+
+    HttpRequest.Builder request(String uri) {
+        return HttpRequest.newBuilder()
+                .uri(URI.create(uri))
+                .timeout(requestTimeout)
+                .header("apikey", apiKey)
+                .header("Authorization", "Bearer " + apiKey);
+    }
+
+    HttpRequest csvGet(String uri) {
+        return request(uri)
+                .header("Accept", "text/csv")
+                .header("Accept-Encoding", ACCEPT_ENCODING)
+                .GET()
+                .build();
+    }
+
+    /** GET for 'moods' rows: {@link #seriesGet} while series transfer is on, else {@link #csvGet}. */
+    HttpRequest moodsGet(String uri) {
+        return seriesTransfer ? seriesGet(uri) : csvGet(uri);
+    }
+
+    /** True if the server answered in {@link MoodCodec#MEDIA_TYPE} rather than CSV. */
+    static boolean isSeries(HttpResponse<?> resp) {
+        return resp.headers().firstValue("Content-Type").orElse("").startsWith(MoodCodec.MEDIA_TYPE);
+    }
+
+    HttpRequest seriesGet(String uri) {
+        return request(uri)
+                .header("Accept", MoodCodec.MEDIA_TYPE + ", text/csv;q=0.9")
+                .header("Accept-Encoding", ACCEPT_ENCODING)
+                .GET()
+                .build();
+    }
+
+    /**
+     * Single-row insert. Like {@link #insertMoodsRequest}, the row's idempotency_key is sent while keys are
+     * enabled (a row without one gets a fresh key, valid only for this request).
+     */
+    HttpRequest insertMoodRequest(MoodEntry e) {
+        String iso = e.timestamp.atOffset(ZoneOffset.UTC).toString(); // termasuk Z offset
+        boolean keyed = idempotencyKeys;
+        String key = keyed ? ",\"idempotency_key\":\"" + escapeJson(keyOf(e)) + "\"" : "";
+        String json;
+        if (e.userId == null) {
+            json = String.format("{\"mood\":\"%s\",\"score\":%d,\"timestamp\":\"%s\"%s}",
+                    escapeJson(e.mood), e.score, iso, key);
+        } else {
+            json = String.format("{\"mood\":\"%s\",\"score\":%d,\"timestamp\":\"%s\",\"user_id\":\"%s\"%s}",
+                    escapeJson(e.mood), e.score, iso, escapeJson(e.userId), key);
+        }
+        return request(insertMoodsUri(keyed))
+                .header("Content-Type", "application/json")
+                .header("Prefer", keyed ? "resolution=ignore-duplicates,return=representation" : "return=representation")
+                .POST(HttpRequest.BodyPublishers.ofString(json))
+                .build();
+    }
+
+    HttpRequest insertMoodsRequest(List<MoodEntry> entries) {
+        boolean keyed = idempotencyKeys;
+        StringBuilder json = new StringBuilder(entries.size() * (keyed ? 152 : 96)).append('[');
+        for (int i = 0; i < entries.size(); i++) {
+            MoodEntry e = entries.get(i);
+            if (i > 0) json.append(',');
+            json.append("{\"mood\":\"").append(escapeJson(e.mood))
+                    .append("\",\"score\":").append(e.score)
+                    .append(",\"timestamp\":\"").append(e.timestamp.atOffset(ZoneOffset.UTC))
+                    .append("\",\"user_id\":");
+            if (e.userId == null) json.append("null");
+            else json.append('"').append(escapeJson(e.userId)).append('"');
+            if (keyed) json.append(",\"idempotency_key\":\"").append(escapeJson(keyOf(e))).append('"');
+            json.append('}');
+        }
+        json.append(']');
+        return request(insertMoodsUri(keyed))
+                .header("Content-Type", "application/json")
+                .header("Prefer", keyed ? "resolution=ignore-duplicates,return=minimal" : "return=minimal")
+                .POST(HttpRequest.BodyPublishers.ofString(json.toString()))
+                .build();
+    }
+
+    private static String keyOf(MoodEntry e) {
+        return e.idempotencyKey != null ? e.idempotencyKey : UUID.randomUUID().toString();
+    }
+
+    // dengan kunci: baris yang kuncinya sudah ada (insert yang diulang) diabaikan oleh server
+    private String insertMoodsUri(boolean keyed) {
+        return baseUrl + "/rest/v1/moods" + (keyed ? "?on_conflict=idempotency_key" : "");
+    }
+
+    HttpRequest createUserRequest(String username, String passwordHash, LocalDateTime lastLogin) {
+        String iso = lastLogin == null ? null : lastLogin.atOffset(ZoneOffset.UTC).toString();
+        String json;
+        if (iso == null) {
+            json = String.format("{\"username\":\"%s\",\"password_hash\":\"%s\"}",
+                    escapeJson(username), escapeJson(passwordHash));
+        } else {
+            json = String.format("{\"username\":\"%s\",\"password_hash\":\"%s\",\"last_login\":\"%s\"}",
+                    escapeJson(username), escapeJson(passwordHash), iso);
+        }
+        return request(baseUrl + "/rest/v1/users")
+                .header("Content-Type", "application/json")
+                .header("Prefer", "return=representation")
+                .POST(HttpRequest.BodyPublishers.ofString(json))
+                .build();
+    }
+
+    HttpRequest updateUserLastLoginRequest(String id, LocalDateTime lastLogin) {
+        String iso = lastLogin.atOffset(ZoneOffset.UTC).toString();
+        String json = String.format("{\"last_login\":\"%s\"}", iso);
+        String uri = String.format("%s/rest/v1/users?id=eq.%s", baseUrl, URLEncoder.encode(id, StandardCharsets.UTF_8));
+        return request(uri)
+                .header("Content-Type", "application/json")
+                .header("Prefer", "return=representation")
+                .method("PATCH", HttpRequest.BodyPublishers.ofString(json))
+                .build();
+    }
+
+    /**
+     * PATCH the user's password_hash, but only while it still equals {@code oldHash} (so a password changed in the
+     * meantime is not overwritten).
+     */
+    HttpRequest updatePasswordHashRequest(String id, String oldHash, String newHash) {
+        String json = String.format("{\"password_hash\":\"%s\"}", escapeJson(newHash));
+        String uri = String.format("%s/rest/v1/users?id=eq.%s&password_hash=eq.%s", baseUrl,
+                URLEncoder.encode(id, StandardCharsets.UTF_8), URLEncoder.encode(oldHash, StandardCharsets.UTF_8));
+        return request(uri)
+                .header("Content-Type", "application/json")
+                .header("Prefer", "return=minimal")
+                .method("PATCH", HttpRequest.BodyPublishers.ofString(json))
+                .build();
+    }
+
+    // -------------------- Parsing --------------------
+    /**
+     * Decode a PostgREST CSV body into MoodEntry rows, one at a time. Returns the number of rows emitted.
+     */
+    static int parseCsvToEntries(InputStream csv, Consumer<MoodEntry> sink) throws IOException {
+        return parseCsvToEntries(csv, null, sink);
+    }
+
+    /**
+     * As above; rows without a user_id column get {@code defaultUserId} (the value the query filtered on).
+     * Only score and timestamp are required, so callers may select fewer columns (mood is then null).
+     */
+    static int parseCsvToEntries(InputStream csv, String defaultUserId, Consumer<MoodEntry> sink) throws IOException {
+        MoodifyEvents.CsvParse event = new MoodifyEvents.CsvParse();
+        event.begin();
+        CsvReader r = new CsvReader(csv);
+        int[] cols = moodColumns(r);
+        if (cols == null) return commit(event, "entries", 0, 0);
+        int idxMood = cols[0], idxScore = cols[1], idxTs = cols[2], idxUser = cols[3], idxId = cols[4];
+        int minCols = Math.max(idxMood, Math.max(idxScore, idxTs)) + 1;
+
+        int rows = 0, skipped = 0;
+        while (r.next()) {
+            if (r.isBlank()) continue;
+            if (r.size() < minCols) { skipped++; continue; }
+            LocalDateTime ts = PgTimestamp.parse(r.chars(), r.start(idxTs), r.end(idxTs));
+            if (ts == null) { skipped++; continue; }
+            // label standar dipetakan ke Mood tanpa membuat String baru
+            Mood known = idxMood >= 0 ? Mood.fromToken(r.chars(), r.start(idxMood), r.end(idxMood)) : null;
+            String mood = known != null ? known.label() : idxMood >= 0 ? r.field(idxMood).trim() : null;
+            int score = r.intField(idxScore, known != null ? known.score() : 0);
+            String userId = defaultUserId;
+            if (idxUser >= 0 && r.size() > idxUser) {
+                // user_id NULL muncul sebagai field kosong di CSV PostgREST
+                userId = r.field(idxUser).trim();
+                if (userId.isEmpty()) userId = null;
+            }
+            String id = idxId >= 0 && r.size() > idxId ? r.field(idxId).trim() : null;
+            sink.accept(new MoodEntry(id == null || id.isEmpty() ? null : id, mood, score, ts, userId));
+            rows++;
+        }
+        return commit(event, "entries", rows, skipped);
+    }
+
+    /**
+     * Same rows as {@link #parseCsvToEntries(InputStream, String, Consumer)}, appended to {@code out} column by column:
+     * no MoodEntry, LocalDateTime or per-row String is created. Returns the number of rows added.
+     */
+    static int parseCsvToHistory(InputStream csv, String defaultUserId, MoodHistory out) throws IOException {
+        MoodifyEvents.CsvParse event = new MoodifyEvents.CsvParse();
+        event.begin();
+        CsvReader r = new CsvReader(csv);
+        int[] cols = moodColumns(r);
+        if (cols == null) return commit(event, "history", 0, 0);
+        int idxMood = cols[0], idxScore = cols[1], idxTs = cols[2], idxUser = cols[3];
+        int minCols = Math.max(idxMood, Math.max(idxScore, idxTs)) + 1;
+
+        int rows = 0, skipped = 0;
+        CharSequence row = r.chars();
+        while (r.next()) {
+            if (r.isBlank()) continue;
+            if (r.size() < minCols) { skipped++; continue; }
+            long micros = PgTimestamp.parseEpochMicros(row, r.start(idxTs), r.end(idxTs));
+            if (micros == PgTimestamp.INVALID) { skipped++; continue; }
+            int score = r.intField(idxScore, 0);
+            boolean hasUser = idxUser >= 0 && r.size() > idxUser;
+            try {
+                out.add(idxMood >= 0 ? row : null, idxMood >= 0 ? r.start(idxMood) : 0, idxMood >= 0 ? r.end(idxMood) : 0,
+                        score, micros,
+                        hasUser ? row : null, hasUser ? r.start(idxUser) : 0, hasUser ? r.end(idxUser) : 0, defaultUserId);
+            } catch (MoodHistory.MoodTableFullException ex) {
+                throw new IOException("Respons berisi terlalu banyak pasangan (mood, skor) berbeda setelah " + rows + " baris", ex);
+            }
+            rows++;
+        }
+        return commit(event, "history", rows, skipped);
+    }
+
+    // field event hanya diisi jika JFR sedang merekam event ini
+    private static int commit(MoodifyEvents.CsvParse event, String parser, int rows, int skipped) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.parser = parser;
+            event.rows = rows;
+            event.skipped = skipped;
+            event.commit();
+        }
+        return rows;
+    }
+
+    // index {mood, score, timestamp, user_id, id} dari header (mood/user_id/id boleh -1), atau null jika tidak ada data
+    private static int[] moodColumns(CsvReader r) throws IOException {
+        if (!r.next() || r.isBlank()) return null; // tidak ada data
+
+        int idxMood = -1, idxScore = -1, idxTs = -1, idxUser = -1, idxId = -1;
+        for (int h = 0; h < r.size(); h++) {
+            String hn = r.field(h).trim().toLowerCase();
             if (hn.equals("mood") || hn.equals("moods")) idxMood = h;
             else if (hn.equals("score") || hn.equals("skor")) idxScore = h;
             else if (hn.equals("timestamp") || hn.equals("time")) idxTs = h;
             else if (hn.equals("user_id") || hn.equals("userid") || hn.equals("user")) idxUser = h;
+            else if (hn.equals("id")) idxId = h;
         }
-        if (idxMood == -1 || idxScore == -1 || idxTs == -1) {
-            return out;
-        }
+        if (idxScore == -1 || idxTs == -1) return null;
+        return new int[] {idxMood, idxScore, idxTs, idxUser, idxId};
+    }
 
-        for (int i = 1; i < lines.length; i++) {
-            String line = lines[i].trim();
+    /**
+     * Parse a Postgres timestamp/timestamptz text value (normalised to UTC). Returns null if it cannot be parsed.
+     */
+    static LocalDateTime parseTimestamp(String tsStr) {
+        if (tsStr == null) return null;
+        return PgTimestamp.parse(tsStr);
+    }
 
-            if (line.isEmpty()) continue;
-            // basic CSV split (handles quoted values roughly)
-            String[] cols = line.split(",", -1);
-            if (cols.length <= Math.max(idxMood, Math.max(idxScore, idxTs))) continue;
-            String mood = unquote(cols[idxMood]);
-            int score = 0;
-            try { score = Integer.parseInt(unquote(cols[idxScore])); } catch (NumberFormatException e) {}
-            String tsStr = unquote(cols[idxTs]);
-            String userId = (idxUser >= 0 && cols.length > idxUser) ? unquote(cols[idxUser]) : null;
-            LocalDateTime ts;
-            try {
-                // Normalize timestamp format to ISO-8601
-                tsStr = tsStr.replace(" ", "T");
-                if (tsStr.endsWith("+00")) {
-                    tsStr = tsStr + ":00";
-                }
+    // -------------------- Response decoding --------------------
 
-                java.time.OffsetDateTime odt;
-                try {
-                    odt = java.time.OffsetDateTime.parse(tsStr);
-                    ts = odt.toLocalDateTime();
-                } catch (Exception e) {
-                    try {
-                        ts = LocalDateTime.parse(tsStr);
-                    } catch (Exception ex) {
-                        continue;
-                    }
+    /** Sent on requests whose bodies are read through {@link #decodedBody()}. */
+    static final String ACCEPT_ENCODING = "gzip, deflate";
+
+    /**
+     * Like {@code BodyHandlers.ofInputStream()}, but inflates gzip/deflate bodies according to Content-Encoding.
+     */
+    static HttpResponse.BodyHandler<InputStream> decodedBody() {
+        return info -> {
+            String encoding = info.headers().firstValue("Content-Encoding").orElse("").trim().toLowerCase();
+            return HttpResponse.BodySubscribers.mapping(HttpResponse.BodySubscribers.ofInputStream(),
+                    in -> switch (encoding) {
+                        case "gzip", "x-gzip", "deflate" -> new InflatingStream(in, !encoding.equals("deflate"));
+                        default -> in;
+                    });
+        };
+    }
+
+    /**
+     * Decompressing wrapper created lazily on first read: GZIPInputStream reads the header in its constructor,
+     * and the mapping function of a body subscriber must not block.
+     */
+    private static final class InflatingStream extends InputStream {
+        private final InputStream raw;
+        private final boolean gzip;
+        private InputStream in;
+
+        InflatingStream(InputStream raw, boolean gzip) {
+            this.raw = raw;
+            this.gzip = gzip;
+        }
+
+        private InputStream in() throws IOException {
+            if (in == null) {
+                if (gzip) {
+                    in = new GZIPInputStream(raw, 8192);
+                } else {
+                    // "deflate" seharusnya zlib (RFC 9110), tapi sebagian server mengirim deflate mentah
+                    BufferedInputStream b = new BufferedInputStream(raw, 8192);
+                    b.mark(2);
+                    int cmf = b.read(), flg = b.read();
+                    b.reset();
+                    boolean zlib = cmf >= 0 && flg >= 0 && (cmf & 0x0F) == 8 && ((cmf << 8) | flg) % 31 == 0;
+                    in = new InflaterInputStream(b, new java.util.zip.Inflater(!zlib), 8192);
                 }
-            } catch (Exception e) {
-                continue;
             }
-            out.add(new MoodEntry(mood, score, ts, userId));
+            return in;
         }
-        return out;
+
+        @Override
+        public int read() throws IOException {
+            return in().read();
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            return in().read(b, off, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (in != null) in.close();
+            else raw.close();
+        }
+    }
+
+    // -------------------- Sending --------------------
+
+    /** Send through {@link Resilience}; non-2xx responses are returned, not thrown. */
+    <T> HttpResponse<T> send(String op, HttpRequest req, HttpResponse.BodyHandler<T> handler) throws IOException, InterruptedException {
+        return Resilience.await(op, resilience.send(op, req, handler));
+    }
+
+    <T> CompletableFuture<HttpResponse<T>> sendAsync(String op, HttpRequest req, HttpResponse.BodyHandler<T> handler) {
+        return resilience.send(op, req, handler);
     }
 
-    private static String unquote(String s) {
-        s = s.trim();
-        if (s.startsWith("\"") && s.endsWith("\"") && s.length() >= 2) {
-            s = s.substring(1, s.length()-1);
+    /**
+     * POST the request built by {@code build} to 'moods'. If the server does not know moods.idempotency_key yet
+     * (supabase/migrations/20261017000200_mood_idempotency_key.sql not applied), keys are switched off for good and
+     * the insert is rebuilt and sent once more without them.
+     */
+    CompletableFuture<HttpResponse<String>> postMoods(String op, Supplier<HttpRequest> build) {
+        boolean keyed = idempotencyKeys;
+        return sendAsync(op, build.get(), HttpResponse.BodyHandlers.ofString()).thenCompose(resp -> {
+            // PGRST204 = kolom tidak ada, 42P10 = tidak ada unique index untuk on_conflict
+            if (!keyed || resp.statusCode() != 400
+                    || !(resp.body().contains("idempotency_key") || resp.body().contains("42P10"))) {
+                return CompletableFuture.completedFuture(resp);
+            }
+            idempotencyKeys = false;
+            System.err.println("[SupabaseClient] kolom moods.idempotency_key belum ada; insert dikirim tanpa kunci (tidak di-retry)");
+            return sendAsync(op, build.get(), HttpResponse.BodyHandlers.ofString());
+        });
+    }
+
+    // timeout/breaker adalah kegagalan yang sudah dimengerti: satu baris cukup, tanpa stack trace
+    static void logFailure(String op, Exception ex) {
+        if (ex instanceof java.net.http.HttpTimeoutException || ex instanceof Resilience.CircuitOpenException) {
+            System.err.println("[SupabaseClient] " + op + " gagal: " + ex.getMessage());
+        } else {
+            ex.printStackTrace();
         }
-        return s;
+    }
+
+    static String readBody(InputStream in) throws IOException {
+        return new String(in.readAllBytes(), StandardCharsets.UTF_8);
     }
 
     private static String escapeJson(String s) {
@@ -253,27 +1133,10 @@ public class SupabaseClient {
      */
     public boolean createUser(String username, String passwordHash, LocalDateTime lastLogin) {
         try {
-            String iso = lastLogin == null ? null : lastLogin.atOffset(ZoneOffset.UTC).toString();
-            String json;
-            if (iso == null) {
-                json = String.format("{\"username\":\"%s\",\"password_hash\":\"%s\"}",
-                        escapeJson(username), escapeJson(passwordHash));
-            } else {
-                json = String.format("{\"username\":\"%s\",\"password_hash\":\"%s\",\"last_login\":\"%s\"}",
-                        escapeJson(username), escapeJson(passwordHash), iso);
-            }
-            HttpRequest req = HttpRequest.newBuilder()
-                    .uri(URI.create(baseUrl + "/rest/v1/users"))
-                    .header("apikey", apiKey)
-                    .header("Authorization", "Bearer " + apiKey)
-                    .header("Content-Type", "application/json")
-                    .header("Prefer", "return=representation")
-                    .POST(HttpRequest.BodyPublishers.ofString(json))
-                    .build();
-            HttpResponse<String> resp = http.send(req, HttpResponse.BodyHandlers.ofString());
+            HttpResponse<String> resp = send("createUser", createUserRequest(username, passwordHash, lastLogin), HttpResponse.BodyHandlers.ofString());
             return resp.statusCode() >= 200 && resp.statusCode() < 300;
         } catch (IOException | InterruptedException ex) {
-            ex.printStackTrace();
+            logFailure("createUser", ex);
             return false;
         }
     }
@@ -283,24 +1146,17 @@ public class SupabaseClient {
      */
     public UserEntry fetchUserByUsername(String username) {
         try {
-            // request the user's 'timestamp' column (canonical column name used: 'timestamp')
-            String select = URLEncoder.encode("id,username,password_hash,last_login,timestamp", StandardCharsets.UTF_8);
-            String filter = String.format("username=eq.%s&limit=1", URLEncoder.encode(username, StandardCharsets.UTF_8));
-            String uri = String.format("%s/rest/v1/users?select=%s&%s", baseUrl, select, filter);
-            HttpRequest req = HttpRequest.newBuilder()
-                    .uri(URI.create(uri))
-                    .header("apikey", apiKey)
-                    .header("Authorization", "Bearer " + apiKey)
-                    .header("Accept", "text/csv")
-                    .GET()
-                    .build();
-            HttpResponse<String> resp = http.send(req, HttpResponse.BodyHandlers.ofString());
-            if (resp.statusCode() < 200 || resp.statusCode() >= 300) return null;
-            List<UserEntry> users = parseCsvToUsers(resp.body());
-            if (users.isEmpty()) return null;
-            return users.get(0);
+            HttpResponse<InputStream> resp = send("fetchUserByUsername", csvGet(userByUsernameUri(username)), decodedBody());
+            try (InputStream body = resp.body()) {
+                if (resp.statusCode() < 200 || resp.statusCode() >= 300) return null;
+                long t0 = System.nanoTime();
+                List<UserEntry> users = parseCsvToUsers(body);
+                metrics.parsed("fetchUserByUsername", users.size(), System.nanoTime() - t0);
+                if (users.isEmpty()) return null;
+                return users.get(0);
+            }
         } catch (Exception ex) {
-            ex.printStackTrace();
+            logFailure("fetchUserByUsername", ex);
             return null;
         }
     }
@@ -310,38 +1166,28 @@ public class SupabaseClient {
      */
     public boolean updateUserLastLogin(String id, LocalDateTime lastLogin) {
         try {
-            String iso = lastLogin.atOffset(ZoneOffset.UTC).toString();
-            String json = String.format("{\"last_login\":\"%s\"}", iso);
-            String uri = String.format("%s/rest/v1/users?id=eq.%s", baseUrl, URLEncoder.encode(id, StandardCharsets.UTF_8));
-            HttpRequest req = HttpRequest.newBuilder()
-                    .uri(URI.create(uri))
-                    .header("apikey", apiKey)
-                    .header("Authorization", "Bearer " + apiKey)
-                    .header("Content-Type", "application/json")
-                    .header("Prefer", "return=representation")
-                    .method("PATCH", HttpRequest.BodyPublishers.ofString(json))
-                    .build();
-            HttpResponse<String> resp = http.send(req, HttpResponse.BodyHandlers.ofString());
+            HttpResponse<String> resp = send("updateUserLastLogin", updateUserLastLoginRequest(id, lastLogin), HttpResponse.BodyHandlers.ofString());
             return resp.statusCode() >= 200 && resp.statusCode() < 300;
         } catch (IOException | InterruptedException ex) {
-            ex.printStackTrace();
+            logFailure("updateUserLastLogin", ex);
             return false;
         }
     }
 
-    private List<UserEntry> parseCsvToUsers(String csv) {
+    static List<UserEntry> parseCsvToUsers(InputStream csv) throws IOException {
+        MoodifyEvents.CsvParse event = new MoodifyEvents.CsvParse();
+        event.begin();
         List<UserEntry> out = new ArrayList<>();
-        if (csv == null || csv.isBlank()) return out;
-        String[] lines = csv.split("\\r?\\n");
-        if (lines.length <= 1) return out; // header only
+        CsvReader r = new CsvReader(csv);
+        if (!r.next() || r.isBlank()) { // header only
+            commit(event, "users", 0, 0);
+            return out;
+        }
 
         // parse header to find indices (more robust than fixed positions)
-        String headerLine = lines[0].trim();
-        if (headerLine.isEmpty()) return out;
-        String[] headers = headerLine.split(",", -1);
         int idxId = -1, idxUsername = -1, idxPw = -1, idxLastLogin = -1, idxCreatedAt = -1;
-        for (int h = 0; h < headers.length; h++) {
-            String hn = unquote(headers[h]).trim().toLowerCase();
+        for (int h = 0; h < r.size(); h++) {
+            String hn = r.field(h).trim().toLowerCase();
             if (hn.equals("id")) idxId = h;
             else if (hn.equals("username") || hn.equals("user")) idxUsername = h;
             else if (hn.equals("password_hash") || hn.equals("password") || hn.equals("pw")) idxPw = h;
@@ -349,68 +1195,27 @@ public class SupabaseClient {
             else if (hn.equals("createdat") || hn.equals("created") || hn.equals("timestamp")) idxCreatedAt = h;
         }
         // require at least id and username and pw (password_hash may be empty but columns present)
+        int minCols = 0;
         if (idxId == -1 || idxUsername == -1 || idxPw == -1) {
-            // fallback: try to parse with minimal positions
-            for (int i = 1; i < lines.length; i++) {
-                String line = lines[i].trim();
-                if (line.isEmpty()) continue;
-                String[] cols = line.split(",", -1);
-                if (cols.length < 4) continue;
-                String id = unquote(cols[0]);
-                String username = unquote(cols[1]);
-                String pwHash = unquote(cols[2]);
-                String lastLoginStr = unquote(cols[3]);
-                LocalDateTime lastLogin = null;
-                if (lastLoginStr != null && !lastLoginStr.isEmpty()) {
-                    try { lastLogin = java.time.OffsetDateTime.parse(lastLoginStr).toLocalDateTime(); } catch (Exception e) {
-                        try { lastLogin = LocalDateTime.parse(lastLoginStr); } catch (Exception ex) { lastLogin = null; }
-                    }
-                }
-                LocalDateTime createdAt = null;
-                if (cols.length >= 5) {
-                    String createdAtStr = unquote(cols[4]);
-                    if (createdAtStr != null && !createdAtStr.isEmpty()) {
-                            // normalize similar to parseCsvToEntries: replace space with 'T' and fix +00 offset
-                            createdAtStr = createdAtStr.replace(" ", "T");
-                            if (createdAtStr.endsWith("+00")) createdAtStr = createdAtStr + ":00";
-                            try { createdAt = java.time.OffsetDateTime.parse(createdAtStr).toLocalDateTime(); } catch (Exception e) {
-                                try { createdAt = LocalDateTime.parse(createdAtStr); } catch (Exception ex) { createdAt = null; }
-                            }
-                        }
-                }
-                out.add(new UserEntry(id, username, pwHash, lastLogin, createdAt));
-            }
-            return out;
+            // fallback: parse with minimal positions (id,username,password_hash,last_login[,createdAt])
+            idxId = 0; idxUsername = 1; idxPw = 2; idxLastLogin = 3; idxCreatedAt = 4;
+            minCols = 4;
         }
 
-        for (int i = 1; i < lines.length; i++) {
-            String line = lines[i].trim();
-            if (line.isEmpty()) continue;
-            String[] cols = line.split(",", -1);
-            String id = idxId >= 0 && cols.length > idxId ? unquote(cols[idxId]) : null;
-            String username = idxUsername >= 0 && cols.length > idxUsername ? unquote(cols[idxUsername]) : null;
-            String pwHash = idxPw >= 0 && cols.length > idxPw ? unquote(cols[idxPw]) : null;
-            String lastLoginStr = idxLastLogin >= 0 && cols.length > idxLastLogin ? unquote(cols[idxLastLogin]) : null;
-            LocalDateTime lastLogin = null;
-            if (lastLoginStr != null && !lastLoginStr.isEmpty()) {
-                try { lastLogin = java.time.OffsetDateTime.parse(lastLoginStr).toLocalDateTime(); } catch (Exception e) {
-                    try { lastLogin = LocalDateTime.parse(lastLoginStr); } catch (Exception ex) { lastLogin = null; }
-                }
-            }
-            LocalDateTime createdAt = null;
-            if (idxCreatedAt >= 0 && cols.length > idxCreatedAt) {
-                String createdAtStr = unquote(cols[idxCreatedAt]);
-                if (createdAtStr != null && !createdAtStr.isEmpty()) {
-                    // normalize like entries parser
-                    createdAtStr = createdAtStr.replace(" ", "T");
-                    if (createdAtStr.endsWith("+00")) createdAtStr = createdAtStr + ":00";
-                    try { createdAt = java.time.OffsetDateTime.parse(createdAtStr).toLocalDateTime(); } catch (Exception e) {
-                        try { createdAt = LocalDateTime.parse(createdAtStr); } catch (Exception ex) { createdAt = null; }
-                    }
-                }
-            }
+        int skipped = 0;
+        while (r.next()) {
+            if (r.isBlank()) continue;
+            if (r.size() < minCols) { skipped++; continue; }
+            String id = idxId >= 0 && r.size() > idxId ? r.field(idxId).trim() : null;
+            String username = idxUsername >= 0 && r.size() > idxUsername ? r.field(idxUsername).trim() : null;
+            String pwHash = idxPw >= 0 && r.size() > idxPw ? r.field(idxPw).trim() : null;
+            LocalDateTime lastLogin = idxLastLogin >= 0 && r.size() > idxLastLogin
+                    ? PgTimestamp.parse(r.chars(), r.start(idxLastLogin), r.end(idxLastLogin)) : null;
+            LocalDateTime createdAt = idxCreatedAt >= 0 && r.size() > idxCreatedAt
+                    ? PgTimestamp.parse(r.chars(), r.start(idxCreatedAt), r.end(idxCreatedAt)) : null;
             out.add(new UserEntry(id, username, pwHash, lastLogin, createdAt));
         }
+        commit(event, "users", out.size(), skipped);
         return out;
     }
 
@@ -426,12 +1231,60 @@ public class SupabaseClient {
     }
 
     public static class MoodEntry {
+        /** moods.id as text; null unless the row was read with its id (keyset pages). */
+        public final String id;
         public final String mood;
         public final int score;
         public final LocalDateTime timestamp;
         public final String userId;
+        /**
+         * moods.idempotency_key sent when inserting this row; null for rows read from the server. Assigned once
+         * when the row is created ({@link #create}), so every resend (retry, buffer re-flush, journal replay)
+         * carries the same key and the server ignores the duplicate.
+         */
+        public final String idempotencyKey;
         public MoodEntry(String mood, int score, LocalDateTime timestamp, String userId) {
-            this.mood = mood; this.score = score; this.timestamp = timestamp; this.userId = userId;
+            this(null, mood, score, timestamp, userId, null);
+        }
+        public MoodEntry(String id, String mood, int score, LocalDateTime timestamp, String userId) {
+            this(id, mood, score, timestamp, userId, null);
+        }
+        public MoodEntry(String id, String mood, int score, LocalDateTime timestamp, String userId, String idempotencyKey) {
+            this.id = id; this.mood = mood; this.score = score; this.timestamp = timestamp; this.userId = userId;
+            this.idempotencyKey = idempotencyKey;
+        }
+        /** A new row to insert, with a fresh random idempotency key. */
+        public static MoodEntry create(String mood, int score, LocalDateTime timestamp, String userId) {
+            return new MoodEntry(null, mood, score, timestamp, userId, UUID.randomUUID().toString());
+        }
+        /** This entry if it already has an idempotency key, otherwise a copy with a fresh random one. */
+        public MoodEntry keyed() {
+            return idempotencyKey != null ? this : withIdempotencyKey(UUID.randomUUID().toString());
+        }
+        public MoodEntry withIdempotencyKey(String key) {
+            return new MoodEntry(id, mood, score, timestamp, userId, key);
+        }
+    }
+
+    /**
+     * Count/sum/min/max of scores on one day (UTC), as returned by rpc/mood_daily_stats or stored in mood_daily.
+     * userId is null when the row is not tied to one user.
+     */
+    public static class DailyAggregate {
+        public final String userId;
+        public final LocalDate date;
+        public final int count;
+        public final long sum;
+        public final int min;
+        public final int max;
+        public DailyAggregate(LocalDate date, int count, long sum, int min, int max) {
+            this(null, date, count, sum, min, max);
+        }
+        public DailyAggregate(String userId, LocalDate date, int count, long sum, int min, int max) {
+            this.userId = userId; this.date = date; this.count = count; this.sum = sum; this.min = min; this.max = max;
+        }
+        public double average() {
+            return count == 0 ? 0.0 : ((double) sum) / count;
         }
     }
 }
@@ -0,0 +1,26 @@
+package org.example;
+
+import java.io.IOException;
+
+/**
+ * Respons non-2xx dari Supabase REST. Dipakai oleh {@link AsyncSupabaseClient} untuk menggagalkan
+ * CompletableFuture alih-alih mengembalikan list kosong / false.
+ */
+public class SupabaseException extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    private final String operation;
+    private final int statusCode;
+    private final String responseBody;
+
+    public SupabaseException(String operation, int statusCode, String responseBody) {
+        super(operation + " failed: status=" + statusCode);
+        this.operation = operation;
+        this.statusCode = statusCode;
+        this.responseBody = responseBody;
+    }
+
+    public String getOperation() { return operation; }
+    public int getStatusCode() { return statusCode; }
+    public String getResponseBody() { return responseBody; }
+}
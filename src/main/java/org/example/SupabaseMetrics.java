@@ -0,0 +1,275 @@
+package org.example;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Metrik per operasi {@link SupabaseClient} ("insertMood", "fetchEntriesBetweenForUser", ...):
+ * - latensi per panggilan (termasuk retry, sampai header respons diterima) dalam histogram log-linear
+ *   (4 bucket per kelipatan dua, error persentil maksimal ~25%)
+ * - byte terkirim/diterima (body di jaringan, jadi sebelum gzip di-decode)
+ * - baris hasil parsing dan waktu parsing (termasuk menunggu sisa body dari socket, karena body di-stream)
+ * - jumlah kode status dan error (non-2xx atau exception)
+ * - jumlah retry, hedged request dan penolakan oleh circuit breaker
+ * Semua penghitung lock-free (LongAdder / AtomicLongArray). Dibaca lewat JMX ({@link #register}) atau dump teks
+ * berkala ({@link #startDump}).
+ */
+public class SupabaseMetrics implements SupabaseMetricsMXBean {
+    static final String OBJECT_NAME = "org.example:type=SupabaseClient";
+
+    /** Read-only snapshot of one operation; mapped to CompositeData by JMX. */
+    public static final class OperationStats {
+        private final String operation;
+        private final long calls, errors, bytesSent, bytesReceived, rows;
+        private final double p50Millis, p90Millis, p99Millis, maxMillis, parseMillis;
+        private final Map<String, Long> statusCounts;
+
+        OperationStats(String operation, Op op) {
+            this.operation = operation;
+            this.calls = op.calls.sum();
+            this.errors = op.errors.sum();
+            this.bytesSent = op.bytesSent.sum();
+            this.bytesReceived = op.bytesReceived.sum();
+            this.rows = op.rows.sum();
+            this.p50Millis = op.latency.percentileMillis(0.50);
+            this.p90Millis = op.latency.percentileMillis(0.90);
+            this.p99Millis = op.latency.percentileMillis(0.99);
+            this.maxMillis = op.latency.percentileMillis(1.0);
+            this.parseMillis = op.parseNanos.sum() / 1e6;
+            Map<String, Long> statuses = new TreeMap<>();
+            op.statuses.forEach((k, v) -> statuses.put(k, v.sum()));
+            this.statusCounts = statuses;
+        }
+
+        public String getOperation() { return operation; }
+        public long getCalls() { return calls; }
+        public long getErrors() { return errors; }
+        public long getBytesSent() { return bytesSent; }
+        public long getBytesReceived() { return bytesReceived; }
+        public long getRows() { return rows; }
+        public double getP50Millis() { return p50Millis; }
+        public double getP90Millis() { return p90Millis; }
+        public double getP99Millis() { return p99Millis; }
+        public double getMaxMillis() { return maxMillis; }
+        public double getParseMillis() { return parseMillis; }
+        /** Count per HTTP status ("200", "503") or exception name ("HttpTimeoutException"). */
+        public Map<String, Long> getStatusCounts() { return statusCounts; }
+    }
+
+    private static final class Op {
+        final Histogram latency = new Histogram();
+        final LongAdder calls = new LongAdder();
+        final LongAdder errors = new LongAdder();
+        final LongAdder bytesSent = new LongAdder();
+        final LongAdder bytesReceived = new LongAdder();
+        final LongAdder rows = new LongAdder();
+        final LongAdder parseNanos = new LongAdder();
+        final Map<String, LongAdder> statuses = new ConcurrentHashMap<>();
+    }
+
+    private final Map<String, Op> ops = new ConcurrentHashMap<>();
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder hedged = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private ScheduledExecutorService dumper;
+
+    // -------------------- Recording --------------------
+
+    /** One finished call: {@code status} is ignored when {@code failure} is non-null. */
+    void call(String op, long nanos, int status, Throwable failure) {
+        Op o = op(op);
+        o.calls.increment();
+        o.latency.record(nanos);
+        String key = failure != null ? failure.getClass().getSimpleName() : Integer.toString(status);
+        o.statuses.computeIfAbsent(key, k -> new LongAdder()).increment();
+        if (failure != null || status < 200 || status >= 300) o.errors.increment();
+    }
+
+    void sent(String op, long bytes) {
+        if (bytes > 0) op(op).bytesSent.add(bytes);
+    }
+
+    /** Counter for body bytes of {@code op}, added to as the body arrives. */
+    LongAdder received(String op) {
+        return op(op).bytesReceived;
+    }
+
+    void parsed(String op, long rows, long nanos) {
+        Op o = op(op);
+        o.rows.add(rows);
+        o.parseNanos.add(nanos);
+    }
+
+    void retried() {
+        retries.increment();
+    }
+
+    void hedged() {
+        hedged.increment();
+    }
+
+    void rejected() {
+        rejected.increment();
+    }
+
+    private Op op(String name) {
+        return ops.computeIfAbsent(name, k -> new Op());
+    }
+
+    // -------------------- Reading --------------------
+
+    @Override
+    public List<OperationStats> getOperations() {
+        List<OperationStats> out = new ArrayList<>();
+        new TreeMap<>(ops).forEach((name, op) -> out.add(new OperationStats(name, op)));
+        return out;
+    }
+
+    @Override
+    public long getRetries() {
+        return retries.sum();
+    }
+
+    @Override
+    public long getHedgedRequests() {
+        return hedged.sum();
+    }
+
+    @Override
+    public long getCircuitRejections() {
+        return rejected.sum();
+    }
+
+    @Override
+    public String dump() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("%-28s %7s %5s %9s %9s %9s %9s %10s %10s %9s %10s  %s%n",
+                "operation", "calls", "err", "p50 ms", "p90 ms", "p99 ms", "max ms", "KB out", "KB in", "rows", "parse ms", "status"));
+        for (OperationStats s : getOperations()) {
+            StringBuilder st = new StringBuilder();
+            s.getStatusCounts().forEach((k, v) -> st.append(st.isEmpty() ? "" : " ").append(k).append('x').append(v));
+            sb.append(String.format("%-28s %7d %5d %9.1f %9.1f %9.1f %9.1f %10.1f %10.1f %9d %10.1f  %s%n",
+                    s.getOperation(), s.getCalls(), s.getErrors(), s.getP50Millis(), s.getP90Millis(), s.getP99Millis(),
+                    s.getMaxMillis(), s.getBytesSent() / 1024.0, s.getBytesReceived() / 1024.0, s.getRows(), s.getParseMillis(), st));
+        }
+        sb.append(String.format("retries=%d hedged=%d circuit_rejections=%d%n", getRetries(), getHedgedRequests(), getCircuitRejections()));
+        return sb.toString();
+    }
+
+    @Override
+    public void reset() {
+        ops.clear();
+        retries.reset();
+        hedged.reset();
+        rejected.reset();
+    }
+
+    // -------------------- Export --------------------
+
+    /**
+     * Register as platform MBean {@value #OBJECT_NAME}. Returns false (and logs) if that fails, e.g. because
+     * another client already registered.
+     */
+    public boolean register() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            server.registerMBean(this, new ObjectName(OBJECT_NAME));
+            return true;
+        } catch (JMException ex) {
+            System.err.println("[SupabaseMetrics] gagal mendaftarkan MBean: " + ex.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Append {@link #dump()} (with a timestamp line) to {@code file} every {@code every}, on a daemon thread.
+     */
+    public synchronized void startDump(Duration every, Path file) {
+        if (dumper != null) dumper.shutdownNow();
+        dumper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "moodify-metrics");
+            t.setDaemon(true);
+            return t;
+        });
+        long ms = Math.max(1, every.toMillis());
+        dumper.scheduleAtFixedRate(() -> {
+            try {
+                Path dir = file.toAbsolutePath().getParent();
+                if (dir != null) Files.createDirectories(dir);
+                try (Writer w = Files.newBufferedWriter(file, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+                    w.write("# " + LocalDateTime.now() + System.lineSeparator());
+                    w.write(dump());
+                    w.write(System.lineSeparator());
+                }
+            } catch (IOException ex) {
+                System.err.println("[SupabaseMetrics] gagal menulis " + file + ": " + ex.getMessage());
+            }
+        }, ms, ms, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void stopDump() {
+        if (dumper != null) dumper.shutdownNow();
+        dumper = null;
+    }
+
+    /**
+     * Log-linear histogram of microseconds: values below 4 exact, then 4 buckets per power of two up to ~2^40 us.
+     */
+    static final class Histogram {
+        private static final int BUCKETS = 160;
+        private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+        void record(long nanos) {
+            counts.incrementAndGet(bucket(Math.max(0, nanos / 1000)));
+        }
+
+        static int bucket(long micros) {
+            if (micros < 4) return (int) micros;
+            int e = 63 - Long.numberOfLeadingZeros(micros);
+            int sub = (int) (micros >>> (e - 2)) & 3;
+            return Math.min(BUCKETS - 1, (e - 1) * 4 + sub);
+        }
+
+        // nilai teratas bucket, dalam mikrodetik
+        static long upperBound(int bucket) {
+            if (bucket < 4) return bucket;
+            int e = bucket / 4 + 1, sub = bucket % 4;
+            return ((5L + sub) << (e - 2)) - 1;
+        }
+
+        /** Upper bound of the bucket holding quantile {@code q}, in ms; 0 when empty. */
+        double percentileMillis(double q) {
+            long total = 0;
+            long[] snap = new long[BUCKETS];
+            for (int i = 0; i < BUCKETS; i++) total += snap[i] = counts.get(i);
+            if (total == 0) return 0;
+            long rank = Math.max(1, (long) Math.ceil(q * total));
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += snap[i];
+                if (seen >= rank) return upperBound(i) / 1000.0;
+            }
+            return upperBound(BUCKETS - 1) / 1000.0;
+        }
+    }
+}
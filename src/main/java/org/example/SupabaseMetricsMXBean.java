@@ -0,0 +1,22 @@
+package org.example;
+
+import java.util.List;
+
+/**
+ * JMX view of {@link SupabaseMetrics} (jconsole / VisualVM: {@value SupabaseMetrics#OBJECT_NAME}).
+ */
+public interface SupabaseMetricsMXBean {
+    /** One snapshot per operation name, sorted by name. */
+    List<SupabaseMetrics.OperationStats> getOperations();
+
+    long getRetries();
+
+    long getHedgedRequests();
+
+    long getCircuitRejections();
+
+    /** Same table as the periodic dump. */
+    String dump();
+
+    void reset();
+}
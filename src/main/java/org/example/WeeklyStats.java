@@ -16,12 +16,7 @@ public class WeeklyStats {
     public double getAverageScore() { return averageScore; }
 
     public String getAverageMoodLabel() {
-        double a = averageScore;
         if (totalCount == 0) return "Tidak ada data";
-        if (a < 1.5) return "Kacau";
-        if (a < 2.5) return "Buruk";
-        if (a < 3.5) return "Netral";
-        if (a < 4.5) return "Bagus";
-        return "Sangat bagus";
+        return Mood.forAverage(averageScore).label();
     }
 }
\ No newline at end of file
@@ -1,7 +1,10 @@
 package org.example.ui;
 
+import org.example.Mood;
+
 import javax.swing.*;
 import java.awt.*;
+import java.util.Locale;
 
 public class MoodifyFrame extends JFrame {
     private final JLabel moodLabel;
@@ -28,7 +31,7 @@ public class MoodifyFrame extends JFrame {
         content.add(title, BorderLayout.NORTH);
 
         // Mood label in the center
-        moodLabel = new JLabel("Neutral", SwingConstants.CENTER);
+        moodLabel = new JLabel(Mood.NETRAL.label(Locale.ENGLISH), SwingConstants.CENTER);
         moodLabel.setOpaque(true);
         moodLabel.setBackground(new Color(245, 245, 245));
         moodLabel.setFont(moodLabel.getFont().deriveFont(Font.PLAIN, 24f));
@@ -40,15 +43,15 @@ public class MoodifyFrame extends JFrame {
 
         // Buttons panel
         JPanel buttons = new JPanel(new FlowLayout(FlowLayout.CENTER, 12, 12));
-        JButton happyBtn = new JButton("Happy");
-        JButton calmBtn = new JButton("Calm");
-        JButton sadBtn = new JButton("Sad");
+        JButton happyBtn = new JButton(Mood.SANGAT_BAGUS.label(Locale.ENGLISH));
+        JButton calmBtn = new JButton(Mood.BAGUS.label(Locale.ENGLISH));
+        JButton sadBtn = new JButton(Mood.BURUK.label(Locale.ENGLISH));
         JButton resetBtn = new JButton("Reset");
 
-        happyBtn.addActionListener(e -> setMood("Happy", new Color(255, 243, 176), new Color(199, 152, 12)));
-        calmBtn.addActionListener(e -> setMood("Calm", new Color(197, 232, 255), new Color(13, 71, 161)));
-        sadBtn.addActionListener(e -> setMood("Sad", new Color(230, 230, 250), new Color(81, 81, 81)));
-        resetBtn.addActionListener(e -> setMood("Neutral", new Color(245, 245, 245), new Color(60, 60, 60)));
+        happyBtn.addActionListener(e -> setMood(Mood.SANGAT_BAGUS, new Color(255, 243, 176), new Color(199, 152, 12)));
+        calmBtn.addActionListener(e -> setMood(Mood.BAGUS, new Color(197, 232, 255), new Color(13, 71, 161)));
+        sadBtn.addActionListener(e -> setMood(Mood.BURUK, new Color(230, 230, 250), new Color(81, 81, 81)));
+        resetBtn.addActionListener(e -> setMood(Mood.NETRAL, new Color(245, 245, 245), new Color(60, 60, 60)));
 
         buttons.add(happyBtn);
         buttons.add(calmBtn);
@@ -66,8 +69,8 @@ public class MoodifyFrame extends JFrame {
         setLocationRelativeTo(null); // center on screen
     }
 
-    private void setMood(String text, Color background, Color textColor) {
-        moodLabel.setText(text);
+    private void setMood(Mood mood, Color background, Color textColor) {
+        moodLabel.setText(mood.label(Locale.ENGLISH));
         moodLabel.setBackground(background);
         moodLabel.setForeground(textColor);
     }
@@ -0,0 +1,191 @@
+package org.example;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/**
+ * {@link MoodCodec} round trips: every delta-of-delta bucket edge and the 64-bit escape, the 3-bit and
+ * {@code '111'}+8-bit mood codes, several users per block, the time unit picked per block, and streams that are
+ * truncated or corrupted.
+ */
+class MoodCodecTest {
+    private static final long BASE = 1_767_225_600_000_000L; // 2026-01-01T00:00Z dalam mikrodetik
+    private static final long HOUR = 3_600_000_000L;
+    private static final Mood STD = Mood.BAGUS;
+
+    private static void assertRoundTrip(MoodHistory h) {
+        MoodHistory back = MoodCodec.decode(MoodCodec.encode(h));
+        assertEquals(h.size(), back.size());
+        for (int i = 0; i < h.size(); i++) {
+            assertEquals(h.epochMicros(i), back.epochMicros(i), "timestamp " + i);
+            assertEquals(h.mood(i), back.mood(i), "mood " + i);
+            assertEquals(h.score(i), back.score(i), "score " + i);
+            assertEquals(h.userId(i), back.userId(i), "user " + i);
+        }
+    }
+
+    // timestamp dengan delta-of-delta persis 'dods' (satuan 1 us karena ada dod ganjil)
+    private static MoodHistory withDeltaOfDeltas(long... dods) {
+        MoodHistory h = new MoodHistory();
+        long ts = BASE, delta = 0;
+        h.add(STD.label(), STD.score(), ts, "u1");
+        for (long dod : dods) {
+            delta += dod;
+            ts += delta;
+            h.add(STD.label(), STD.score(), ts, "u1");
+        }
+        return h;
+    }
+
+    @Test
+    void deltaOfDeltaBucketEdgesRoundTrip() {
+        long[][] edges = {
+                {0, 1, -1},
+                {-15, 16, -16, 17},                 // '10' + 5 bit dan tepat di luarnya
+                {-255, 256, -256, 257},             // '110' + 9 bit
+                {-32767, 32768, -32768, 32769},     // '1110' + 16 bit
+                {HOUR * 24 * 400 + 1, -(HOUR * 24 * 800) - 3, Integer.MAX_VALUE * 3L}, // '1111' + 64 bit
+        };
+        for (long[] dods : edges) assertRoundTrip(withDeltaOfDeltas(dods));
+
+        // setiap bucket lebih besar dari bucket sebelumnya: 17 bit lebih mahal dari 16
+        int small = MoodCodec.encode(withDeltaOfDeltas(16, -16)).length;
+        int large = MoodCodec.encode(withDeltaOfDeltas(17, -17)).length;
+        assertTrue(large >= small, small + " vs " + large);
+    }
+
+    @Test
+    void manyNonStandardMoodsUseTheEightBitCode() {
+        MoodHistory h = new MoodHistory();
+        // 5 mood standar, lalu 2 kode 3-bit (5, 6) dan sisanya lewat '111' + 8 bit sampai kode 255
+        for (Mood m : Mood.values()) h.add(m.label(), m.score(), BASE + h.size() * HOUR, "u1");
+        for (int k = 0; k < 256 - Mood.values().length - 1; k++) {
+            h.add("custom-" + k, k % 2 == 0 ? -k : k, BASE + h.size() * HOUR, "u1");
+        }
+        h.add(null, 0, BASE + h.size() * HOUR, "u1"); // kode 255
+        h.add("custom-3", 3, BASE + h.size() * HOUR, "u1");
+        assertRoundTrip(h);
+
+        // label standar dengan skor lain bukan kode standar
+        MoodHistory odd = new MoodHistory();
+        odd.add(STD.label(), 1, BASE, "u1");
+        odd.add(STD.label(), STD.score(), BASE + HOUR, "u1");
+        odd.add("", 2, BASE + 2 * HOUR, "u1");
+        assertRoundTrip(odd);
+    }
+
+    @Test
+    void multiUserBlocksRoundTrip() {
+        MoodHistory h = new MoodHistory();
+        String[] users = {"u1", "u2", "u3", null, "u5"};
+        Random rnd = new Random(7);
+        // lebih dari satu blok, dengan runs user yang sama dan perpindahan acak
+        for (int i = 0; i < MoodCodec.BLOCK_ROWS + 500; i++) {
+            String u = i % 50 < 10 ? "u1" : users[rnd.nextInt(users.length)];
+            Mood m = Mood.values()[rnd.nextInt(Mood.values().length)];
+            h.add(m.label(), m.score(), BASE + i * 60_000_000L, u);
+        }
+        // blok terakhir hanya berisi satu user
+        for (int i = 0; i < 10; i++) h.add(Mood.BURUK.label(), 2, BASE + (MoodCodec.BLOCK_ROWS + 500 + i) * 60_000_000L, "u2");
+        assertRoundTrip(h);
+
+        // baris tanpa user memakai defaultUserId saat dibaca
+        MoodHistory anon = new MoodHistory();
+        anon.add(Mood.KACAU.label(), 1, BASE, null);
+        MoodHistory read = new MoodHistory();
+        try {
+            MoodCodec.read(new ByteArrayInputStream(MoodCodec.encode(anon)), "fallback", read);
+        } catch (IOException e) {
+            fail(e);
+        }
+        assertEquals("fallback", read.userId(0));
+    }
+
+    @Test
+    void blockUsesTheLargestUnitDividingAllOffsets() {
+        long[] units = {HOUR, 60_000_000L, 1_000_000L, 1_000L, 1L};
+        for (long unit : units) {
+            MoodHistory h = new MoodHistory();
+            Random rnd = new Random(unit);
+            long ts = BASE + 7; // offset terhadap baris pertama yang dihitung, bukan nilai absolut
+            for (int i = 0; i < 100; i++) {
+                h.add(STD.label(), STD.score(), ts, "u1");
+                ts += unit * (1 + rnd.nextInt(48));
+            }
+            byte[] data = MoodCodec.encode(h);
+            assertEquals(unit, unitOfFirstBlock(data), "unit " + unit);
+            assertRoundTrip(h);
+        }
+        // satu baris: semua satuan cocok, yang terbesar dipilih
+        MoodHistory one = new MoodHistory();
+        one.add(STD.label(), STD.score(), BASE + 1, "u1");
+        assertEquals(HOUR, unitOfFirstBlock(MoodCodec.encode(one)));
+    }
+
+    // MAGIC, varint baris, varint panjang, kamus mood (harus kosong), kamus user, lalu varint satuan
+    private static long unitOfFirstBlock(byte[] data) {
+        int[] pos = {4};
+        varint(data, pos);
+        varint(data, pos);
+        assertEquals(0, varint(data, pos));
+        long users = varint(data, pos);
+        for (long k = 0; k < users; k++) {
+            long len = varint(data, pos); // 0 = null, selain itu panjang + 1
+            pos[0] += (int) Math.max(0, len - 1);
+        }
+        return varint(data, pos);
+    }
+
+    private static long varint(byte[] data, int[] pos) {
+        long v = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = data[pos[0]++];
+            v |= (long) (b & 0x7F) << shift;
+            if (b >= 0) return v;
+        }
+    }
+
+    @Test
+    void truncatedStreamsAreRejected() {
+        MoodHistory h = withDeltaOfDeltas(1, 300, -40_000, 5, HOUR * 1000);
+        h.add("custom", 9, BASE + 2 * HOUR, "u2");
+        byte[] data = MoodCodec.encode(h);
+        for (int len = 0; len < data.length; len++) {
+            byte[] cut = Arrays.copyOf(data, len);
+            assertThrows(IllegalArgumentException.class, () -> MoodCodec.decode(cut), "length " + len);
+            assertThrows(IOException.class, () -> MoodCodec.read(new ByteArrayInputStream(cut), null, new MoodHistory()), "length " + len);
+        }
+        assertThrows(IllegalArgumentException.class, () -> MoodCodec.decode("MDS0".getBytes(StandardCharsets.US_ASCII)));
+    }
+
+    @Test
+    void corruptStreamsFailWithIOExceptionOnly() {
+        MoodHistory h = new MoodHistory();
+        Random rnd = new Random(42);
+        for (int i = 0; i < 300; i++) {
+            h.add(i % 7 == 0 ? "custom-" + (i % 3) : STD.label(), i % 7 == 0 ? i % 5 : STD.score(), BASE + i * (HOUR + rnd.nextInt(1000)), i % 4 == 0 ? "u2" : "u1");
+        }
+        byte[] data = MoodCodec.encode(h);
+        for (int trial = 0; trial < 2000; trial++) {
+            byte[] bad = data.clone();
+            int flips = 1 + rnd.nextInt(3);
+            for (int f = 0; f < flips; f++) bad[4 + rnd.nextInt(bad.length - 4)] ^= (byte) (1 << rnd.nextInt(8));
+            try {
+                MoodCodec.read(new ByteArrayInputStream(bad), null, new MoodHistory());
+            } catch (IOException expected) {
+                // rusak dan terdeteksi; bit timestamp yang terbalik memang tidak terdeteksi
+            } catch (RuntimeException ex) {
+                fail("trial " + trial + ": " + ex, ex);
+            }
+        }
+    }
+}
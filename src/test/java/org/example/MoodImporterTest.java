@@ -0,0 +1,91 @@
+package org.example;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * {@link MoodImporter} against {@link PostgrestStandIn}: refused rows are set aside, transient failures keep the
+ * checkpoint and a resumed run neither duplicates rows nor refused lines.
+ */
+class MoodImporterTest {
+    private static final LocalDateTime BASE = LocalDateTime.of(2026, 2, 1, 7, 0);
+
+    @TempDir
+    Path dir;
+
+    private PostgrestStandIn server;
+    private SupabaseClient client;
+
+    @BeforeEach
+    void start() throws Exception {
+        server = new PostgrestStandIn(0).start();
+        client = new SupabaseClient(server.url(), "test-key");
+    }
+
+    @AfterEach
+    void stop() {
+        server.close();
+    }
+
+    // setiap baris ke-`poisonEvery` memakai mood yang ditolak constraint
+    private Path writeCsv(int rows, int poisonEvery, List<String> poison) throws Exception {
+        List<String> lines = new ArrayList<>();
+        lines.add("timestamp,mood,score,user_id");
+        for (int i = 0; i < rows; i++) {
+            boolean bad = poisonEvery > 0 && i % poisonEvery == poisonEvery - 1;
+            String line = BASE.plusMinutes(i) + "," + (bad ? "Racun" : "Senang") + ",3,u1";
+            if (bad) poison.add(line);
+            lines.add(line);
+        }
+        Path file = dir.resolve("moods.csv");
+        Files.write(file, lines, StandardCharsets.UTF_8);
+        return file;
+    }
+
+    @Test
+    void refusedRowsAreSetAsideAndTheImportFinishes() throws Exception {
+        server.addCheck("moods", "mood", v -> !"Racun".equals(v));
+        List<String> poison = new ArrayList<>();
+        Path file = writeCsv(100, 7, poison);
+
+        MoodImporter importer = new MoodImporter(client, file, null, 16, 2);
+        assertEquals(100 - poison.size(), importer.run());
+        assertEquals(poison.size(), importer.getRowsRejected());
+        assertEquals(100 - poison.size(), server.rowCount("moods"));
+        assertEquals(poison, Files.readAllLines(importer.getRejectedFile(), StandardCharsets.UTF_8));
+        assertFalse(Files.exists(file.resolveSibling("moods.csv.import-checkpoint")));
+    }
+
+    @Test
+    void transientFailureKeepsTheCheckpointAndResumes() throws Exception {
+        server.addCheck("moods", "mood", v -> !"Racun".equals(v));
+        List<String> poison = new ArrayList<>();
+        Path file = writeCsv(60, 10, poison);
+        client.setRetryPolicy(1, Duration.ofSeconds(5));
+        client.setCircuitBreaker(0, Duration.ofSeconds(1));
+        server.setErrorRate(1, 503);
+
+        MoodImporter first = new MoodImporter(client, file, null, 8, 1);
+        assertEquals(-1, first.run());
+        assertEquals(0, first.getRowsRejected());
+        assertEquals(0, server.rowCount("moods"));
+
+        server.setErrorRate(0, 503);
+        MoodImporter second = new MoodImporter(client, file, null, 8, 1);
+        assertEquals(60 - poison.size(), second.run());
+        assertEquals(60 - poison.size(), server.rowCount("moods"));
+        assertEquals(poison, Files.readAllLines(second.getRejectedFile(), StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,138 @@
+package org.example;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * {@link MoodJournal} replaying into {@link PostgrestStandIn}: normal replay and compaction, rows the server
+ * refuses, over-long lines and a second instance on the same file.
+ */
+class MoodJournalTest {
+    private static final LocalDateTime BASE = LocalDateTime.of(2026, 3, 1, 9, 0);
+    private static final Duration WAIT = Duration.ofSeconds(10);
+
+    @TempDir
+    Path dir;
+
+    private PostgrestStandIn server;
+    private SupabaseClient client;
+
+    @BeforeEach
+    void start() throws Exception {
+        server = new PostgrestStandIn(0).start();
+        client = new SupabaseClient(server.url(), "test-key");
+    }
+
+    @AfterEach
+    void stop() {
+        server.close();
+    }
+
+    private static SupabaseClient.MoodEntry entry(String mood, int minutes) {
+        return SupabaseClient.MoodEntry.create(mood, 3, BASE.plusMinutes(minutes), "u1");
+    }
+
+    // compaction berjalan di thread replayer setelah checkpoint terakhir ditulis
+    private static void awaitEmpty(Path file) throws Exception {
+        long deadline = System.nanoTime() + WAIT.toNanos();
+        while (Files.size(file) > 0 && System.nanoTime() < deadline) Thread.sleep(10);
+        assertEquals(0, Files.size(file));
+    }
+
+    @Test
+    void replaysAppendedEntriesAndCompacts() throws Exception {
+        Path file = dir.resolve("journal.csv");
+        try (MoodJournal journal = new MoodJournal(file, client, 2, Duration.ofMillis(10))) {
+            for (int i = 0; i < 5; i++) assertTrue(journal.append(entry("Senang", i)));
+            assertTrue(journal.awaitDrained(WAIT));
+            assertEquals(5, server.rowCount("moods"));
+            awaitEmpty(file);
+            assertEquals(0, journal.pendingBytes());
+
+            // setelah dipotong, entri baru tetap di-replay dari offset 0
+            assertTrue(journal.append(entry("Biasa", 10)));
+            assertTrue(journal.awaitDrained(WAIT));
+        }
+        assertEquals(6, server.rowCount("moods"));
+    }
+
+    @Test
+    void resumesFromCheckpointAfterRestart() throws Exception {
+        Path file = dir.resolve("journal.csv");
+        client.setRetryPolicy(1, Duration.ofSeconds(5));
+        server.setErrorRate(1, 503);
+        try (MoodJournal journal = new MoodJournal(file, client, 10, Duration.ofMillis(10))) {
+            journal.append(entry("Senang", 0));
+            journal.append(entry("Sedih", 1));
+            assertFalse(journal.awaitDrained(Duration.ofMillis(200)));
+        }
+        assertEquals(0, server.rowCount("moods"));
+
+        server.setErrorRate(0, 503);
+        try (MoodJournal journal = new MoodJournal(file, client, 10, Duration.ofMillis(10))) {
+            assertTrue(journal.awaitDrained(WAIT));
+        }
+        assertEquals(2, server.rowCount("moods"));
+    }
+
+    @Test
+    void refusedRowsAreSetAsideWithoutBlockingLaterEntries() throws Exception {
+        server.addCheck("moods", "mood", v -> !"Racun".equals(v));
+        Path file = dir.resolve("journal.csv");
+        SupabaseClient.MoodEntry poison = entry("Racun", 1);
+        try (MoodJournal journal = new MoodJournal(file, client, 10, Duration.ofMillis(10))) {
+            journal.append(entry("Senang", 0));
+            journal.append(poison);
+            journal.append(entry("Sedih", 2));
+            assertTrue(journal.awaitDrained(WAIT));
+            journal.append(entry("Biasa", 3));
+            assertTrue(journal.awaitDrained(WAIT));
+
+            assertEquals(3, server.rowCount("moods"));
+            List<String> rejected = Files.readAllLines(journal.rejectedFile(), StandardCharsets.UTF_8);
+            assertEquals(List.of(MoodJournal.formatLine(poison).strip()), rejected);
+        }
+    }
+
+    @Test
+    void skipsLinesLongerThanTheReadChunk() throws Exception {
+        Path file = dir.resolve("journal.csv");
+        String valid = MoodJournal.formatLine(entry("Senang", 0));
+        StringBuilder sb = new StringBuilder();
+        sb.append(BASE).append(",\"");
+        sb.append("x".repeat(3 << 20));
+        sb.append("\",3,u1\n").append(valid);
+        Files.writeString(file, sb, StandardCharsets.UTF_8);
+
+        try (MoodJournal journal = new MoodJournal(file, client, 10, Duration.ofMillis(10))) {
+            assertTrue(journal.awaitDrained(WAIT));
+        }
+        assertEquals(1, server.rowCount("moods"));
+    }
+
+    @Test
+    void secondInstanceCannotOpenTheSameFile() throws Exception {
+        Path file = dir.resolve("journal.csv");
+        try (MoodJournal journal = new MoodJournal(file, client, 10, Duration.ofMillis(10))) {
+            assertThrows(IOException.class, () -> new MoodJournal(file, client, 10, Duration.ofMillis(10)));
+            assertTrue(journal.append(entry("Senang", 0)));
+            assertTrue(journal.awaitDrained(WAIT));
+        }
+        // kunci dilepas saat close
+        new MoodJournal(file, client, 10, Duration.ofMillis(10)).close();
+    }
+}
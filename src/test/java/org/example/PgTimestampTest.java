@@ -0,0 +1,120 @@
+package org.example;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/**
+ * {@link PgTimestamp} against java.time: every accepted form must give the same instant as
+ * {@link OffsetDateTime}, and invalid text must be rejected without an exception.
+ */
+class PgTimestampTest {
+
+    private static LocalDateTime utc(String localIso, ZoneOffset offset) {
+        return OffsetDateTime.of(LocalDateTime.parse(localIso), offset).withOffsetSameInstant(ZoneOffset.UTC).toLocalDateTime();
+    }
+
+    // parse, parseEpochSecond and parseEpochMicros agree with expected, also inside a larger buffer
+    private static void assertParses(String text, LocalDateTime expected) {
+        assertEquals(expected, PgTimestamp.parse(text), text);
+        long micros = expected.toEpochSecond(ZoneOffset.UTC) * 1_000_000L + expected.getNano() / 1_000;
+        assertEquals(micros, PgTimestamp.parseEpochMicros(text, 0, text.length()), text);
+        assertEquals(expected.toEpochSecond(ZoneOffset.UTC), PgTimestamp.parseEpochSecond(text, 0, text.length()), text);
+        String framed = "x," + text + ",y";
+        assertEquals(expected, PgTimestamp.parse(framed, 2, 2 + text.length()), framed);
+    }
+
+    private static void assertInvalid(String text) {
+        assertNull(PgTimestamp.parse(text), text);
+        assertEquals(PgTimestamp.INVALID, PgTimestamp.parseEpochMicros(text, 0, text.length()), text);
+        assertEquals(PgTimestamp.INVALID, PgTimestamp.parseEpochSecond(text, 0, text.length()), text);
+    }
+
+    @Test
+    void offsets() {
+        assertParses("2025-11-02 22:00:00Z", utc("2025-11-02T22:00:00", ZoneOffset.UTC));
+        assertParses("2025-11-02 22:00:00z", utc("2025-11-02T22:00:00", ZoneOffset.UTC));
+        assertParses("2025-11-02 22:00:00+00", utc("2025-11-02T22:00:00", ZoneOffset.UTC));
+        assertParses("2025-11-02 22:00:00+07", utc("2025-11-02T22:00:00", ZoneOffset.ofHours(7)));
+        assertParses("2025-11-02 02:00:00-07", utc("2025-11-02T02:00:00", ZoneOffset.ofHours(-7)));
+        assertParses("2025-11-02T22:00:00+0530", utc("2025-11-02T22:00:00", ZoneOffset.ofHoursMinutes(5, 30)));
+        assertParses("2025-11-02T22:00:00-03:30", utc("2025-11-02T22:00:00", ZoneOffset.ofHoursMinutes(-3, -30)));
+        assertParses("1900-01-01T00:00:00+00:19:32", utc("1900-01-01T00:00:00", ZoneOffset.ofHoursMinutesSeconds(0, 19, 32)));
+        // offset memindahkan tanggal melewati batas tahun
+        assertParses("2025-01-01T01:00:00+02", utc("2025-01-01T01:00:00", ZoneOffset.ofHours(2)));
+        assertParses("2024-12-31T23:00:00-02", utc("2024-12-31T23:00:00", ZoneOffset.ofHours(-2)));
+    }
+
+    @Test
+    void fractions() {
+        String[] digits = {"1", "12", "123", "1234", "12345", "123456", "1234567", "12345678", "123456789"};
+        for (String d : digits) {
+            assertParses("2025-11-02T22:00:05." + d + "+00:00", LocalDateTime.parse("2025-11-02T22:00:05." + d));
+        }
+        // lebih dari 9 digit: sisa di bawah nanodetik diabaikan
+        assertParses("2025-11-02T22:00:05.1234567891234Z", LocalDateTime.parse("2025-11-02T22:00:05.123456789"));
+        assertParses("2025-11-02 22:00:05,5", LocalDateTime.parse("2025-11-02T22:00:05.5"));
+        assertEquals(LocalDateTime.parse("2025-11-02T22:00:05.000001").toEpochSecond(ZoneOffset.UTC) * 1_000_000L + 1,
+                PgTimestamp.parseEpochMicros("2025-11-02T22:00:05.0000019", 0, 27));
+    }
+
+    @Test
+    void leapDays() {
+        assertParses("2024-02-29T12:00:00", LocalDateTime.parse("2024-02-29T12:00:00"));
+        assertParses("2000-02-29T12:00:00", LocalDateTime.parse("2000-02-29T12:00:00"));
+        assertParses("2024-02-29T23:30:00-01", utc("2024-02-29T23:30:00", ZoneOffset.ofHours(-1)));
+        assertInvalid("2023-02-29T12:00:00");
+        assertInvalid("1900-02-29T12:00:00");
+        assertInvalid("2100-02-29T12:00:00");
+    }
+
+    @Test
+    void withoutSeconds() {
+        assertParses("2025-11-02T22:00", LocalDateTime.parse("2025-11-02T22:00"));
+        assertParses("2025-11-02 22:00+07", utc("2025-11-02T22:00", ZoneOffset.ofHours(7)));
+        assertParses("  2025-11-02T22:00  ", LocalDateTime.parse("2025-11-02T22:00"));
+    }
+
+    @Test
+    void invalid() {
+        assertInvalid("");
+        assertInvalid("2025-11-02");
+        assertInvalid("2025-13-01T00:00:00");
+        assertInvalid("2025-00-01T00:00:00");
+        assertInvalid("2025-04-31T00:00:00");
+        assertInvalid("2025-01-01T24:00:00");
+        assertInvalid("2025-01-01T00:60:00");
+        assertInvalid("2025-01-01T00:00:60");
+        assertInvalid("2025-01-01T00:00:00.");
+        assertInvalid("2025-01-01T00:00:00Zjunk");
+        assertInvalid("2025-01-01T00:00:00+07:00x");
+        assertInvalid("2025-01-01T00:00:00 junk");
+        assertInvalid("2025-01-01T00:00:00+7");
+        assertInvalid("2025-01-01T00:00:00+19");
+        assertInvalid("2025-01-01T00:00:00+07:60");
+        assertInvalid("2025-01-01X00:00:00");
+        assertInvalid("2025/01/01T00:00:00");
+    }
+
+    @Test
+    void randomAgainstJavaTime() {
+        Random rnd = new Random(42);
+        DateTimeFormatter local = DateTimeFormatter.ofPattern("uuuu-MM-dd'T'HH:mm:ss.SSSSSS");
+        for (int i = 0; i < 20_000; i++) {
+            LocalDateTime ldt = LocalDateTime.of(1900, 1, 1, 0, 0)
+                    .plusSeconds(rnd.nextLong(200L * 366 * 86_400))
+                    .plusNanos(rnd.nextInt(1_000_000) * 1_000L);
+            ZoneOffset offset = ZoneOffset.ofTotalSeconds((rnd.nextInt(18 * 4 * 2 + 1) - 18 * 4) * 15 * 60);
+            String text = ldt.format(local) + offset.getId().replace("Z", "+00:00");
+            LocalDateTime expected = OffsetDateTime.of(ldt, offset).withOffsetSameInstant(ZoneOffset.UTC).toLocalDateTime();
+            assertParses(text, expected.truncatedTo(ChronoUnit.MICROS));
+        }
+    }
+}
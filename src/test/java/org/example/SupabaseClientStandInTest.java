@@ -0,0 +1,206 @@
+package org.example;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.InputStream;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * {@link SupabaseClient} end to end against {@link PostgrestStandIn} on a free local port: keyset paging,
+ * retried inserts, replica resync, gzip/series responses and the {@code mood_daily_stats} RPC.
+ */
+class SupabaseClientStandInTest {
+    private static final LocalDateTime BASE = LocalDateTime.of(2026, 1, 1, 8, 0);
+
+    private PostgrestStandIn server;
+    private SupabaseClient client;
+
+    @BeforeEach
+    void start() throws Exception {
+        server = new PostgrestStandIn(0).start();
+        client = new SupabaseClient(server.url(), "test-key");
+    }
+
+    @AfterEach
+    void stop() {
+        server.close();
+    }
+
+    private List<SupabaseClient.MoodEntry> insertDays(String userId, int days, int perDay) {
+        List<SupabaseClient.MoodEntry> rows = new ArrayList<>();
+        for (int d = 0; d < days; d++) {
+            for (int i = 0; i < perDay; i++) {
+                Mood m = Mood.values()[(d + i) % Mood.values().length];
+                rows.add(SupabaseClient.MoodEntry.create(m.label(), m.score(), BASE.plusDays(d).plusMinutes(37L * i), userId));
+            }
+        }
+        assertTrue(client.insertMoods(rows));
+        return rows;
+    }
+
+    @Test
+    void cursorPagesThroughTiesWithoutGapsOrRepeats() {
+        // 25 baris dengan timestamp yang sama melewati beberapa batas halaman
+        List<SupabaseClient.MoodEntry> rows = new ArrayList<>();
+        for (int i = 0; i < 25; i++) rows.add(SupabaseClient.MoodEntry.create("Senang", 3, BASE, "u1"));
+        for (int i = 0; i < 10; i++) rows.add(SupabaseClient.MoodEntry.create("Sedih", 1, BASE.plusSeconds(i / 3), "u1"));
+        rows.add(SupabaseClient.MoodEntry.create("Senang", 3, BASE, "u2"));
+        assertTrue(client.insertMoods(rows));
+
+        List<SupabaseClient.MoodEntry> seen = new ArrayList<>();
+        try (MoodCursor cursor = client.cursorAllEntriesForUser("u1", 4)) {
+            cursor.forEachRemaining(seen::add);
+            assertFalse(cursor.failed());
+        }
+        assertEquals(35, seen.size());
+        Set<String> ids = new HashSet<>();
+        for (int i = 0; i < seen.size(); i++) {
+            SupabaseClient.MoodEntry e = seen.get(i);
+            assertEquals("u1", e.userId);
+            assertTrue(ids.add(e.id), "row " + e.id + " returned twice");
+            if (i > 0) assertFalse(e.timestamp.isBefore(seen.get(i - 1).timestamp), "out of order at " + i);
+        }
+
+        // lanjut dari posisi di tengah rombongan seri: hanya baris setelah (timestamp, id) itu
+        SupabaseClient.MoodEntry mid = seen.get(12);
+        List<SupabaseClient.MoodEntry> rest = new ArrayList<>();
+        try (MoodCursor cursor = client.cursorEntriesForUserSince("u1", mid.timestamp, mid.id, 5)) {
+            cursor.forEachRemaining(rest::add);
+        }
+        assertEquals(seen.subList(13, seen.size()).stream().map(e -> e.id).toList(), rest.stream().map(e -> e.id).toList());
+    }
+
+    @Test
+    void insertsAreRetriedAndNotDuplicated() {
+        client.setRetryPolicy(20, Duration.ofSeconds(60));
+        client.setCircuitBreaker(0, Duration.ofSeconds(1));
+        server.setErrorRate(0.4, 503);
+        List<SupabaseClient.MoodEntry> rows = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            SupabaseClient.MoodEntry e = SupabaseClient.MoodEntry.create("Biasa", 2, BASE.plusHours(i), "u1");
+            rows.add(e);
+            assertTrue(client.insertMood(e), "insert " + i);
+        }
+        List<SupabaseClient.MoodEntry> batch = new ArrayList<>();
+        for (int i = 0; i < 40; i++) batch.add(SupabaseClient.MoodEntry.create("Senang", 3, BASE.plusDays(1).plusMinutes(i), "u1"));
+        assertTrue(client.insertMoods(batch));
+        // kirim ulang dengan kunci yang sama (seperti setelah timeout): tidak ada baris ganda
+        assertTrue(client.insertMoods(batch));
+        assertTrue(client.insertMood(rows.get(0)));
+        server.setErrorRate(0, 503);
+
+        assertEquals(48, server.rowCount("moods"));
+        assertTrue(client.metrics().getRetries() > 0, "no request was retried");
+        assertEquals(48, client.fetchAllEntriesForUser("u1").size());
+    }
+
+    @Test
+    void replicaResyncsWhenAnotherClientWritesBeforeTheWatermark() throws Exception {
+        insertDays("u1", 3, 4);
+        try (MoodReplica replica = new MoodReplica(client, "u1", 5)) {
+            assertEquals(12, replica.refresh());
+            assertEquals(0, replica.refresh());
+
+            // klien lain menulis entri terlambat: delta tidak memuatnya, jumlah di server berbeda
+            SupabaseClient other = new SupabaseClient(server.url(), "test-key");
+            assertTrue(other.insertMood(SupabaseClient.MoodEntry.create("Sedih", 1, BASE.minusDays(1), "u1")));
+            assertEquals(13, other.countEntriesForUser("u1"));
+            replica.refresh();
+            assertEquals(13, replica.size());
+            assertEquals(BASE.minusDays(1), replica.entries().timestamp(0));
+        }
+    }
+
+    @Test
+    void gzipAndSeriesResponsesDecodeToTheSameRows() throws Exception {
+        insertDays("u1", 30, 5);
+        String uri = client.entriesUri("u1", null, null);
+
+        HttpResponse<InputStream> csv = client.sendAsync("test", client.csvGet(uri), SupabaseClient.decodedBody()).join();
+        assertEquals(200, csv.statusCode());
+        assertEquals("gzip", csv.headers().firstValue("Content-Encoding").orElse(null));
+        List<SupabaseClient.MoodEntry> fromCsv = new ArrayList<>();
+        try (InputStream body = csv.body()) {
+            SupabaseClient.parseCsvToEntries(body, "u1", fromCsv::add);
+        }
+        assertEquals(150, fromCsv.size());
+
+        client.enableSeriesTransfer(true);
+        HttpResponse<InputStream> series = client.sendAsync("test", client.moodsGet(uri), SupabaseClient.decodedBody()).join();
+        assertTrue(SupabaseClient.isSeries(series));
+        try (InputStream body = series.body()) {
+            assertTrue(body.read() >= 0);
+        }
+
+        MoodHistory history = client.fetchHistoryForUser("u1");
+        MoodHistory async = client.async().fetchHistoryForUser("u1").join();
+        assertNotNull(history);
+        assertEquals(fromCsv.size(), history.size());
+        assertEquals(fromCsv.size(), async.size());
+        for (int i = 0; i < fromCsv.size(); i++) {
+            SupabaseClient.MoodEntry e = fromCsv.get(i);
+            assertEquals(e.timestamp, history.timestamp(i));
+            assertEquals(e.mood, history.entry(i).mood);
+            assertEquals(e.score, history.entry(i).score);
+            assertEquals(e.timestamp, async.timestamp(i));
+        }
+    }
+
+    @Test
+    void dailyStatsRpcMatchesTheRows() throws Exception {
+        List<SupabaseClient.MoodEntry> rows = insertDays("u1", 10, 4);
+        rows.addAll(insertDays("u2", 10, 3));
+        LocalDate start = BASE.toLocalDate().plusDays(2), end = BASE.toLocalDate().plusDays(7);
+
+        // RPC benar-benar dijawab server, bukan fallback agregasi lokal
+        HttpResponse<InputStream> rpc = client.sendAsync("test", client.dailyStatsRequest(start, end, "u1"), SupabaseClient.decodedBody()).join();
+        rpc.body().close();
+        assertEquals(200, rpc.statusCode());
+
+        assertAggregates(expected(rows, start, end, "u1"), client.fetchDailyAggregates(start, end, "u1"));
+        assertAggregates(expected(rows, start, end, null), client.fetchDailyAggregates(start, end, null));
+        assertAggregates(expected(rows, start, end, "u1"), client.fetchDailyRollups(start, end, "u1"));
+    }
+
+    // tanggal -> {count, sum, min, max}
+    private static Map<LocalDate, long[]> expected(List<SupabaseClient.MoodEntry> rows, LocalDate start, LocalDate end, String userId) {
+        Map<LocalDate, long[]> days = new TreeMap<>();
+        for (SupabaseClient.MoodEntry e : rows) {
+            LocalDate d = e.timestamp.toLocalDate();
+            if (d.isBefore(start) || d.isAfter(end) || (userId != null && !userId.equals(e.userId))) continue;
+            long[] a = days.computeIfAbsent(d, k -> new long[] {0, 0, Long.MAX_VALUE, Long.MIN_VALUE});
+            a[0]++;
+            a[1] += e.score;
+            a[2] = Math.min(a[2], e.score);
+            a[3] = Math.max(a[3], e.score);
+        }
+        return days;
+    }
+
+    private static void assertAggregates(Map<LocalDate, long[]> expected, List<SupabaseClient.DailyAggregate> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (SupabaseClient.DailyAggregate a : actual) {
+            long[] e = expected.get(a.date);
+            assertNotNull(e, "unexpected day " + a.date);
+            assertEquals(e[0], a.count, "count " + a.date);
+            assertEquals(e[1], a.sum, "sum " + a.date);
+            assertEquals(e[2], a.min, "min " + a.date);
+            assertEquals(e[3], a.max, "max " + a.date);
+        }
+    }
+}
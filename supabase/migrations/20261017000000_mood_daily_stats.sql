@@ -0,0 +1,30 @@
+-- Agregasi harian skor mood, dipanggil oleh SupabaseClient.fetchDailyAggregates
+-- lewat POST /rest/v1/rpc/mood_daily_stats (Accept: text/csv).
+-- Hari dihitung dalam UTC, sama seperti timestamp yang dikirim oleh klien.
+-- p_user_id null = semua user. Parameter bertipe uuid (sama dengan moods.user_id), jadi filter
+-- m.user_id = p_user_id memakai index (user_id, "timestamp"); cast kolom ke text membuat index tidak terpakai.
+
+-- versi awal memakai p_user_id text; overload itu dihapus supaya PostgREST tidak ambigu
+drop function if exists public.mood_daily_stats(text, date, date);
+
+create or replace function public.mood_daily_stats(p_user_id uuid, p_start date, p_end date)
+returns table (day date, "count" bigint, "sum" bigint, "min" integer, "max" integer)
+language sql
+stable
+as $$
+    select (m."timestamp" at time zone 'UTC')::date as day,
+           count(*)::bigint,
+           sum(m.score)::bigint,
+           min(m.score)::integer,
+           max(m.score)::integer
+    from public.moods m
+    where (p_user_id is null or m.user_id = p_user_id)
+      and m."timestamp" >= (p_start::timestamp at time zone 'UTC')
+      and m."timestamp" < ((p_end + 1)::timestamp at time zone 'UTC')
+    group by 1
+    order by 1;
+$$;
+
+create index if not exists moods_user_id_timestamp_idx on public.moods (user_id, "timestamp");
+
+grant execute on function public.mood_daily_stats(uuid, date, date) to anon, authenticated;
@@ -0,0 +1,123 @@
+-- Rollup harian per user: satu baris (user_id, date) berisi count/sum/min/max skor.
+-- Dijaga oleh trigger pada 'moods' di transaksi yang sama dengan insert/update/delete (termasuk batch),
+-- dibaca oleh SupabaseClient.fetchDailyRollups untuk statistik/grafik mingguan.
+-- Bangun ulang dari data mentah: RollupBackfill (java -jar moodify.jar backfill-rollup).
+
+create table if not exists public.mood_daily (
+    user_id uuid    not null,
+    date    date    not null,
+    "count" integer not null,
+    "sum"   bigint  not null,
+    "min"   smallint not null,
+    "max"   smallint not null,
+    primary key (user_id, date)
+);
+
+create or replace function public.mood_daily_on_insert()
+returns trigger
+language plpgsql
+security definer
+set search_path = public
+as $$
+begin
+    if new.user_id is null then
+        return new;
+    end if;
+    insert into public.mood_daily as d (user_id, date, "count", "sum", "min", "max")
+    values (new.user_id, (new."timestamp" at time zone 'UTC')::date, 1, new.score, new.score, new.score)
+    on conflict (user_id, date) do update
+        set "count" = d."count" + 1,
+            "sum"   = d."sum" + excluded."sum",
+            "min"   = least(d."min", excluded."min"),
+            "max"   = greatest(d."max", excluded."max");
+    return new;
+end;
+$$;
+
+-- min/max tidak bisa dikurangi, jadi hari yang terkena delete/update dihitung ulang dari moods;
+-- hari yang tidak lagi punya mood tidak punya baris rollup
+create or replace function public.mood_daily_recompute(p_user_id uuid, p_date date)
+returns void
+language sql
+security definer
+set search_path = public
+as $$
+    delete from public.mood_daily where user_id = p_user_id and date = p_date;
+    insert into public.mood_daily (user_id, date, "count", "sum", "min", "max")
+    select m.user_id, p_date, count(*), sum(m.score), min(m.score), max(m.score)
+    from public.moods m
+    where m.user_id = p_user_id
+      and m."timestamp" >= (p_date::timestamp at time zone 'UTC')
+      and m."timestamp" < ((p_date + 1)::timestamp at time zone 'UTC')
+    group by m.user_id
+    having count(*) > 0;
+$$;
+
+create or replace function public.mood_daily_on_delete()
+returns trigger
+language plpgsql
+security definer
+set search_path = public
+as $$
+begin
+    if old.user_id is not null then
+        perform public.mood_daily_recompute(old.user_id, (old."timestamp" at time zone 'UTC')::date);
+    end if;
+    return old;
+end;
+$$;
+
+-- update: kontribusi baris lama dibuang (hari lama dihitung ulang; moods sudah berisi nilai baru),
+-- lalu hari baru dihitung ulang jika user atau tanggalnya berbeda
+create or replace function public.mood_daily_on_update()
+returns trigger
+language plpgsql
+security definer
+set search_path = public
+as $$
+declare
+    v_old_date date := (old."timestamp" at time zone 'UTC')::date;
+    v_new_date date := (new."timestamp" at time zone 'UTC')::date;
+begin
+    if old.user_id is not null then
+        perform public.mood_daily_recompute(old.user_id, v_old_date);
+    end if;
+    if new.user_id is not null
+       and (old.user_id is null or new.user_id <> old.user_id or v_new_date <> v_old_date) then
+        perform public.mood_daily_recompute(new.user_id, v_new_date);
+    end if;
+    return new;
+end;
+$$;
+
+drop trigger if exists moods_mood_daily_insert on public.moods;
+create trigger moods_mood_daily_insert
+    after insert on public.moods
+    for each row execute function public.mood_daily_on_insert();
+
+drop trigger if exists moods_mood_daily_delete on public.moods;
+create trigger moods_mood_daily_delete
+    after delete on public.moods
+    for each row execute function public.mood_daily_on_delete();
+
+drop trigger if exists moods_mood_daily_update on public.moods;
+create trigger moods_mood_daily_update
+    after update of user_id, "timestamp", score on public.moods
+    for each row
+    when (old.user_id is distinct from new.user_id
+          or old."timestamp" is distinct from new."timestamp"
+          or old.score is distinct from new.score)
+    execute function public.mood_daily_on_update();
+
+-- isi awal dari data yang sudah ada
+insert into public.mood_daily (user_id, date, "count", "sum", "min", "max")
+select m.user_id, (m."timestamp" at time zone 'UTC')::date, count(*), sum(m.score), min(m.score), max(m.score)
+from public.moods m
+where m.user_id is not null
+group by 1, 2
+on conflict (user_id, date) do update
+    set "count" = excluded."count", "sum" = excluded."sum", "min" = excluded."min", "max" = excluded."max";
+
+grant select on public.mood_daily to anon, authenticated;
+-- untuk RollupBackfill (upsert dan hapus hari tanpa mood lewat REST); trigger berjalan sebagai security definer
+grant insert, update, delete on public.mood_daily to anon, authenticated;
@@ -0,0 +1,9 @@
+-- Kunci idempotensi per baris 'moods'. SupabaseClient mengirim setiap insert dengan kunci acak (uuid) lewat
+-- POST /rest/v1/moods?on_conflict=idempotency_key (Prefer: resolution=ignore-duplicates), jadi insert yang
+-- diulang setelah respons hilang (timeout, koneksi putus) tidak membuat baris ganda.
+-- Baris lama tetap null; index unik mengizinkan banyak null.
+-- Trigger rollup (after insert) tidak berjalan untuk baris duplikat yang diabaikan.
+
+alter table public.moods add column if not exists idempotency_key uuid;
+
+create unique index if not exists moods_idempotency_key_idx on public.moods (idempotency_key);